@@ -0,0 +1,87 @@
+package org.adaway.db;
+
+import android.database.Cursor;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class AppDatabaseMigrationTest {
+    private static final String TEST_DATABASE = "migration-test.db";
+    private static final String SOURCE_URL = "https://adaway.org/hosts.txt";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            AppDatabase.class.getCanonicalName(),
+            new FrameworkSQLiteOpenHelperFactory()
+    );
+
+    @Test
+    public void testMigrate1To2() throws IOException {
+        SupportSQLiteDatabase database = this.helper.createDatabase(TEST_DATABASE, 1);
+        database.execSQL("INSERT INTO `hosts_sources` (`url`, `enabled`, `last_modified_local`) " +
+                "VALUES ('" + SOURCE_URL + "', 1, 1593561600000)");
+        database.close();
+
+        database = this.helper.runMigrationsAndValidate(TEST_DATABASE, 2, true, AppDatabase.MIGRATION_1_2);
+        // Hosts source is kept without cached copy validators
+        try (Cursor cursor = database.query("SELECT `url`, `enabled`, `last_modified_local`, " +
+                "`cached_etag`, `cached_last_modified` FROM `hosts_sources`")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(SOURCE_URL, cursor.getString(0));
+            assertEquals(1, cursor.getInt(1));
+            assertEquals(1593561600000L, cursor.getLong(2));
+            assertTrue(cursor.isNull(3));
+            assertTrue(cursor.isNull(4));
+        }
+        database.close();
+    }
+
+    @Test
+    public void testMigrate2To3() throws IOException {
+        SupportSQLiteDatabase database = this.helper.createDatabase(TEST_DATABASE, 2);
+        database.execSQL("INSERT INTO `hosts_sources` (`url`, `enabled`, `cached_etag`) " +
+                "VALUES ('" + SOURCE_URL + "', 1, '\"etag\"')");
+        database.close();
+
+        database = this.helper.runMigrationsAndValidate(TEST_DATABASE, 3, true, AppDatabase.MIGRATION_2_3);
+        try (Cursor cursor = database.query("SELECT `cached_etag` FROM `hosts_sources`")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("\"etag\"", cursor.getString(0));
+        }
+        // Apply statistics table is created empty with its apply date index
+        try (Cursor cursor = database.query("SELECT COUNT(*) FROM `apply_stats`")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+        try (Cursor cursor = database.query("PRAGMA index_info(index_apply_stats_apply_date)")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("apply_date", cursor.getString(cursor.getColumnIndex("name")));
+            assertFalse(cursor.moveToNext());
+        }
+        database.execSQL("INSERT INTO `apply_stats` (`apply_date`, `phase`, `duration`, `byte_count`, " +
+                "`line_count`, `rejected_line_count`, `host_count`, `peak_heap`) " +
+                "VALUES (1593561600000, 0, 42, 0, 0, 0, 0, 0)");
+        try (Cursor cursor = database.query("SELECT `id`, `source`, `error` FROM `apply_stats`")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getLong(0));
+            assertTrue(cursor.isNull(1));
+            assertTrue(cursor.isNull(2));
+        }
+        database.close();
+    }
+}
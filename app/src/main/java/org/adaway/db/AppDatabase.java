@@ -5,15 +5,19 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
 
 import android.content.Context;
 
 import androidx.annotation.NonNull;
 
+import org.adaway.db.converter.ApplyPhaseConverter;
 import org.adaway.db.converter.DateConverter;
 import org.adaway.db.converter.ListTypeConverter;
+import org.adaway.db.dao.ApplyStatDao;
 import org.adaway.db.dao.HostListItemDao;
 import org.adaway.db.dao.HostsSourceDao;
+import org.adaway.db.entity.ApplyStat;
 import org.adaway.db.entity.HostListItem;
 import org.adaway.db.entity.HostsSource;
 import org.adaway.provider.RoomMigrationHelper;
@@ -24,9 +28,40 @@ import org.adaway.util.AppExecutors;
  *
  * @author Bruce BUJON (bruce.bujon(at)gmail(dot)com)
  */
-@Database(entities = {HostsSource.class, HostListItem.class}, version = 1)
-@TypeConverters({DateConverter.class, ListTypeConverter.class})
+@Database(entities = {HostsSource.class, HostListItem.class, ApplyStat.class}, version = 3)
+@TypeConverters({DateConverter.class, ListTypeConverter.class, ApplyPhaseConverter.class})
 public abstract class AppDatabase extends RoomDatabase {
+    /**
+     * The migration from version 1 to 2: add hosts source cached copy validators.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `hosts_sources` ADD COLUMN `cached_etag` TEXT");
+            database.execSQL("ALTER TABLE `hosts_sources` ADD COLUMN `cached_last_modified` TEXT");
+        }
+    };
+    /**
+     * The migration from version 2 to 3: add hosts file apply statistics.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `apply_stats` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`apply_date` INTEGER NOT NULL, " +
+                    "`phase` INTEGER NOT NULL, " +
+                    "`source` TEXT, " +
+                    "`duration` INTEGER NOT NULL, " +
+                    "`byte_count` INTEGER NOT NULL, " +
+                    "`line_count` INTEGER NOT NULL, " +
+                    "`rejected_line_count` INTEGER NOT NULL, " +
+                    "`host_count` INTEGER NOT NULL, " +
+                    "`peak_heap` INTEGER NOT NULL, " +
+                    "`error` TEXT)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_apply_stats_apply_date` ON `apply_stats` (`apply_date`)");
+        }
+    };
     /**
      * The database singleton instance.
      */
@@ -46,6 +81,9 @@ public abstract class AppDatabase extends RoomDatabase {
                             context.getApplicationContext(),
                             AppDatabase.class,
                             "app.db"
+                    ).addMigrations(
+                            MIGRATION_1_2,
+                            MIGRATION_2_3
                     ).addCallback(new Callback() {
                         @Override
                         public void onCreate(@NonNull SupportSQLiteDatabase db) {
@@ -92,4 +130,11 @@ public abstract class AppDatabase extends RoomDatabase {
      * @return The hosts list item DAO.
      */
     public abstract HostListItemDao hostsListItemDao();
+
+    /**
+     * Get the hosts file apply statistics DAO.
+     *
+     * @return The hosts file apply statistics DAO.
+     */
+    public abstract ApplyStatDao applyStatDao();
 }
@@ -0,0 +1,24 @@
+package org.adaway.db.converter;
+
+import androidx.room.TypeConverter;
+
+import org.adaway.db.entity.ApplyPhase;
+
+/**
+ * This class is a type converter for Room to support {@link ApplyPhase} type.
+ */
+public final class ApplyPhaseConverter {
+    private ApplyPhaseConverter() {
+        // Prevent instantiation
+    }
+
+    @TypeConverter
+    public static ApplyPhase fromValue(Integer value) {
+        return value == null ? null : ApplyPhase.fromValue(value);
+    }
+
+    @TypeConverter
+    public static Integer phaseToValue(ApplyPhase phase) {
+        return phase == null ? null : phase.getValue();
+    }
+}
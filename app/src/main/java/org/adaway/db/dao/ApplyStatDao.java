@@ -0,0 +1,29 @@
+package org.adaway.db.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import org.adaway.db.entity.ApplyStat;
+
+import java.util.List;
+
+/**
+ * This interface is the DAO for {@link ApplyStat} entities.
+ */
+@Dao
+public interface ApplyStatDao {
+    @Insert
+    void insert(List<ApplyStat> stats);
+
+    @Query("SELECT * FROM apply_stats ORDER BY apply_date DESC, id ASC")
+    LiveData<List<ApplyStat>> loadAll();
+
+    @Query("DELETE FROM apply_stats WHERE apply_date NOT IN " +
+            "(SELECT DISTINCT apply_date FROM apply_stats ORDER BY apply_date DESC LIMIT :count)")
+    void keepLastApplies(int count);
+
+    @Query("DELETE FROM apply_stats")
+    void deleteAll();
+}
@@ -41,6 +41,9 @@ public interface HostsSourceDao {
     @Query("UPDATE hosts_sources SET last_modified_online = :date WHERE url = :url")
     void updateOnlineModificationDate(String url, Date date);
 
+    @Query("UPDATE hosts_sources SET cached_etag = :entityTag, cached_last_modified = :lastModified WHERE url = :url")
+    void updateCacheValidators(String url, String entityTag, String lastModified);
+
     @Query("UPDATE hosts_sources SET last_modified_local = :date WHERE enabled = 1")
     void updateEnabledLocalModificationDates(Date date);
 
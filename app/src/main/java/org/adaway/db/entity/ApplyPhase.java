@@ -0,0 +1,62 @@
+package org.adaway.db.entity;
+
+/**
+ * This enumerate specifies the phase of an hosts file apply measured by {@link ApplyStat}.
+ */
+public enum ApplyPhase {
+    /**
+     * The download of a single hosts source, parsed while downloaded.
+     */
+    DOWNLOAD(0),
+    /**
+     * The retrieval and parsing of all the hosts sources.
+     */
+    PARSE(1),
+    /**
+     * The merge of the user lists.
+     */
+    USER_LISTS(2),
+    /**
+     * The whitelist and redirection list compilation and blocked host names filtering.
+     */
+    WHITELIST(3),
+    /**
+     * The write of the new hosts file in private storage.
+     */
+    WRITE(4),
+    /**
+     * The remount of the hosts file target partition.
+     */
+    REMOUNT(5),
+    /**
+     * The copy of the new hosts file to its target.
+     */
+    COPY(6),
+    /**
+     * The verification of the installed hosts file.
+     */
+    VERIFY(7),
+    /**
+     * The whole apply.
+     */
+    TOTAL(8);
+
+    private int value;
+
+    ApplyPhase(int value) {
+        this.value = value;
+    }
+
+    public static ApplyPhase fromValue(int value) {
+        for (ApplyPhase phase : ApplyPhase.values()) {
+            if (phase.value == value) {
+                return phase;
+            }
+        }
+        throw new IllegalArgumentException("Invalid value for apply phase: " + value);
+    }
+
+    public int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,141 @@
+package org.adaway.db.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.util.Date;
+
+/**
+ * This entity represents the measures of a phase of an hosts file apply.
+ * <p>
+ * The phases of the same apply share the apply date. Counters not relevant to a phase are
+ * {@code 0}.
+ */
+@Entity(tableName = "apply_stats", indices = {@Index("apply_date")})
+public class ApplyStat {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    @ColumnInfo(name = "apply_date")
+    @NonNull
+    private Date applyDate;
+    @NonNull
+    private ApplyPhase phase;
+    /**
+     * The hosts source URL for {@link ApplyPhase#DOWNLOAD} phase, {@code null} otherwise.
+     */
+    private String source;
+    /**
+     * The phase duration (in milliseconds).
+     */
+    private long duration;
+    @ColumnInfo(name = "byte_count")
+    private long byteCount;
+    @ColumnInfo(name = "line_count")
+    private long lineCount;
+    @ColumnInfo(name = "rejected_line_count")
+    private long rejectedLineCount;
+    @ColumnInfo(name = "host_count")
+    private long hostCount;
+    /**
+     * The highest used heap size sampled since the apply started (in bytes).
+     */
+    @ColumnInfo(name = "peak_heap")
+    private long peakHeap;
+    /**
+     * The phase error message, {@code null} if the phase succeeded.
+     */
+    private String error;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public Date getApplyDate() {
+        return applyDate;
+    }
+
+    public void setApplyDate(@NonNull Date applyDate) {
+        this.applyDate = applyDate;
+    }
+
+    @NonNull
+    public ApplyPhase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(@NonNull ApplyPhase phase) {
+        this.phase = phase;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public void setByteCount(long byteCount) {
+        this.byteCount = byteCount;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(long lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public long getRejectedLineCount() {
+        return rejectedLineCount;
+    }
+
+    public void setRejectedLineCount(long rejectedLineCount) {
+        this.rejectedLineCount = rejectedLineCount;
+    }
+
+    public long getHostCount() {
+        return hostCount;
+    }
+
+    public void setHostCount(long hostCount) {
+        this.hostCount = hostCount;
+    }
+
+    public long getPeakHeap() {
+        return peakHeap;
+    }
+
+    public void setPeakHeap(long peakHeap) {
+        this.peakHeap = peakHeap;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
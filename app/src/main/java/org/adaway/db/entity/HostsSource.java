@@ -25,6 +25,10 @@ public class HostsSource {
     private Date lastLocalModification;
     @ColumnInfo(name = "last_modified_online")
     private Date lastOnlineModification;
+    @ColumnInfo(name = "cached_etag")
+    private String cachedEntityTag;
+    @ColumnInfo(name = "cached_last_modified")
+    private String cachedLastModified;
 
     /**
      * Check whether an URL is valid for as host source.<br>
@@ -71,6 +75,32 @@ public class HostsSource {
         this.lastOnlineModification = lastOnlineModification;
     }
 
+    /**
+     * Get the ETag of the cached copy of the hosts source.
+     *
+     * @return The ETag header value of the cached copy, {@code null} if not available.
+     */
+    public String getCachedEntityTag() {
+        return cachedEntityTag;
+    }
+
+    public void setCachedEntityTag(String cachedEntityTag) {
+        this.cachedEntityTag = cachedEntityTag;
+    }
+
+    /**
+     * Get the Last-Modified header of the cached copy of the hosts source.
+     *
+     * @return The Last-Modified header value of the cached copy, {@code null} if not available.
+     */
+    public String getCachedLastModified() {
+        return cachedLastModified;
+    }
+
+    public void setCachedLastModified(String cachedLastModified) {
+        this.cachedLastModified = cachedLastModified;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -82,7 +112,11 @@ public class HostsSource {
         if (!enabled.equals(source.enabled)) return false;
         if (lastLocalModification != null ? !lastLocalModification.equals(source.lastLocalModification) : source.lastLocalModification != null)
             return false;
-        return lastOnlineModification != null ? lastOnlineModification.equals(source.lastOnlineModification) : source.lastOnlineModification == null;
+        if (lastOnlineModification != null ? !lastOnlineModification.equals(source.lastOnlineModification) : source.lastOnlineModification != null)
+            return false;
+        if (cachedEntityTag != null ? !cachedEntityTag.equals(source.cachedEntityTag) : source.cachedEntityTag != null)
+            return false;
+        return cachedLastModified != null ? cachedLastModified.equals(source.cachedLastModified) : source.cachedLastModified == null;
     }
 
     @Override
@@ -91,6 +125,8 @@ public class HostsSource {
         result = 31 * result + enabled.hashCode();
         result = 31 * result + (lastLocalModification != null ? lastLocalModification.hashCode() : 0);
         result = 31 * result + (lastOnlineModification != null ? lastOnlineModification.hashCode() : 0);
+        result = 31 * result + (cachedEntityTag != null ? cachedEntityTag.hashCode() : 0);
+        result = 31 * result + (cachedLastModified != null ? cachedLastModified.hashCode() : 0);
         return result;
     }
 }
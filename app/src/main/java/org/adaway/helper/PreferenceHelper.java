@@ -183,6 +183,23 @@ public class PreferenceHelper {
         );
     }
 
+    public static int getDownloadParallelism(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(
+                Constants.PREFS_NAME,
+                Context.MODE_PRIVATE
+        );
+        String defaultValue = context.getString(R.string.pref_download_parallelism_def);
+        String value = prefs.getString(
+                context.getString(R.string.pref_download_parallelism_key),
+                defaultValue
+        );
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException exception) {
+            return Integer.parseInt(defaultValue);
+        }
+    }
+
     public static String getApplyMethod(Context context) {
         SharedPreferences prefs = context.getSharedPreferences(
                 Constants.PREFS_NAME,
@@ -249,6 +266,28 @@ public class PreferenceHelper {
         );
     }
 
+    public static boolean getTcpdumpStreaming(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(
+                Constants.PREFS_NAME,
+                Context.MODE_PRIVATE
+        );
+        return prefs.getBoolean(
+                context.getString(R.string.pref_tcpdump_streaming_key),
+                context.getResources().getBoolean(R.bool.pref_tcpdump_streaming_def)
+        );
+    }
+
+    public static boolean getTcpdumpPcap(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(
+                Constants.PREFS_NAME,
+                Context.MODE_PRIVATE
+        );
+        return prefs.getBoolean(
+                context.getString(R.string.pref_tcpdump_pcap_key),
+                context.getResources().getBoolean(R.bool.pref_tcpdump_pcap_def)
+        );
+    }
+
     public static void setTelemetryEnabled(Context context, boolean enabled) {
         SharedPreferences prefs = context.getSharedPreferences(
                 Constants.PREFS_NAME,
@@ -279,4 +318,25 @@ public class PreferenceHelper {
         editor.putBoolean(context.getString(R.string.pref_display_telemetry_consent_key), displayTelemetryConsent);
         editor.apply();
     }
+
+    public static String getInstalledHostsVersion(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(
+                Constants.PREFS_NAME,
+                Context.MODE_PRIVATE
+        );
+        return prefs.getString(
+                context.getString(R.string.pref_installed_hosts_version_key),
+                null
+        );
+    }
+
+    public static void setInstalledHostsVersion(Context context, String version) {
+        SharedPreferences prefs = context.getSharedPreferences(
+                Constants.PREFS_NAME,
+                Context.MODE_PRIVATE
+        );
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putString(context.getString(R.string.pref_installed_hosts_version_key), version);
+        editor.apply();
+    }
 }
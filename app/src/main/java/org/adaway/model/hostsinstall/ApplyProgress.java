@@ -0,0 +1,242 @@
+package org.adaway.model.hostsinstall;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.adaway.model.hostsinstall.HostsInstallError.CANCELLED;
+
+/**
+ * This class tracks the progress of an hosts file apply and its cancellation request.
+ * <p>
+ * The hosts sources retrieval makes the first {@value #RETRIEVAL_PERCENT}% of the progress.
+ * Each hosts source has the same share, completed by its read bytes over its expected size (from
+ * the Content-Length header, its cached copy or its local file). The remaining percents are
+ * completed by the apply phases.
+ * <p>
+ * Cancellation is cooperative: the apply checks it between phases and the tracked streams check
+ * it on each read.
+ */
+class ApplyProgress {
+    /**
+     * The progress percent when all hosts sources are retrieved.
+     */
+    static final int RETRIEVAL_PERCENT = 80;
+    /**
+     * The listener to notify on progress change.
+     */
+    private final Runnable listener;
+    /**
+     * The expected size of each hosts source (in bytes, {@code 0} if unknown).
+     */
+    private final AtomicLongArray expectedByteCounts;
+    /**
+     * The read bytes of each hosts source.
+     */
+    private final AtomicLongArray readByteCounts;
+    /**
+     * Whether each hosts source was retrieved ({@code 1}) or not ({@code 0}).
+     */
+    private final AtomicLongArray completed;
+    /**
+     * The lines read from all hosts sources.
+     */
+    private final AtomicLong lineCount;
+    /**
+     * The progress percent of the apply phases ({@code 0} while the hosts sources are retrieved).
+     */
+    private volatile int applyPercent;
+    /**
+     * The last notified progress percent.
+     */
+    private volatile int notifiedPercent;
+    /**
+     * Whether the apply cancellation was requested.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor.
+     *
+     * @param sourceCount The number of hosts sources to retrieve.
+     * @param listener    The listener to notify on progress change.
+     */
+    ApplyProgress(int sourceCount, Runnable listener) {
+        this.listener = listener;
+        this.expectedByteCounts = new AtomicLongArray(sourceCount);
+        this.readByteCounts = new AtomicLongArray(sourceCount);
+        this.completed = new AtomicLongArray(sourceCount);
+        this.lineCount = new AtomicLong(0);
+        this.applyPercent = 0;
+        this.notifiedPercent = -1;
+        this.cancelled = false;
+    }
+
+    /**
+     * Request the apply cancellation.
+     */
+    void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Check whether the apply cancellation was requested.
+     *
+     * @return {@code true} if the apply cancellation was requested, {@code false} otherwise.
+     */
+    boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Check the apply cancellation was not requested.
+     *
+     * @throws HostsInstallException If the apply cancellation was requested.
+     */
+    void checkCancelled() throws HostsInstallException {
+        if (this.cancelled) {
+            throw new HostsInstallException(CANCELLED, "Hosts file apply was cancelled.");
+        }
+    }
+
+    /**
+     * Set the expected size of a hosts source.
+     *
+     * @param index     The hosts source index.
+     * @param byteCount The expected size (in bytes), {@code 0} or negative if unknown.
+     */
+    void setExpectedByteCount(int index, long byteCount) {
+        this.expectedByteCounts.set(index, Math.max(0, byteCount));
+    }
+
+    /**
+     * Mark a hosts source as retrieved, whether it succeeded or not.
+     *
+     * @param index The hosts source index.
+     */
+    void complete(int index) {
+        this.completed.set(index, 1);
+        notifyListener();
+    }
+
+    /**
+     * Set the progress percent of the apply phases.
+     *
+     * @param percent The progress percent, between {@value #RETRIEVAL_PERCENT} and {@code 100}.
+     */
+    void setApplyPercent(int percent) {
+        this.applyPercent = percent;
+        notifyListener();
+    }
+
+    /**
+     * Get the number of lines read from all hosts sources.
+     *
+     * @return The number of read lines.
+     */
+    long getLineCount() {
+        return this.lineCount.get();
+    }
+
+    /**
+     * Get the apply progress.
+     *
+     * @return The apply progress percent, between {@code 0} and {@code 100}.
+     */
+    int getPercent() {
+        int applyPercent = this.applyPercent;
+        if (applyPercent > 0) {
+            return applyPercent;
+        }
+        int sourceCount = this.completed.length();
+        if (sourceCount == 0) {
+            return 0;
+        }
+        double retrieved = 0;
+        for (int index = 0; index < sourceCount; index++) {
+            if (this.completed.get(index) != 0) {
+                retrieved++;
+            } else {
+                long expected = this.expectedByteCounts.get(index);
+                if (expected > 0) {
+                    retrieved += Math.min(1, (double) this.readByteCounts.get(index) / expected);
+                }
+            }
+        }
+        return (int) (retrieved * RETRIEVAL_PERCENT / sourceCount);
+    }
+
+    /**
+     * Track the read bytes and lines of a hosts source stream.
+     * <p>
+     * The tracked stream fails with an {@link InterruptedIOException} once the apply
+     * cancellation is requested.
+     *
+     * @param index The hosts source index.
+     * @param input The hosts source stream.
+     * @return The tracked stream.
+     */
+    InputStream track(int index, InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                checkStreamCancelled();
+                int b = super.read();
+                if (b != -1) {
+                    onRead(index, 1, b == '\n' ? 1 : 0);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                checkStreamCancelled();
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    int lines = 0;
+                    for (int position = offset; position < offset + count; position++) {
+                        if (buffer[position] == '\n') {
+                            lines++;
+                        }
+                    }
+                    onRead(index, count, lines);
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(long count) throws IOException {
+                checkStreamCancelled();
+                long skipped = super.skip(count);
+                onRead(index, skipped, 0);
+                return skipped;
+            }
+        };
+    }
+
+    private void checkStreamCancelled() throws InterruptedIOException {
+        if (this.cancelled) {
+            throw new InterruptedIOException("Hosts file apply was cancelled.");
+        }
+    }
+
+    private void onRead(int index, long byteCount, int lineCount) {
+        this.readByteCounts.addAndGet(index, byteCount);
+        this.lineCount.addAndGet(lineCount);
+        notifyListener();
+    }
+
+    /**
+     * Notify the listener only if the progress percent changed.
+     */
+    private void notifyListener() {
+        int percent = getPercent();
+        if (percent != this.notifiedPercent) {
+            this.notifiedPercent = percent;
+            this.listener.run();
+        }
+    }
+}
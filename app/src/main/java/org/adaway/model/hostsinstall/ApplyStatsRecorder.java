@@ -0,0 +1,146 @@
+package org.adaway.model.hostsinstall;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import org.adaway.db.dao.ApplyStatDao;
+import org.adaway.db.entity.ApplyPhase;
+import org.adaway.db.entity.ApplyStat;
+import org.adaway.util.Constants;
+import org.adaway.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * This class records the statistics of the phases of an hosts file apply.
+ * <p>
+ * The used heap is sampled while the phases are in progress (see {@link #sampleHeap()} and
+ * {@link #sampling(WritableByteChannel)}) and each time a phase is recorded, so the peak heap is
+ * the highest sample since the apply started.
+ */
+class ApplyStatsRecorder {
+    /**
+     * The number of applies to keep the statistics of.
+     */
+    private static final int KEPT_APPLY_COUNT = 10;
+    /**
+     * The apply date, shared by all the recorded phases.
+     */
+    private final Date applyDate;
+    /**
+     * The apply start time (in milliseconds since boot).
+     */
+    private final long start;
+    /**
+     * The recorded phases.
+     */
+    private final List<ApplyStat> stats;
+    /**
+     * The highest used heap size sampled (in bytes).
+     */
+    private long peakHeap;
+
+    /**
+     * Constructor.
+     */
+    ApplyStatsRecorder() {
+        this.applyDate = new Date();
+        this.start = SystemClock.elapsedRealtime();
+        this.stats = new ArrayList<>();
+        this.peakHeap = 0;
+    }
+
+    /**
+     * Record a phase.
+     *
+     * @param phase    The recorded phase.
+     * @param duration The phase duration (in milliseconds).
+     * @return The phase statistics, to set its counters.
+     */
+    synchronized ApplyStat record(ApplyPhase phase, long duration) {
+        ApplyStat stat = new ApplyStat();
+        stat.setApplyDate(this.applyDate);
+        stat.setPhase(phase);
+        stat.setDuration(duration);
+        stat.setPeakHeap(sampleHeap());
+        this.stats.add(stat);
+        return stat;
+    }
+
+    /**
+     * Record the whole apply and save all the recorded phases.
+     * <p>
+     * Only the statistics of the last applies are kept.
+     *
+     * @param dao   The DAO to save the statistics to.
+     * @param error The apply error message, {@code null} if the apply succeeded.
+     */
+    void save(ApplyStatDao dao, @Nullable String error) {
+        ApplyStat total = record(ApplyPhase.TOTAL, SystemClock.elapsedRealtime() - this.start);
+        total.setError(error);
+        List<ApplyStat> stats;
+        synchronized (this) {
+            stats = new ArrayList<>(this.stats);
+        }
+        for (ApplyStat stat : stats) {
+            Log.d(Constants.TAG, "Apply phase " + stat.getPhase()
+                    + (stat.getSource() == null ? "" : " " + stat.getSource()) + ": "
+                    + stat.getDuration() + " ms, "
+                    + stat.getByteCount() + " bytes, "
+                    + stat.getLineCount() + " lines, "
+                    + stat.getRejectedLineCount() + " rejected, "
+                    + stat.getHostCount() + " hosts, "
+                    + stat.getPeakHeap() + " bytes peak heap"
+                    + (stat.getError() == null ? "" : " (" + stat.getError() + ")"));
+        }
+        try {
+            dao.insert(stats);
+            dao.keepLastApplies(KEPT_APPLY_COUNT);
+        } catch (RuntimeException exception) {
+            Log.w(Constants.TAG, "Failed to save hosts file apply statistics.", exception);
+        }
+    }
+
+    /**
+     * Sample the used heap.
+     *
+     * @return The highest used heap size sampled (in bytes).
+     */
+    synchronized long sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        this.peakHeap = Math.max(this.peakHeap, runtime.totalMemory() - runtime.freeMemory());
+        return this.peakHeap;
+    }
+
+    /**
+     * Wrap a channel to sample the used heap each time a buffer is written to it.
+     *
+     * @param channel The channel to wrap.
+     * @return The sampling channel.
+     */
+    WritableByteChannel sampling(WritableByteChannel channel) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer buffer) throws IOException {
+                sampleHeap();
+                return channel.write(buffer);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
@@ -18,4 +18,5 @@ public enum HostsInstallError {
     APN_PROXY,
     SYMLINK_FAILED,
     ROOT_ACCESS_DENIED,
+    CANCELLED,
 }
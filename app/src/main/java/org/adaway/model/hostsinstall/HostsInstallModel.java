@@ -1,6 +1,7 @@
 package org.adaway.model.hostsinstall;
 
 import android.content.Context;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -8,11 +9,23 @@ import androidx.annotation.StringRes;
 
 import com.annimon.stream.Collectors;
 import com.annimon.stream.Stream;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CountingInputStream;
 
 import org.adaway.R;
+import org.adaway.hosts.HostsCompiler;
+import org.adaway.hosts.HostsCompilerOptions;
+import org.adaway.hosts.HostsFileReader;
+import org.adaway.hosts.HostsFileWriter;
+import org.adaway.hosts.HostsFormat;
+import org.adaway.hosts.HostsParser;
+import org.adaway.hosts.HostsRun;
 import org.adaway.db.AppDatabase;
 import org.adaway.db.dao.HostListItemDao;
 import org.adaway.db.dao.HostsSourceDao;
+import org.adaway.db.entity.ApplyPhase;
+import org.adaway.db.entity.ApplyStat;
 import org.adaway.db.entity.HostListItem;
 import org.adaway.db.entity.HostsSource;
 import org.adaway.helper.PreferenceHelper;
@@ -21,10 +34,10 @@ import org.adaway.util.ApplyUtils;
 import org.adaway.util.CommandException;
 import org.adaway.util.Constants;
 import org.adaway.util.DateUtils;
-import org.adaway.util.HostsParser;
 import org.adaway.util.Log;
 import org.adaway.util.NotEnoughSpaceException;
 import org.adaway.util.RemountException;
+import org.adaway.util.TeeInputStream;
 import org.adaway.util.Utils;
 import org.sufficientlysecure.rootcommands.Shell;
 import org.sufficientlysecure.rootcommands.util.RootAccessDeniedException;
@@ -32,36 +45,41 @@ import org.threeten.bp.DateTimeUtils;
 import org.threeten.bp.Instant;
 
 import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import static org.adaway.model.hostsinstall.HostsInstallError.APPLY_FAIL;
+import static org.adaway.model.hostsinstall.HostsInstallError.CANCELLED;
 import static org.adaway.model.hostsinstall.HostsInstallError.COPY_FAIL;
 import static org.adaway.model.hostsinstall.HostsInstallError.DOWNLOAD_FAIL;
 import static org.adaway.model.hostsinstall.HostsInstallError.NOT_ENOUGH_SPACE;
@@ -101,6 +119,26 @@ public class HostsInstallModel extends Observable {
      * The HTTP client to download hosts sources ({@code null} until initialized by {@link #getHttpClient()}).
      */
     private OkHttpClient httpClient;
+    /**
+     * The compiler holding the retrieved hosts sources ({@code null} until hosts sources are retrieved).
+     */
+    private HostsCompiler hostsCompiler;
+    /**
+     * The hosts sources retrieval results of the last retrieval.
+     */
+    private List<HostsSourceRetrieval> lastRetrievals;
+    /**
+     * The statistics recorder of the current apply ({@code null} if no apply is in progress).
+     */
+    private ApplyStatsRecorder applyStats;
+    /**
+     * The progress of the current apply ({@code null} if no apply is in progress).
+     */
+    private volatile ApplyProgress applyProgress;
+    /**
+     * The cached copies of the downloaded hosts sources.
+     */
+    private final HostsSourceCache sourceCache;
 
     /**
      * Constructor.
@@ -111,6 +149,8 @@ public class HostsInstallModel extends Observable {
         this.context = context;
         state = "";
         detailedState = "";
+        lastRetrievals = Collections.emptyList();
+        sourceCache = new HostsSourceCache(context);
     }
 
     /**
@@ -158,6 +198,36 @@ public class HostsInstallModel extends Observable {
         return detailedState;
     }
 
+    /**
+     * Get the progress of the current apply.
+     *
+     * @return The apply progress percent, {@code -1} if no apply is in progress.
+     */
+    public int getProgress() {
+        ApplyProgress progress = applyProgress;
+        return progress == null ? -1 : progress.getPercent();
+    }
+
+    /**
+     * Request the cancellation of the current apply.
+     * <p>
+     * The apply stops at the next hosts source read or apply phase and fails with a
+     * {@link HostsInstallError#CANCELLED} error. Once the new hosts file is being copied, the
+     * apply can no longer be cancelled so the installed hosts file is never left partially
+     * written. The hosts sources already retrieved are kept cached so the next apply does not
+     * download them again.
+     */
+    public void cancel() {
+        ApplyProgress progress = applyProgress;
+        if (progress == null) {
+            return;
+        }
+        Log.i(Constants.TAG, "Cancelling hosts file apply.");
+        progress.cancel();
+        // Abort pending downloads
+        getHttpClient().dispatcher().cancelAll();
+    }
+
     /**
      * Check if there is update available in hosts sources.
      *
@@ -188,7 +258,7 @@ public class HostsInstallModel extends Observable {
             // Update state
             setStateAndDetails(R.string.status_checking, sourceUrl);
             // Get hosts source last update
-            Date lastModifiedOnline = getHostsSourceLastUpdate(sourceUrl);
+            Date lastModifiedOnline = getHostsSourceLastUpdate(source);
             // Some help with debug here
             Log.d(Constants.TAG, "lastModifiedLocal: "
                     + (lastModifiedLocal == null ? "not defined" : lastModifiedLocal)
@@ -225,12 +295,16 @@ public class HostsInstallModel extends Observable {
 
     /**
      * Get the hosts source last online update.
+     * <p>
+     * The request is conditional on the validators of the hosts source cached copy, so a hosts
+     * source not modified since it was cached keeps its known last online update.
      *
-     * @param url The hosts source URL to get last online update.
+     * @param source The hosts source to get last online update.
      * @return The last online date, {@code null} if the date could not be retrieved.
      */
     @Nullable
-    private Date getHostsSourceLastUpdate(String url) {
+    private Date getHostsSourceLastUpdate(HostsSource source) {
+        String url = source.getUrl();
         Log.v(Constants.TAG, "Checking hosts file: " + url);
         // Check Git hosting
         if (GitHostsSource.isHostedOnGit(url)) {
@@ -242,29 +316,92 @@ public class HostsInstallModel extends Observable {
             }
         }
         // Default hosting
-        URLConnection connection = null;
-        try {
-            /* build connection */
-            URL mURL = new URL(url);
-            connection = mURL.openConnection();
-            connection.setConnectTimeout(15000);
-            connection.setReadTimeout(30000);
-            long lastModified = connection.getLastModified();
-            return new Date(lastModified);
-        } catch (Exception exception) {
-            Log.e(Constants.TAG, "Exception while downloading from " + url, exception);
+        Request request = newConditionalRequest(source)
+                .head()
+                .build();
+        try (Response response = getHttpClient().newCall(request).execute()) {
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Log.d(Constants.TAG, "Hosts source " + url + " was not modified since cached.");
+                // Keep the known online date, or consider the source as installed if it is unknown
+                Date lastOnlineModification = source.getLastOnlineModification();
+                return lastOnlineModification == null ? source.getLastLocalModification() : lastOnlineModification;
+            }
+            if (!response.isSuccessful()) {
+                Log.w(Constants.TAG, "Failed to check hosts file " + url + ": HTTP " + response.code() + ".");
+                return null;
+            }
+            Date lastModified = parseLastModified(url, response.header("Last-Modified"));
+            if (lastModified != null) {
+                return lastModified;
+            }
+            // Fall back to entity tag comparison if no last modified date is available
+            String entityTag = response.header("ETag");
+            if (entityTag != null && !entityTag.equals(source.getCachedEntityTag())) {
+                return DateTimeUtils.toDate(Instant.now());
+            }
+            return new Date(0);
+        } catch (IOException exception) {
+            Log.e(Constants.TAG, "Exception while checking " + url, exception);
             return null;
-        } finally {
-            if (connection instanceof HttpURLConnection) {
-                ((HttpURLConnection) connection).disconnect();
+        }
+    }
+
+    /**
+     * Create a request builder for a hosts source, conditional on the validators of its cached copy.
+     *
+     * @param source The hosts source to request.
+     * @return The request builder.
+     */
+    private Request.Builder newConditionalRequest(HostsSource source) {
+        String url = source.getUrl();
+        Request.Builder builder = new Request.Builder().url(url);
+        // Only send validators if the matching cached copy is still available
+        if (sourceCache.getFile(url).isFile()) {
+            String entityTag = source.getCachedEntityTag();
+            if (entityTag != null) {
+                builder.header("If-None-Match", entityTag);
+            }
+            String lastModified = source.getCachedLastModified();
+            if (lastModified != null) {
+                builder.header("If-Modified-Since", lastModified);
             }
         }
+        return builder;
+    }
+
+    /**
+     * Parse a Last-Modified HTTP header value.
+     *
+     * @param url    The URL of the hosts source the header comes from.
+     * @param header The header value to parse.
+     * @return The last modified date, {@code null} if not available or not valid.
+     */
+    @Nullable
+    private static Date parseLastModified(String url, @Nullable String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            return format.parse(header);
+        } catch (ParseException exception) {
+            Log.w(Constants.TAG, "Failed to parse Last-Modified header from " + url + ": " + header + ".", exception);
+            return null;
+        }
     }
 
     /**
-     * Retrieve all hosts sources files to copy into a private local file.
+     * Retrieve all hosts sources files and parse them while they are downloaded.
+     * <p>
+     * Hosts sources are retrieved concurrently (up to the download parallelism preference), each
+     * into its own parser. Unmodified hosts sources are restored from their snapshot instead of
+     * being parsed again, its sorted blacklist being used as run. The parsed hosts sources are then added to a {@link HostsCompiler} in
+     * hosts sources order so the result does not depend on which source completes first.
+     * <p>
+     * A cancelled retrieval keeps the cached copies of the hosts sources already retrieved.
      *
-     * @throws HostsInstallException If the hosts sources could not be downloaded.
+     * @throws HostsInstallException If the hosts sources could not be downloaded or the
+     *                               retrieval was cancelled.
      */
     public void retrieveHostsSources() throws HostsInstallException {
         HostsSourceDao hostsSourceDao = AppDatabase.getInstance(context).hostsSourceDao();
@@ -274,183 +411,557 @@ public class HostsInstallModel extends Observable {
         }
         // Update state to downloading
         setStateAndDetails(R.string.download_dialog, "");
-        // Initialize copy counters
-        int numberOfCopies = 0;
-        int numberOfFailedCopies = 0;
-        // Open local private file and get cursor to enabled hosts sources
-        try (FileOutputStream out = context.openFileOutput(Constants.DOWNLOADED_HOSTS_FILENAME, Context.MODE_PRIVATE)) {
-            // Get each hosts source
-            for (HostsSource hostsSource : hostsSourceDao.getEnabled()) {
-                // Increment number of copy
-                numberOfCopies++;
-                boolean copySuccess = false;
-                // Check hosts source protocol
-                String url = hostsSource.getUrl();
-                String protocol = new URL(url).getProtocol();
-                switch (protocol) {
-                    case "https":
-                        copySuccess = downloadHostSource(hostsSource, out);
-                        break;
-                    case "file":
-                        copySuccess = copyHostSourceFile(hostsSource, out);
-                        break;
-                    default:
-                        Log.w(Constants.TAG, "Hosts source protocol " + protocol + " is not supported.");
-                }
-                if (!copySuccess) {
-                    // Increment number of failed copy
-                    numberOfFailedCopies++;
+        // Start recording apply statistics
+        ApplyStatsRecorder stats = new ApplyStatsRecorder();
+        applyStats = stats;
+        long start = SystemClock.elapsedRealtime();
+        // Remove cached copies of deleted hosts sources
+        sourceCache.retain(Stream.of(hostsSourceDao.getAll()).map(HostsSource::getUrl).collect(Collectors.toList()));
+        // Get hosts sources
+        List<HostsSource> hostsSources = hostsSourceDao.getEnabled();
+        int sourceCount = hostsSources.size();
+        ApplyProgress progress = new ApplyProgress(sourceCount, this::notifyProgress);
+        applyProgress = progress;
+        // Release hosts sources of previous retrieval
+        deleteHostsSources();
+        HostsCompiler compiler = new HostsCompiler(getCompilerOptions(), getHostsRunDirectory());
+        // Retrieve each hosts source into its own parser with bounded parallelism
+        int parallelism = Math.max(1, Math.min(PreferenceHelper.getDownloadParallelism(context), sourceCount));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<HostsParser> sourceParsers = new ArrayList<>(sourceCount);
+        HostsRun[] sourceRuns = new HostsRun[sourceCount];
+        List<Future<HostsSourceRetrieval>> futures = new ArrayList<>(sourceCount);
+        List<HostsSourceRetrieval> retrievals = new ArrayList<>(sourceCount);
+        long byteCount = 0;
+        long lineCount = 0;
+        long rejectedLineCount = 0;
+        long hostCount = 0;
+        try {
+            for (int index = 0; index < sourceCount; index++) {
+                HostsSource hostsSource = hostsSources.get(index);
+                HostsParser sourceParser = compiler.createSourceParser();
+                int runIndex = index;
+                sourceParsers.add(sourceParser);
+                futures.add(executor.submit(() -> {
+                    try {
+                        HostsSourceRetrieval retrieval = retrieveHostsSource(hostsSource, compiler, sourceParser,
+                                sourceRuns, progress, runIndex);
+                        // Sample heap while the source parser holds all its host names
+                        stats.sampleHeap();
+                        // Hosts sources restored from snapshot already have their run
+                        if (retrieval.isSuccess() && !progress.isCancelled() && sourceRuns[runIndex] == null) {
+                            // Sort blocked host names and release them from source parser
+                            sourceRuns[runIndex] = compiler.createRun(sourceParser);
+                        }
+                        return retrieval;
+                    } finally {
+                        progress.complete(runIndex);
+                    }
+                }));
+            }
+            // Merge parsed hosts sources in hosts sources order
+            for (int index = 0; index < sourceCount; index++) {
+                progress.checkCancelled();
+                HostsSourceRetrieval retrieval = getRetrieval(hostsSources.get(index), futures.get(index));
+                retrievals.add(retrieval);
+                Log.d(Constants.TAG, "Hosts source " + retrieval);
+                HostsRun run = sourceRuns[index];
+                ApplyStat sourceStat = stats.record(ApplyPhase.DOWNLOAD, retrieval.getDuration());
+                sourceStat.setSource(retrieval.getUrl());
+                sourceStat.setByteCount(retrieval.getByteCount());
+                sourceStat.setError(retrieval.getError());
+                if (retrieval.isSuccess() && run != null) {
+                    HostsParser sourceParser = sourceParsers.get(index);
+                    // Hosts sources restored from snapshot are not parsed
+                    if (sourceParser.getLineCount() != 0) {
+                        Log.d(Constants.TAG, "Hosts source " + retrieval.getUrl() + " parsed: "
+                                + sourceParser.getLineCount() + " lines, "
+                                + sourceParser.getRejectedLineCount() + " rejected, "
+                                + run.size() + " unique blocked hosts, "
+                                + (sourceParser.getBlockedEntryCount() - run.size()) + " duplicates, "
+                                + sourceParser.getSharedHostnameCount() + " shared with other sources.");
+                    }
+                    sourceStat.setLineCount(sourceParser.getLineCount());
+                    sourceStat.setRejectedLineCount(sourceParser.getRejectedLineCount());
+                    sourceStat.setHostCount(run.size());
+                    compiler.addSource(sourceParser, run);
                 }
+                byteCount += sourceStat.getByteCount();
+                lineCount += sourceStat.getLineCount();
+                rejectedLineCount += sourceStat.getRejectedLineCount();
+                hostCount += sourceStat.getHostCount();
+                // Release source parser
+                sourceParsers.set(index, null);
+            }
+            progress.checkCancelled();
+        } catch (HostsInstallException exception) {
+            // Wait for pending retrievals to stop before releasing their compiler
+            awaitTermination(executor);
+            compiler.close();
+            endApply(exception);
+            throw exception;
+        } finally {
+            executor.shutdownNow();
+        }
+        ApplyStat parseStat = stats.record(ApplyPhase.PARSE, SystemClock.elapsedRealtime() - start);
+        parseStat.setByteCount(byteCount);
+        parseStat.setLineCount(lineCount);
+        parseStat.setRejectedLineCount(rejectedLineCount);
+        parseStat.setHostCount(hostCount);
+        lastRetrievals = Collections.unmodifiableList(retrievals);
+        // Check if all copies failed
+        boolean anySuccess = Stream.of(retrievals).anyMatch(HostsSourceRetrieval::isSuccess);
+        if (!anySuccess && sourceCount != 0) {
+            compiler.close();
+            HostsInstallException exception = new HostsInstallException(DOWNLOAD_FAIL, "No hosts sources files was copied: all copies failed.");
+            endApply(exception);
+            throw exception;
+        }
+        hostsCompiler = compiler;
+    }
+
+    /**
+     * Stop the hosts sources retrievals and wait for them to complete.
+     *
+     * @param executor The executor running the hosts sources retrievals.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                Log.w(Constants.TAG, "Hosts sources retrievals did not stop in time.");
             }
-            // Check if all copies failed
-            if (numberOfCopies == numberOfFailedCopies && numberOfCopies != 0) {
-                throw new HostsInstallException(DOWNLOAD_FAIL, "No hosts sources files was copied: all copies failed.");
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the hosts compiler options from preferences.
+     *
+     * @return The hosts compiler options.
+     */
+    private HostsCompilerOptions getCompilerOptions() {
+        // Use whitelist and/or redirection rules from hosts sources only if enabled in preferences
+        return new HostsCompilerOptions(
+                PreferenceHelper.getWhitelistRules(context),
+                PreferenceHelper.getRedirectionRules(context),
+                PreferenceHelper.getRedirectionIpv4(context),
+                PreferenceHelper.getRedirectionIpv6(context),
+                PreferenceHelper.getEnableIpv6(context)
+        );
+    }
+
+    /**
+     * Get the directory to spill hosts runs to.
+     *
+     * @return The hosts runs directory.
+     */
+    private File getHostsRunDirectory() {
+        File directory = new File(context.getCacheDir(), "runs");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(Constants.TAG, "Failed to create hosts runs directory.");
+        }
+        return directory;
+    }
+
+    /**
+     * Get the retrieval results of the hosts sources from the last
+     * {@link #retrieveHostsSources()} call, in hosts sources order.
+     *
+     * @return The last hosts sources retrieval results.
+     */
+    public List<HostsSourceRetrieval> getLastRetrievals() {
+        return lastRetrievals;
+    }
+
+    /**
+     * Wait for a hosts source retrieval to complete.
+     *
+     * @param hostsSource The retrieved hosts source.
+     * @param future      The hosts source retrieval future.
+     * @return The hosts source retrieval result.
+     * @throws HostsInstallException If the retrieval was interrupted.
+     */
+    private HostsSourceRetrieval getRetrieval(HostsSource hostsSource, Future<HostsSourceRetrieval> future)
+            throws HostsInstallException {
+        try {
+            return future.get();
+        } catch (ExecutionException exception) {
+            Log.e(Constants.TAG, "Unexpected error while retrieving hosts source " + hostsSource.getUrl() + ".", exception);
+            return new HostsSourceRetrieval(hostsSource.getUrl(), false, 0, 0, String.valueOf(exception.getCause()));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new HostsInstallException(DOWNLOAD_FAIL, "Hosts sources retrieval was interrupted.", exception);
+        }
+    }
+
+    /**
+     * Retrieve a hosts source file and parse it.
+     *
+     * @param hostsSource The hosts source to retrieve.
+     * @param compiler    The compiler to create the hosts source run from its snapshot.
+     * @param parser      The parser to add the hosts file content to.
+     * @param runs        The hosts sources runs, to set the run restored from snapshot to.
+     * @param progress    The apply progress.
+     * @param index       The hosts source index in the apply progress and runs.
+     * @return The hosts source retrieval result.
+     */
+    private HostsSourceRetrieval retrieveHostsSource(HostsSource hostsSource, HostsCompiler compiler, HostsParser parser,
+                                                     HostsRun[] runs, ApplyProgress progress, int index) {
+        String url = hostsSource.getUrl();
+        if (progress.isCancelled()) {
+            return new HostsSourceRetrieval(url, false, 0, 0, "Cancelled.");
+        }
+        // Set state to downloading hosts source
+        setStateAndDetails(R.string.download_dialog, url);
+        long start = SystemClock.elapsedRealtime();
+        long byteCount = 0;
+        String error = null;
+        try {
+            // Check hosts source protocol
+            String protocol = new URL(url).getProtocol();
+            switch (protocol) {
+                case "https":
+                    byteCount = downloadHostSource(hostsSource, compiler, parser, runs, progress, index);
+                    break;
+                case "file":
+                    byteCount = copyHostSourceFile(hostsSource, compiler, parser, runs, progress, index);
+                    break;
+                default:
+                    error = "Hosts source protocol " + protocol + " is not supported.";
+                    Log.w(Constants.TAG, error);
             }
-        } catch (IOException exception) {
-            throw new HostsInstallException(PRIVATE_FILE_FAIL, "An error happened with private file while copying hosts sources files.", exception);
+        } catch (MalformedURLException exception) {
+            error = "Hosts source URL is not valid.";
+            Log.w(Constants.TAG, "Hosts source URL " + url + " is not valid.", exception);
+        } catch (IOException | URISyntaxException exception) {
+            error = exception.toString();
+            Log.e(Constants.TAG, "Exception while retrieving hosts file from " + url + ".", exception);
         }
+        long duration = SystemClock.elapsedRealtime() - start;
+        return new HostsSourceRetrieval(url, error == null, byteCount, duration, error);
     }
 
     /**
      * Get the HTTP client to download hosts sources.
+     * <p>
+     * The client is shared by all concurrent downloads to reuse its connection pool.
      *
      * @return The HTTP client to download hosts sources.
      */
     @NonNull
-    private OkHttpClient getHttpClient() {
+    private synchronized OkHttpClient getHttpClient() {
         if (httpClient == null) {
-            httpClient = new OkHttpClient.Builder()
-                    .cache(new Cache(context.getCacheDir(), 100 * 1024 * 1024))
-                    .build();
+            httpClient = new OkHttpClient.Builder().build();
         }
         return httpClient;
     }
 
     /**
-     * Download an hosts source file and append it to a private file.
+     * Download an hosts source file and parse it while it is downloaded.
+     * <p>
+     * The downloaded content is kept as the hosts source cached copy and its parsed content as
+     * snapshot. If the server answers the hosts source was not modified since cached, the snapshot
+     * (or the cached copy if the snapshot is not valid) is added to the parser instead.
+     * <p>
+     * The cached copy is only replaced once the whole content is parsed, so an interrupted
+     * download keeps the previous cached copy and its validators.
      *
      * @param hostsSource The hosts source to download.
-     * @param out         The output stream to append the hosts file content to.
-     * @return {@code true} if the hosts was successfully downloaded, {@code false} otherwise.
+     * @param compiler    The compiler to create the hosts source run from its snapshot.
+     * @param parser      The empty parser to add the hosts file content to.
+     * @param runs        The hosts sources runs, to set the run restored from snapshot to.
+     * @param progress    The apply progress.
+     * @param index       The hosts source index in the apply progress and runs.
+     * @return The number of downloaded bytes.
+     * @throws IOException If the hosts source could not be downloaded.
      */
-    private boolean downloadHostSource(HostsSource hostsSource, FileOutputStream out) {
+    private long downloadHostSource(HostsSource hostsSource, HostsCompiler compiler, HostsParser parser,
+                                    HostsRun[] runs, ApplyProgress progress, int index) throws IOException {
         HostsSourceDao hostsSourceDao = AppDatabase.getInstance(context).hostsSourceDao();
         // Get hosts file URL
         String hostsFileUrl = hostsSource.getUrl();
         Log.v(Constants.TAG, "Downloading hosts file: " + hostsFileUrl);
-        // Set state to downloading hosts source
-        setStateAndDetails(R.string.download_dialog, hostsFileUrl);
         // Get HTTP client
         OkHttpClient httpClient = getHttpClient();
         // Create request
-        Request request = new Request.Builder()
-                .url(hostsFileUrl)
-                .build();
+        Request request = newConditionalRequest(hostsSource).build();
         // Request hosts file and open byte stream
-        try (Response response = httpClient.newCall(request).execute();
-             InputStream inputStream = response.body().byteStream()) {
-            // Copy hosts content to private file
-            copyHostsContent(inputStream, out);
-            // Save last modified online for later use
-            String lastModifiedHeader = response.header("Last-Modified");
-            if (lastModifiedHeader != null) {
-                try {
-                    // Parse last modified date
-                    SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
-                    Date lastModified = format.parse(lastModifiedHeader);
-                    // Update last_modified_online (null if not available or error happened)
-                    hostsSourceDao.updateOnlineModificationDate(hostsFileUrl, lastModified);
-                } catch (ParseException exception) {
-                    Log.w(Constants.TAG, "Failed to parse Last-Modified header from " + hostsFileUrl + ": " + lastModifiedHeader + ".", exception);
+        try (Response response = httpClient.newCall(request).execute()) {
+            // Check if cached copy is still valid
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Log.d(Constants.TAG, "Hosts source " + hostsFileUrl + " was not modified, using cached copy.");
+                String snapshotKey = getSnapshotKey(hostsSource.getCachedEntityTag(), hostsSource.getCachedLastModified());
+                if (!addSnapshot(hostsFileUrl, snapshotKey, compiler, parser, runs, index)) {
+                    parseFile(sourceCache.getFile(hostsFileUrl), parser);
+                    writeSnapshot(hostsFileUrl, snapshotKey, parser);
                 }
+                return 0;
             }
-        } catch (IOException exception) {
-            Log.e(Constants.TAG, "Exception while downloading hosts file from " + hostsFileUrl + ".", exception);
-            // Return download failed
-            return false;
+            if (!response.isSuccessful()) {
+                throw new IOException("Failed to download hosts file: HTTP " + response.code() + ".");
+            }
+            // Estimate content size from previous cached copy if not provided
+            long contentLength = response.body().contentLength();
+            progress.setExpectedByteCount(index, contentLength > 0 ? contentLength : sourceCache.getFile(hostsFileUrl).length());
+            // Parse hosts content as it is received and write it as new cached copy
+            long byteCount;
+            File cacheFile = sourceCache.getTemporaryFile(hostsFileUrl);
+            try (OutputStream cacheStream = new BufferedOutputStream(new FileOutputStream(cacheFile));
+                 CountingInputStream inputStream = new CountingInputStream(
+                         new TeeInputStream(progress.track(index, response.body().byteStream()), cacheStream))) {
+                parser.parse(inputStream);
+                byteCount = inputStream.getCount();
+            } catch (IOException exception) {
+                // Discard partial copy
+                if (!cacheFile.delete()) {
+                    Log.w(Constants.TAG, "Failed to delete partial copy of hosts file " + hostsFileUrl + ".");
+                }
+                throw exception;
+            }
+            // Save cached copy validators
+            String entityTag = response.header("ETag");
+            String lastModifiedHeader = response.header("Last-Modified");
+            if (sourceCache.commit(hostsFileUrl)) {
+                hostsSourceDao.updateCacheValidators(hostsFileUrl, entityTag, lastModifiedHeader);
+                writeSnapshot(hostsFileUrl, getSnapshotKey(entityTag, lastModifiedHeader), parser);
+            } else {
+                Log.w(Constants.TAG, "Failed to save cached copy of hosts file " + hostsFileUrl + ".");
+                sourceCache.delete(hostsFileUrl);
+                hostsSourceDao.updateCacheValidators(hostsFileUrl, null, null);
+            }
+            // Save last modified online for later use
+            Date lastModified = parseLastModified(hostsFileUrl, lastModifiedHeader);
+            if (lastModified != null) {
+                // Update last_modified_online (null if not available or error happened)
+                hostsSourceDao.updateOnlineModificationDate(hostsFileUrl, lastModified);
+            }
+            // Return downloaded byte count
+            return byteCount;
         }
-        // Return download successful
-        return true;
     }
 
     /**
-     * Copy a hosts source file and append it to a private file.
+     * Read a hosts source file and parse it.
+     * <p>
+     * The hosts source snapshot is used instead if the file was not modified since it was parsed.
      *
      * @param hostsSource The hosts source to download.
-     * @param out         The output stream to append the hosts file content to.
-     * @return {@code true} if the hosts was successfully downloaded, {@code false} otherwise.
+     * @param compiler    The compiler to create the hosts source run from its snapshot.
+     * @param parser      The empty parser to add the hosts file content to.
+     * @param runs        The hosts sources runs, to set the run restored from snapshot to.
+     * @param progress    The apply progress.
+     * @param index       The hosts source index in the apply progress and runs.
+     * @return The number of read bytes.
+     * @throws IOException        If the hosts source file could not be read.
+     * @throws URISyntaxException If the hosts source URL is not a valid file URI.
      */
-    private boolean copyHostSourceFile(HostsSource hostsSource, FileOutputStream out) {
+    private long copyHostSourceFile(HostsSource hostsSource, HostsCompiler compiler, HostsParser parser,
+                                    HostsRun[] runs, ApplyProgress progress, int index)
+            throws IOException, URISyntaxException {
         HostsSourceDao hostsSourceDao = AppDatabase.getInstance(context).hostsSourceDao();
         // Get hosts file URL
         String hostsFileUrl = hostsSource.getUrl();
         Log.v(Constants.TAG, "Copying hosts source file: " + hostsFileUrl);
-        // Set state to downloading hosts source
-        setStateAndDetails(R.string.download_dialog, hostsFileUrl);
         // Declare last modification date
         Date lastModified = null;
         try {
             // Get file from URL
             File hostsSourceFile = new File(new URL(hostsFileUrl).toURI());
-            // Copy hosts file source to private file
-            try (InputStream inputStream = new FileInputStream(hostsSourceFile)) {
-                copyHostsContent(inputStream, out);
+            // Check snapshot of unmodified file
+            long fileLastModified = hostsSourceFile.lastModified();
+            progress.setExpectedByteCount(index, hostsSourceFile.length());
+            String snapshotKey = fileLastModified + ":" + hostsSourceFile.length();
+            long byteCount = 0;
+            if (!addSnapshot(hostsFileUrl, snapshotKey, compiler, parser, runs, index)) {
+                // Parse hosts file source
+                byteCount = parseFile(hostsSourceFile, parser);
+                writeSnapshot(hostsFileUrl, snapshotKey, parser);
             }
             // Get last modified date
-            lastModified = new Date(hostsSourceFile.lastModified());
-        } catch (IOException | URISyntaxException exception) {
-            Log.e(Constants.TAG, "Error while copying hosts file from " + hostsFileUrl + ".", exception);
-            // Return copy failed
-            return false;
+            lastModified = new Date(fileLastModified);
+            // Return read byte count
+            return byteCount;
         } finally {
             // Update last_modified_online (null if not available or error happened)
             hostsSourceDao.updateOnlineModificationDate(hostsFileUrl, lastModified);
         }
-        // Return copy successful
+    }
+
+    /**
+     * Parse a local hosts file.
+     * <p>
+     * The hosts file is mapped in memory and, as the whole content is available, it is split and
+     * parsed in parallel.
+     *
+     * @param file   The hosts file to parse.
+     * @param parser The parser to add the hosts file content to.
+     * @return The number of read bytes.
+     * @throws IOException If the hosts file could not be read.
+     */
+    private static long parseFile(File file, HostsParser parser) throws IOException {
+        HostsFileReader reader = HostsFileReader.open(file);
+        parser.parse(reader.getContent(), ForkJoinPool.commonPool());
+        return reader.size();
+    }
+
+    /**
+     * Get the snapshot key of a downloaded hosts source.
+     *
+     * @param entityTag    The ETag header of the downloaded content.
+     * @param lastModified The Last-Modified header of the downloaded content.
+     * @return The snapshot key of the downloaded content.
+     */
+    private static String getSnapshotKey(@Nullable String entityTag, @Nullable String lastModified) {
+        return entityTag + "|" + lastModified;
+    }
+
+    /**
+     * Restore a hosts source from its snapshot.
+     * <p>
+     * The snapshot blacklist is already sorted so it becomes the hosts source run as is. Only the
+     * snapshot whitelist and redirections are added to the parser.
+     *
+     * @param url      The hosts source URL.
+     * @param key      The key of the hosts source content.
+     * @param compiler The compiler to create the hosts source run.
+     * @param parser   The parser to add the snapshot whitelist and redirections to.
+     * @param runs     The hosts sources runs, to set the restored run to.
+     * @param index    The hosts source index in runs.
+     * @return {@code true} if a valid snapshot was restored, {@code false} otherwise.
+     */
+    private boolean addSnapshot(String url, String key, HostsCompiler compiler, HostsParser parser,
+                                HostsRun[] runs, int index) {
+        HostsSourceSnapshot snapshot = HostsSourceSnapshot.read(
+                sourceCache.getSnapshotFile(url),
+                key,
+                parser.isParseWhitelist(),
+                parser.isParseRedirections()
+        );
+        if (snapshot == null) {
+            return false;
+        }
+        snapshot.addTo(parser);
+        runs[index] = compiler.createRun(snapshot.getBlacklist());
+        Log.d(Constants.TAG, "Hosts source " + url + " added from snapshot: " + snapshot.size() + " entries.");
         return true;
     }
 
     /**
-     * Copy an {@link InputStream} hosts content to an {@link java.io.OutputStream}.
+     * Write the snapshot of a hosts source.
      *
-     * @param inputStream  The input stream to copy from.
-     * @param outputStream The output stream to copy to.
-     * @throws IOException If the input stream could not be read or output stream could not be written.
+     * @param url    The hosts source URL.
+     * @param key    The key of the hosts source content.
+     * @param parser The parser holding only the hosts source content.
      */
-    private void copyHostsContent(InputStream inputStream, FileOutputStream outputStream) throws IOException {
-        // Read all content into output stream
-        byte[] data = new byte[1024];
-        int count;
-        // run while only when thread is not cancelled
-        while ((count = inputStream.read(data)) != -1) {
-            outputStream.write(data, 0, count);
+    private void writeSnapshot(String url, String key, HostsParser parser) {
+        boolean written = HostsSourceSnapshot.of(parser).write(
+                sourceCache.getSnapshotFile(url),
+                key,
+                parser.isParseWhitelist(),
+                parser.isParseRedirections()
+        );
+        if (!written) {
+            Log.w(Constants.TAG, "Failed to write snapshot of hosts source " + url + ".");
         }
-        // add line separator to add files together in one file
-        outputStream.write(Constants.LINE_SEPARATOR.getBytes());
     }
 
     /**
      * Apply hosts file.
+     * <p>
+     * The statistics of each apply phase, including the hosts sources retrieval, are saved once
+     * the apply completes or fails.
      *
-     * @throws HostsInstallException If the hosts file could not be applied.
+     * @throws HostsInstallException If the hosts file could not be applied or the apply was
+     *                               cancelled.
      */
     public void applyHostsFile() throws HostsInstallException {
+        if (applyStats == null) {
+            applyStats = new ApplyStatsRecorder();
+        }
+        if (applyProgress == null) {
+            applyProgress = new ApplyProgress(0, this::notifyProgress);
+        }
+        try {
+            installHostsFile();
+        } catch (HostsInstallException exception) {
+            endApply(exception);
+            throw exception;
+        }
+        endApply(null);
+    }
+
+    /**
+     * End the current apply.
+     *
+     * @param exception The apply failure cause, {@code null} if the apply succeeded.
+     */
+    private void endApply(@Nullable HostsInstallException exception) {
+        saveApplyStats(exception);
+        applyProgress = null;
+        if (exception != null && exception.getInstallError() == CANCELLED) {
+            deleteHostsSources();
+            setStateAndDetails(R.string.status_cancelled, R.string.status_cancelled_subtitle);
+        } else {
+            notifyProgress();
+        }
+    }
+
+    /**
+     * Save the statistics of the current apply.
+     *
+     * @param exception The apply failure cause, {@code null} if the apply succeeded.
+     */
+    private void saveApplyStats(@Nullable HostsInstallException exception) {
+        ApplyStatsRecorder stats = applyStats;
+        if (stats == null) {
+            return;
+        }
+        applyStats = null;
+        String error = exception == null ? null : exception.getInstallError() + ": " + exception.getMessage();
+        stats.save(AppDatabase.getInstance(context).applyStatDao(), error);
+    }
+
+    private void installHostsFile() throws HostsInstallException {
         // Create root shell
+        ApplyProgress progress = applyProgress;
         Shell shell = null;
         try {
+            progress.checkCancelled();
+            progress.setApplyPercent(ApplyProgress.RETRIEVAL_PERCENT);
             shell = Shell.startRootShell();
             setStateAndDetails(R.string.apply_dialog, R.string.apply_dialog_hosts);
             if (!checkHostsFileSymlink(shell)) {
                 throw new HostsInstallException(SYMLINK_MISSING, "The symlink to the hosts file target is missing.");
             }
-            createNewHostsFile();
+            String hash = createNewHostsFile(progress);
+            String version = getHostsFileTarget() + ":" + hash;
             deleteHostsSources();
-            copyNewHostsFile(shell);
+            // Last cancellation point before installed hosts file is modified
+            try {
+                progress.checkCancelled();
+            } catch (HostsInstallException exception) {
+                deleteNewHostsFile();
+                throw exception;
+            }
+            if (isHostsFileInstalled(version, hash)) {
+                Log.i(Constants.TAG, "Hosts file is already installed, skipping copy.");
+            } else {
+                copyNewHostsFile(shell);
+            }
             deleteNewHostsFile();
+            progress.setApplyPercent(95);
             setStateAndDetails(R.string.apply_dialog, R.string.apply_dialog_apply);
-            if (!checkInstalledHostsFile()) {
+            long verifyStart = SystemClock.elapsedRealtime();
+            boolean installed = checkInstalledHostsFile();
+            applyStats.record(ApplyPhase.VERIFY, SystemClock.elapsedRealtime() - verifyStart);
+            progress.setApplyPercent(100);
+            if (!installed) {
+                PreferenceHelper.setInstalledHostsVersion(context, null);
                 throw new HostsInstallException(APPLY_FAIL, "Failed to apply new hosts file.");
             }
+            PreferenceHelper.setInstalledHostsVersion(context, version);
             markHostsSourcesAsInstalled();
             setStateAndDetails(R.string.status_enabled, R.string.status_enabled_subtitle);
         } catch (RootAccessDeniedException exception) {
@@ -474,8 +985,57 @@ public class HostsInstallModel extends Observable {
     }
 
     private void deleteHostsSources() {
-        // delete downloaded hosts file from private storage
-        context.deleteFile(Constants.DOWNLOADED_HOSTS_FILENAME);
+        // release parsed hosts sources
+        if (hostsCompiler != null) {
+            hostsCompiler.close();
+            hostsCompiler = null;
+        }
+    }
+
+    /**
+     * Get the hosts file target according apply method.
+     *
+     * @return The hosts file target path.
+     */
+    private String getHostsFileTarget() {
+        String applyMethod = PreferenceHelper.getApplyMethod(context);
+        switch (applyMethod) {
+            case APPLY_TO_SYSTEM:
+                return Constants.ANDROID_SYSTEM_ETC_HOSTS;
+            case APPLY_TO_DATA_DATA:
+                return Constants.ANDROID_DATA_DATA_HOSTS;
+            case APPLY_TO_DATA:
+                return Constants.ANDROID_DATA_HOSTS;
+            case APPLY_TO_CUSTOM_TARGET:
+                return PreferenceHelper.getCustomTarget(context);
+            default:
+                throw new IllegalStateException("The apply method " + applyMethod + " is not supported.");
+        }
+    }
+
+    /**
+     * Check if the new hosts file is already installed.
+     * <p>
+     * The installed hosts file matches if it was installed with the same version and its content
+     * still has the same hash than the new hosts file (only the generation date of the header may
+     * differ).
+     *
+     * @param version The new hosts file version.
+     * @param hash    The hash of the new hosts file content, except its generation date.
+     * @return {@code true} if the new hosts file is already installed, {@code false} otherwise.
+     */
+    private boolean isHostsFileInstalled(String version, String hash) {
+        if (!version.equals(PreferenceHelper.getInstalledHostsVersion(context))) {
+            return false;
+        }
+        String target = getHostsFileTarget();
+        try (InputStream inputStream = new FileInputStream(target)) {
+            Hasher hasher = Hashing.sha256().newHasher();
+            return HostsCompiler.hashHosts(inputStream, hasher) && hash.equals(hasher.hash().toString());
+        } catch (IOException exception) {
+            Log.w(Constants.TAG, "Failed to hash the installed hosts file " + target + ".", exception);
+            return false;
+        }
     }
 
     /**
@@ -535,25 +1095,30 @@ public class HostsInstallModel extends Observable {
 
     private void copyNewHostsFile(Shell rootShell) throws HostsInstallException {
         // copy build hosts file with RootTools, based on target from preferences
+        long start = SystemClock.elapsedRealtime();
         try {
+            long remountDuration;
             String applyMethod = PreferenceHelper.getApplyMethod(context);
             switch (applyMethod) {
                 case APPLY_TO_SYSTEM:
-                    ApplyUtils.copyHostsFile(context, Constants.ANDROID_SYSTEM_ETC_HOSTS, rootShell);
+                    remountDuration = ApplyUtils.copyHostsFile(context, Constants.ANDROID_SYSTEM_ETC_HOSTS, rootShell);
                     break;
                 case APPLY_TO_DATA_DATA:
-                    ApplyUtils.copyHostsFile(context, Constants.ANDROID_DATA_DATA_HOSTS, rootShell);
+                    remountDuration = ApplyUtils.copyHostsFile(context, Constants.ANDROID_DATA_DATA_HOSTS, rootShell);
                     break;
                 case APPLY_TO_DATA:
-                    ApplyUtils.copyHostsFile(context, Constants.ANDROID_DATA_HOSTS, rootShell);
+                    remountDuration = ApplyUtils.copyHostsFile(context, Constants.ANDROID_DATA_HOSTS, rootShell);
                     break;
                 case APPLY_TO_CUSTOM_TARGET:
                     String customTarget = PreferenceHelper.getCustomTarget(context);
-                    ApplyUtils.copyHostsFile(context, customTarget, rootShell);
+                    remountDuration = ApplyUtils.copyHostsFile(context, customTarget, rootShell);
                     break;
                 default:
                     throw new IllegalStateException("The apply method " + applyMethod + " is not supported.");
             }
+            applyStats.record(ApplyPhase.REMOUNT, remountDuration);
+            ApplyStat copyStat = applyStats.record(ApplyPhase.COPY, SystemClock.elapsedRealtime() - start - remountDuration);
+            copyStat.setByteCount(context.getFileStreamPath(Constants.HOSTS_FILENAME).length());
         } catch (NotEnoughSpaceException exception) {
             throw new HostsInstallException(NOT_ENOUGH_SPACE, "Missing free space to copy new private hosts file to target hosts file.", exception);
         } catch (RemountException exception) {
@@ -566,15 +1131,49 @@ public class HostsInstallModel extends Observable {
     /**
      * Create a new hosts files in a private file from downloaded hosts sources.
      *
-     * @throws HostsInstallException If the new hosts file could not be created.
+     * @param progress The apply progress.
+     * @return The hash of the new hosts file content, except its generation date.
+     * @throws HostsInstallException If the new hosts file could not be created or the apply was
+     *                               cancelled.
      */
-    private void createNewHostsFile() throws HostsInstallException {
-        try (BufferedOutputStream outputStream = new BufferedOutputStream(context.openFileOutput(Constants.HOSTS_FILENAME,
-                Context.MODE_PRIVATE))) {
-            HostsParser parser = parseDownloadedHosts();
-            writeHostsHeader(outputStream);
-            writeLoopbackToHosts(outputStream);
-            writeHosts(outputStream, parser);
+    private String createNewHostsFile(ApplyProgress progress) throws HostsInstallException {
+        HostsCompiler compiler = hostsCompiler;
+        if (compiler == null) {
+            throw new HostsInstallException(DOWNLOAD_FAIL, "Hosts sources were not retrieved.");
+        }
+        applyUserList(compiler);
+        progress.checkCancelled();
+        progress.setApplyPercent(83);
+        long compileStart = SystemClock.elapsedRealtime();
+        // compile lists (removing whitelist entries, etc.)
+        compiler.compile();
+        progress.checkCancelled();
+        progress.setApplyPercent(86);
+        ApplyStat whitelistStat = applyStats.record(ApplyPhase.WHITELIST, SystemClock.elapsedRealtime() - compileStart);
+        List<String> sourceUrls = Stream.of(AppDatabase.getInstance(context).hostsSourceDao().getEnabled())
+                .map(HostsSource::getUrl)
+                .collect(Collectors.toList());
+        long start = SystemClock.elapsedRealtime();
+        // Sample heap each time a batch of merged host names is written
+        try (HostsFileWriter writer = new HostsFileWriter(applyStats.sampling(context.openFileOutput(
+                Constants.HOSTS_FILENAME, Context.MODE_PRIVATE).getChannel()))) {
+            compiler.writeHeaderDate(writer, new Date());
+            Hasher hasher = Hashing.sha256().newHasher();
+            writer.startHashing(hasher);
+            compiler.writeHosts(writer, sourceUrls);
+            writer.flush();
+            long duration = Math.max(1, SystemClock.elapsedRealtime() - start);
+            Log.d(Constants.TAG, "Wrote " + writer.getEntryCount() + " hosts entries, "
+                    + writer.getByteCount() + " bytes in " + duration + " ms ("
+                    + writer.getByteCount() * 1000 / duration + " bytes/s, "
+                    + writer.getAllocationCount() + " writer allocations).");
+            // Blocked host names are filtered by the whitelist while written
+            whitelistStat.setHostCount(compiler.getExcludedHostCount());
+            ApplyStat writeStat = applyStats.record(ApplyPhase.WRITE, duration);
+            writeStat.setByteCount(writer.getByteCount());
+            writeStat.setHostCount(writer.getEntryCount());
+            progress.setApplyPercent(90);
+            return hasher.hash().toString();
         } catch (FileNotFoundException exception) {
             throw new HostsInstallException(PRIVATE_FILE_FAIL, "Private hosts file was not found.", exception);
         } catch (IOException exception) {
@@ -582,99 +1181,23 @@ public class HostsInstallModel extends Observable {
         }
     }
 
-    private HostsParser parseDownloadedHosts() throws IOException {
-        // Get application context
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(context.openFileInput(Constants.DOWNLOADED_HOSTS_FILENAME)))) {
-            /* PARSE: parse hosts files to sets of host names and comments */
-            // Use whitelist and/or redirection rules from hosts sources only if enabled in preferences
-            HostsParser hostsParser = new HostsParser(reader, PreferenceHelper.getWhitelistRules(context), PreferenceHelper.getRedirectionRules(context));
-            applyUserList(hostsParser);
-            return hostsParser;
-        }
-    }
-
     /**
      * Apply user-defined lists.
      *
-     * @param parser The parser to which apply user-defined lists.
+     * @param compiler The compiler to which apply user-defined lists.
      */
-    private void applyUserList(HostsParser parser) {
+    private void applyUserList(HostsCompiler compiler) {
+        long start = SystemClock.elapsedRealtime();
         HostListItemDao hostListItemDao = AppDatabase.getInstance(context).hostsListItemDao();
         // Get list collections
         Set<String> blackListHosts = new HashSet<>(hostListItemDao.getEnabledBlackListHosts());
         Set<String> whiteListHosts = new HashSet<>(hostListItemDao.getEnabledWhiteListHosts());
         Map<String, String> redirectListHosts = Stream.of(hostListItemDao.getEnabledRedirectList())
                 .collect(Collectors.toMap(HostListItem::getHost, HostListItem::getRedirection));
-        // add whitelist from db
-        parser.addBlacklist(blackListHosts);
-        // add blacklist from db
-        parser.addWhitelist(whiteListHosts);
-        // add redirect list from db
-        parser.addRedirectList(redirectListHosts);
-        // compile lists (removing whitelist entries, etc.)
-        parser.compileList();
-    }
-
-    private void writeHosts(BufferedOutputStream outputStream, HostsParser parser) throws IOException {
-        String redirectionIpv4 = PreferenceHelper.getRedirectionIpv4(context);
-        String redirectionIpv6 = PreferenceHelper.getRedirectionIpv6(context);
-        // write hostnames
-        String line;
-        boolean enableIpv6 = PreferenceHelper.getEnableIpv6(context);
-        for (String hostname : parser.getBlacklist()) {
-            line = Constants.LINE_SEPARATOR + redirectionIpv4 + " " + hostname;
-            outputStream.write(line.getBytes());
-            if (enableIpv6) {
-                line = Constants.LINE_SEPARATOR + redirectionIpv6 + " " + hostname;
-                outputStream.write(line.getBytes());
-            }
-        }
-
-        /* REDIRECT LIST: write redirect items */
-        String redirectItemHostname;
-        String redirectItemIP;
-        for (HashMap.Entry<String, String> item : parser.getRedirectList().entrySet()) {
-            redirectItemHostname = item.getKey();
-            redirectItemIP = item.getValue();
-
-            line = Constants.LINE_SEPARATOR + redirectItemIP + " " + redirectItemHostname;
-            outputStream.write(line.getBytes());
-        }
-
-        // hosts file has to end with new line, when not done last entry won't be recognized
-        outputStream.write(Constants.LINE_SEPARATOR.getBytes());
-    }
-
-    private void writeLoopbackToHosts(BufferedOutputStream outputStream) throws IOException {
-        // add "127.0.0.1 localhost" entry
-        String localhost = Constants.LINE_SEPARATOR + Constants.LOCALHOST_IPv4 + " "
-                + Constants.LOCALHOST_HOSTNAME + Constants.LINE_SEPARATOR
-                + Constants.LOCALHOST_IPv6 + " " + Constants.LOCALHOST_HOSTNAME;
-        outputStream.write(localhost.getBytes());
-
-        outputStream.write(Constants.LINE_SEPARATOR.getBytes());
-    }
-
-    private void writeHostsHeader(BufferedOutputStream outputStream) throws IOException {
-        HostsSourceDao hostsSourceDao = AppDatabase.getInstance(context).hostsSourceDao();
-        // build current timestamp for header
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-        Date now = new Date();
-
-        // add adaway header
-        String header = Constants.HEADER1 + Constants.LINE_SEPARATOR + "# " +
-                formatter.format(now) + Constants.LINE_SEPARATOR + Constants.HEADER2 +
-                Constants.LINE_SEPARATOR + Constants.HEADER_SOURCES;
-        outputStream.write(header.getBytes());
-
-        // write sources into header
-        String source;
-        for (HostsSource hostsSource : hostsSourceDao.getEnabled()) {
-            source = Constants.LINE_SEPARATOR + "# " + hostsSource.getUrl();
-            outputStream.write(source.getBytes());
-        }
-
-        outputStream.write(Constants.LINE_SEPARATOR.getBytes());
+        // add lists from db
+        compiler.addUserLists(blackListHosts, whiteListHosts, redirectListHosts);
+        ApplyStat stat = applyStats.record(ApplyPhase.USER_LISTS, SystemClock.elapsedRealtime() - start);
+        stat.setHostCount(blackListHosts.size() + whiteListHosts.size() + redirectListHosts.size());
     }
 
     /**
@@ -692,6 +1215,7 @@ public class HostsInstallModel extends Observable {
             // Revert hosts file
             revertHostFile(shell);
             markHostsSourcesAsUninstalled();
+            PreferenceHelper.setInstalledHostsVersion(context, null);
             setStateAndDetails(R.string.status_disabled, R.string.status_disabled_subtitle);
         } catch (IOException exception) {
             setStateAndDetails(R.string.status_enabled, R.string.revert_problem);
@@ -718,9 +1242,9 @@ public class HostsInstallModel extends Observable {
         // Create private file
         try (FileOutputStream fos = context.openFileOutput(Constants.HOSTS_FILENAME, Context.MODE_PRIVATE)) {
             // Write default localhost as hosts file
-            String localhost = Constants.LOCALHOST_IPv4 + " " + Constants.LOCALHOST_HOSTNAME
-                    + Constants.LINE_SEPARATOR + Constants.LOCALHOST_IPv6 + " "
-                    + Constants.LOCALHOST_HOSTNAME;
+            String localhost = HostsFormat.LOCALHOST_IPv4 + " " + HostsFormat.LOCALHOST_HOSTNAME
+                    + HostsFormat.LINE_SEPARATOR + HostsFormat.LOCALHOST_IPv6 + " "
+                    + HostsFormat.LOCALHOST_HOSTNAME;
             fos.write(localhost.getBytes());
             // Get hosts file target based on preferences
             String applyMethod = PreferenceHelper.getApplyMethod(context);
@@ -773,10 +1297,24 @@ public class HostsInstallModel extends Observable {
         setStateAndDetails(stateResId, context.getString(detailsResId));
     }
 
-    private void setStateAndDetails(@StringRes int stateResId, String details) {
+    private synchronized void setStateAndDetails(@StringRes int stateResId, String details) {
         state = context.getString(stateResId);
         detailedState = details;
         setChanged();
         notifyObservers();
     }
+
+    /**
+     * Notify the apply progress change.
+     * <p>
+     * While hosts sources are retrieved, the detailed state shows the number of read lines.
+     */
+    private synchronized void notifyProgress() {
+        ApplyProgress progress = applyProgress;
+        if (progress != null && progress.getPercent() < ApplyProgress.RETRIEVAL_PERCENT) {
+            detailedState = context.getString(R.string.download_dialog_progress, progress.getLineCount());
+        }
+        setChanged();
+        notifyObservers();
+    }
 }
@@ -0,0 +1,143 @@
+package org.adaway.model.hostsinstall;
+
+import android.content.Context;
+
+import com.google.common.hash.Hashing;
+
+import org.adaway.util.Constants;
+import org.adaway.util.Log;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class stores the cached copies of the downloaded hosts sources and their parsed snapshots.
+ * <p>
+ * Each cached copy matches the HTTP validators (ETag and Last-Modified) stored in the hosts source
+ * so it can be reused when the server answers that the hosts source was not modified.
+ * Each snapshot holds the pre-parsed content of a hosts source (see {@link HostsSourceSnapshot}).
+ */
+class HostsSourceCache {
+    /**
+     * The cached copies directory name, in the application files directory.
+     */
+    private static final String CACHE_DIRECTORY = "sources";
+    /**
+     * The cached copy file extension.
+     */
+    private static final String CACHE_EXTENSION = ".hosts";
+    /**
+     * The snapshot file extension.
+     */
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+    /**
+     * The cached copy file extension while it is being written.
+     */
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    /**
+     * The cached copies directory.
+     */
+    private final File directory;
+
+    /**
+     * Constructor.
+     *
+     * @param context The application context.
+     */
+    HostsSourceCache(Context context) {
+        this.directory = new File(context.getFilesDir(), CACHE_DIRECTORY);
+    }
+
+    /**
+     * Get the cached copy file of a hosts source.
+     *
+     * @param url The hosts source URL.
+     * @return The cached copy file (might not exist).
+     */
+    File getFile(String url) {
+        return new File(this.directory, getFileName(url) + CACHE_EXTENSION);
+    }
+
+    /**
+     * Get the snapshot file of a hosts source.
+     *
+     * @param url The hosts source URL.
+     * @return The snapshot file (might not exist).
+     */
+    File getSnapshotFile(String url) {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            Log.w(Constants.TAG, "Failed to create hosts sources cache directory.");
+        }
+        return new File(this.directory, getFileName(url) + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * Get the file to write a new cached copy of a hosts source to.
+     *
+     * @param url The hosts source URL.
+     * @return The file to write the new cached copy to.
+     */
+    File getTemporaryFile(String url) {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            Log.w(Constants.TAG, "Failed to create hosts sources cache directory.");
+        }
+        return new File(this.directory, getFileName(url) + TEMPORARY_EXTENSION);
+    }
+
+    /**
+     * Replace the cached copy of a hosts source by its new written copy.
+     *
+     * @param url The hosts source URL.
+     * @return {@code true} if the new copy was committed, {@code false} otherwise.
+     */
+    boolean commit(String url) {
+        return getTemporaryFile(url).renameTo(getFile(url));
+    }
+
+    /**
+     * Delete the cached copy and the snapshot of a hosts source.
+     *
+     * @param url The hosts source URL.
+     */
+    void delete(String url) {
+        deleteFile(getTemporaryFile(url));
+        deleteFile(getFile(url));
+        deleteFile(getSnapshotFile(url));
+    }
+
+    /**
+     * Delete the cached copies and snapshots of all hosts sources except the given ones.
+     *
+     * @param urls The URLs of the hosts sources to keep cached copies and snapshots.
+     */
+    void retain(Collection<String> urls) {
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Set<String> fileNames = new HashSet<>();
+        for (String url : urls) {
+            String fileName = getFileName(url);
+            fileNames.add(fileName + CACHE_EXTENSION);
+            fileNames.add(fileName + SNAPSHOT_EXTENSION);
+        }
+        for (File file : files) {
+            if (!fileNames.contains(file.getName())) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    private static String getFileName(String url) {
+        return Hashing.sha256().hashString(url, StandardCharsets.UTF_8).toString();
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(Constants.TAG, "Failed to delete hosts source cache file " + file + ".");
+        }
+    }
+}
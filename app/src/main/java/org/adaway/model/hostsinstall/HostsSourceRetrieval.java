@@ -0,0 +1,82 @@
+package org.adaway.model.hostsinstall;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * This class represents the retrieval result of a single hosts source: whether it succeeded, how
+ * many bytes were read and how long it took.
+ */
+public class HostsSourceRetrieval {
+    /**
+     * The hosts source URL.
+     */
+    private final String url;
+    /**
+     * Whether the hosts source was successfully retrieved.
+     */
+    private final boolean success;
+    /**
+     * The number of bytes read from the hosts source.
+     */
+    private final long byteCount;
+    /**
+     * The retrieval duration (in milliseconds).
+     */
+    private final long duration;
+    /**
+     * The retrieval error message ({@code null} if retrieval succeeded).
+     */
+    @Nullable
+    private final String error;
+
+    /**
+     * Constructor.
+     *
+     * @param url       The hosts source URL.
+     * @param success   Whether the hosts source was successfully retrieved.
+     * @param byteCount The number of bytes read from the hosts source.
+     * @param duration  The retrieval duration (in milliseconds).
+     * @param error     The retrieval error message ({@code null} if retrieval succeeded).
+     */
+    HostsSourceRetrieval(String url, boolean success, long byteCount, long duration, @Nullable String error) {
+        this.url = url;
+        this.success = success;
+        this.byteCount = byteCount;
+        this.duration = duration;
+        this.error = error;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    @Nullable
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s: %s, %d bytes in %d ms%s",
+                url,
+                success ? "retrieved" : "failed",
+                byteCount,
+                duration,
+                error == null ? "" : " (" + error + ")"
+        );
+    }
+}
@@ -0,0 +1,211 @@
+package org.adaway.model.hostsinstall;
+
+import androidx.annotation.Nullable;
+
+import org.adaway.util.Constants;
+import org.adaway.hosts.HostsParser;
+import org.adaway.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is a pre-parsed snapshot of a hosts source.
+ * <p>
+ * It holds the sorted and deduplicated host names parsed from a hosts source so they could be
+ * restored without parsing the hosts source again: its blacklist is already sorted to be used as
+ * hosts source run and only its whitelist and redirections are added to a parser. Snapshots are stored as versioned
+ * binary files and are bound to a key identifying the hosts source content they were parsed from.
+ */
+class HostsSourceSnapshot {
+    /**
+     * The snapshot file magic number.
+     */
+    private static final int MAGIC = 0x41444853;
+    /**
+     * The snapshot file format version.
+     */
+    private static final int VERSION = 1;
+    /**
+     * The sorted blacklisted host names.
+     */
+    private final String[] blacklist;
+    /**
+     * The sorted whitelisted host names.
+     */
+    private final String[] whitelist;
+    /**
+     * The sorted redirected host names.
+     */
+    private final String[] redirectionHostnames;
+    /**
+     * The redirection IP addresses, in redirected host names order.
+     */
+    private final String[] redirectionIps;
+
+    private HostsSourceSnapshot(String[] blacklist, String[] whitelist, String[] redirectionHostnames, String[] redirectionIps) {
+        this.blacklist = blacklist;
+        this.whitelist = whitelist;
+        this.redirectionHostnames = redirectionHostnames;
+        this.redirectionIps = redirectionIps;
+    }
+
+    /**
+     * Create a snapshot from the lists of a parser.
+     *
+     * @param parser The parser holding the parsed hosts source.
+     * @return The parser snapshot.
+     */
+    static HostsSourceSnapshot of(HostsParser parser) {
+        Map<String, String> redirectList = parser.getRedirectList();
+        String[] redirectionHostnames = toSortedArray(redirectList.keySet());
+        String[] redirectionIps = new String[redirectionHostnames.length];
+        for (int index = 0; index < redirectionHostnames.length; index++) {
+            redirectionIps[index] = redirectList.get(redirectionHostnames[index]);
+        }
+        return new HostsSourceSnapshot(
+                toSortedArray(parser.getBlacklist()),
+                toSortedArray(parser.getWhitelist()),
+                redirectionHostnames,
+                redirectionIps
+        );
+    }
+
+    /**
+     * Read a snapshot from a file.
+     *
+     * @param file              The file to read the snapshot from.
+     * @param key               The key of the expected hosts source content.
+     * @param parseWhitelist    Whether the snapshot must include whitelist entries.
+     * @param parseRedirections Whether the snapshot must include redirection entries.
+     * @return The read snapshot, {@code null} if there is no valid snapshot for the key and options.
+     */
+    @Nullable
+    static HostsSourceSnapshot read(File file, String key, boolean parseWhitelist, boolean parseRedirections) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            // Check snapshot header
+            if (input.readInt() != MAGIC
+                    || input.readInt() != VERSION
+                    || input.readBoolean() != parseWhitelist
+                    || input.readBoolean() != parseRedirections
+                    || !key.equals(input.readUTF())) {
+                return null;
+            }
+            // Read snapshot lists
+            String[] blacklist = readArray(input);
+            String[] whitelist = readArray(input);
+            String[] redirectionHostnames = readArray(input);
+            String[] redirectionIps = new String[redirectionHostnames.length];
+            for (int index = 0; index < redirectionIps.length; index++) {
+                redirectionIps[index] = input.readUTF();
+            }
+            return new HostsSourceSnapshot(blacklist, whitelist, redirectionHostnames, redirectionIps);
+        } catch (IOException exception) {
+            Log.w(Constants.TAG, "Failed to read hosts source snapshot " + file + ".", exception);
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot to a file.
+     * <p>
+     * The snapshot is written to a temporary file first so an existing snapshot is only replaced
+     * by a complete one.
+     *
+     * @param file              The file to write the snapshot to.
+     * @param key               The key of the hosts source content the snapshot was parsed from.
+     * @param parseWhitelist    Whether the snapshot includes whitelist entries.
+     * @param parseRedirections Whether the snapshot includes redirection entries.
+     * @return {@code true} if the snapshot was written, {@code false} otherwise.
+     */
+    boolean write(File file, String key, boolean parseWhitelist, boolean parseRedirections) {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeBoolean(parseWhitelist);
+            output.writeBoolean(parseRedirections);
+            output.writeUTF(key);
+            writeArray(output, this.blacklist);
+            writeArray(output, this.whitelist);
+            writeArray(output, this.redirectionHostnames);
+            for (String ip : this.redirectionIps) {
+                output.writeUTF(ip);
+            }
+        } catch (IOException exception) {
+            Log.w(Constants.TAG, "Failed to write hosts source snapshot " + file + ".", exception);
+            temporaryFile.delete();
+            return false;
+        }
+        return temporaryFile.renameTo(file);
+    }
+
+    /**
+     * Get the blacklisted host names of the snapshot.
+     *
+     * @return The sorted blacklisted host names, to create the hosts source run from.
+     */
+    String[] getBlacklist() {
+        return this.blacklist;
+    }
+
+    /**
+     * Add the snapshot whitelist and redirection lists to a parser.
+     * <p>
+     * The blacklist is not added as it is already sorted (see {@link #getBlacklist()}).
+     *
+     * @param parser The parser to add the snapshot lists to.
+     */
+    void addTo(HostsParser parser) {
+        parser.addWhitelist(Arrays.asList(this.whitelist));
+        for (int index = 0; index < this.redirectionHostnames.length; index++) {
+            parser.addRedirection(this.redirectionHostnames[index], this.redirectionIps[index]);
+        }
+    }
+
+    /**
+     * Get the number of entries of the snapshot.
+     *
+     * @return The number of blacklist, whitelist and redirection entries.
+     */
+    int size() {
+        return this.blacklist.length + this.whitelist.length + this.redirectionHostnames.length;
+    }
+
+    private static String[] toSortedArray(Set<String> hostnames) {
+        String[] array = hostnames.toArray(new String[0]);
+        Arrays.sort(array);
+        return array;
+    }
+
+    private static String[] readArray(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid snapshot list length: " + length + ".");
+        }
+        String[] array = new String[length];
+        for (int index = 0; index < length; index++) {
+            array[index] = input.readUTF();
+        }
+        return array;
+    }
+
+    private static void writeArray(DataOutputStream output, String[] array) throws IOException {
+        output.writeInt(array.length);
+        for (String item : array) {
+            output.writeUTF(item);
+        }
+    }
+}
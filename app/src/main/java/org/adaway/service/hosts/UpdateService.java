@@ -80,6 +80,11 @@ public final class UpdateService {
      * @author Bruce BUJON (bruce.bujon(at)gmail(dot)com)
      */
     public static class HostsSourcesUpdateWorker extends Worker {
+        /**
+         * Whether the worker is applying hosts sources update (only this apply could be cancelled).
+         */
+        private volatile boolean applying;
+
         /**
          * Constructor.
          *
@@ -120,6 +125,16 @@ public final class UpdateService {
             return success();
         }
 
+        @Override
+        public void onStopped() {
+            super.onStopped();
+            // Stop the update started by the worker, if any, the worker will be run again
+            if (this.applying) {
+                AdAwayApplication application = (AdAwayApplication) getApplicationContext();
+                application.getHostsInstallModel().cancel();
+            }
+        }
+
         /**
          * Handle update according user preferences.
          *
@@ -131,8 +146,13 @@ public final class UpdateService {
             // Check if automatic update are enabled
             if (PreferenceHelper.getAutomaticUpdateDaily(context)) {
                 // Install update
-                model.retrieveHostsSources();
-                model.applyHostsFile();
+                this.applying = true;
+                try {
+                    model.retrieveHostsSources();
+                    model.applyHostsFile();
+                } finally {
+                    this.applying = false;
+                }
             } else {
                 // Display update notification
                 NotificationHelper.showUpdateHostsNotification(context);
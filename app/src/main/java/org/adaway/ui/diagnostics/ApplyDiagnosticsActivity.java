@@ -0,0 +1,125 @@
+package org.adaway.ui.diagnostics;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.text.format.Formatter;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProviders;
+
+import org.adaway.R;
+import org.adaway.db.entity.ApplyStat;
+import org.adaway.helper.ThemeHelper;
+import org.adaway.ui.MainActivity;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class is an {@link android.app.Activity} to show the statistics of the last hosts file
+ * applies, phase by phase.
+ */
+public class ApplyDiagnosticsActivity extends AppCompatActivity {
+    /**
+     * The view model (<code>null</code> if activity is not created).
+     */
+    private ApplyDiagnosticsViewModel mViewModel;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        /*
+         * Create activity.
+         */
+        super.onCreate(savedInstanceState);
+        ThemeHelper.applyTheme(this);
+        setContentView(R.layout.apply_diagnostics_activity);
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayShowTitleEnabled(true);
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+        /*
+         * Load data.
+         */
+        TextView textView = findViewById(R.id.apply_diagnostics_text);
+        mViewModel = ViewModelProviders.of(this).get(ApplyDiagnosticsViewModel.class);
+        mViewModel.getApplyStats().observe(this, stats -> textView.setText(stats.isEmpty() ?
+                getString(R.string.diagnostics_empty) :
+                format(stats)
+        ));
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.apply_diagnostics_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                // app icon in Action Bar clicked; go home
+                Intent intent = new Intent(this, MainActivity.class);
+                intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                startActivity(intent);
+                return true;
+            case R.id.delete:
+                mViewModel.clearApplyStats();
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    /**
+     * Format apply statistics, grouped by apply.
+     *
+     * @param stats The apply statistics, sorted by apply.
+     * @return The formatted statistics.
+     */
+    private String format(List<ApplyStat> stats) {
+        DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM);
+        StringBuilder builder = new StringBuilder();
+        Date applyDate = null;
+        for (ApplyStat stat : stats) {
+            if (!stat.getApplyDate().equals(applyDate)) {
+                applyDate = stat.getApplyDate();
+                if (builder.length() > 0) {
+                    builder.append("\n\n");
+                }
+                builder.append(dateFormat.format(applyDate));
+            }
+            builder.append('\n')
+                    .append(String.format(Locale.ROOT, "%-10s %7d ms", stat.getPhase(), stat.getDuration()));
+            if (stat.getByteCount() > 0) {
+                builder.append(", ").append(Formatter.formatShortFileSize(this, stat.getByteCount()));
+            }
+            if (stat.getLineCount() > 0) {
+                builder.append(", ").append(stat.getLineCount()).append(" lines");
+            }
+            if (stat.getRejectedLineCount() > 0) {
+                builder.append(", ").append(stat.getRejectedLineCount()).append(" rejected");
+            }
+            if (stat.getHostCount() > 0) {
+                builder.append(", ").append(stat.getHostCount()).append(" hosts");
+            }
+            builder.append(", ")
+                    .append(Formatter.formatShortFileSize(this, stat.getPeakHeap()))
+                    .append(" heap");
+            if (stat.getSource() != null) {
+                builder.append("\n  ").append(stat.getSource());
+            }
+            if (stat.getError() != null) {
+                builder.append("\n  ").append(stat.getError());
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package org.adaway.ui.diagnostics;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+
+import org.adaway.db.AppDatabase;
+import org.adaway.db.dao.ApplyStatDao;
+import org.adaway.db.entity.ApplyStat;
+import org.adaway.util.AppExecutors;
+
+import java.util.List;
+
+/**
+ * This class is an {@link AndroidViewModel} for the {@link ApplyDiagnosticsActivity}.
+ */
+public class ApplyDiagnosticsViewModel extends AndroidViewModel {
+    /**
+     * The {@link ApplyStat} DAO.
+     */
+    private final ApplyStatDao applyStatDao;
+
+    public ApplyDiagnosticsViewModel(@NonNull Application application) {
+        super(application);
+        applyStatDao = AppDatabase.getInstance(getApplication()).applyStatDao();
+    }
+
+    /**
+     * Get the statistics of the last applies, from the most recent one.
+     *
+     * @return The apply statistics.
+     */
+    public LiveData<List<ApplyStat>> getApplyStats() {
+        return applyStatDao.loadAll();
+    }
+
+    /**
+     * Delete all the apply statistics.
+     */
+    public void clearApplyStats() {
+        AppExecutors.getInstance().diskIO().execute(applyStatDao::deleteAll);
+    }
+}
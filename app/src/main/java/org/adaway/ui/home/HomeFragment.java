@@ -89,6 +89,10 @@ public class HomeFragment extends Fragment {
      * The status title text view (<code>null</code> until view created).
      */
     private TextView mStatusTextView;
+    /**
+     * The apply progress bar (<code>null</code> until view created).
+     */
+    private ProgressBar mApplyProgressBar;
     /**
      * The update hosts button (<code>null</code> until view created).
      */
@@ -97,6 +101,10 @@ public class HomeFragment extends Fragment {
      * The revert hosts button (<code>null</code> until view created).
      */
     private Button mRevertHostsButton;
+    /**
+     * The cancel apply button (<code>null</code> until view created).
+     */
+    private Button mCancelApplyButton;
     /*
      * Web server card views.
      */
@@ -129,8 +137,10 @@ public class HomeFragment extends Fragment {
         mStatusIconImageView = view.findViewById(R.id.home_status_icon);
         mStatusTitleTextView = view.findViewById(R.id.home_status_title);
         mStatusTextView = view.findViewById(R.id.home_status_text);
+        mApplyProgressBar = view.findViewById(R.id.home_apply_progress);
         mUpdateHostsButton = view.findViewById(R.id.home_update_hosts);
         mRevertHostsButton = view.findViewById(R.id.home_revert_hosts);
+        mCancelApplyButton = view.findViewById(R.id.home_cancel_apply);
         // Get views from web server card
         CardView welcomeCardView = view.findViewById(R.id.home_welcome_card);
         CardView webServerCardView = view.findViewById(R.id.home_webserver_card);
@@ -200,6 +210,17 @@ public class HomeFragment extends Fragment {
                     mStatusTextView.setText(details);
                 }
             });
+            mViewModel.getProgress().observe(this, progress -> {
+                // Show progress and allow to cancel while applying
+                boolean applying = progress != null && progress >= 0;
+                mApplyProgressBar.setVisibility(applying ? View.VISIBLE : View.GONE);
+                mCancelApplyButton.setVisibility(applying ? View.VISIBLE : View.GONE);
+                if (applying) {
+                    mApplyProgressBar.setProgress(progress);
+                } else {
+                    mCancelApplyButton.setEnabled(true);
+                }
+            });
             mViewModel.getError().observe(this, error -> {
                 if (error != null) {
                     mStatusProgressBar.setVisibility(View.GONE);
@@ -252,6 +273,8 @@ public class HomeFragment extends Fragment {
         mUpdateHostsButton.setOnClickListener(this::updateHosts);
         // Set revert hosts button click listener
         mRevertHostsButton.setOnClickListener(this::revertHosts);
+        // Set cancel apply button click listener
+        mCancelApplyButton.setOnClickListener(this::cancelApply);
         // Update web server card visibility
         boolean webServerCardVisible = context != null && PreferenceHelper.getWebServerEnabled(context);
         if (!webServerCardVisible) {
@@ -294,6 +317,7 @@ public class HomeFragment extends Fragment {
         mViewModel.getStatus().removeObservers(this);
         mViewModel.getState().removeObservers(this);
         mViewModel.getDetails().removeObservers(this);
+        mViewModel.getProgress().removeObservers(this);
         mViewModel.getError().removeObservers(this);
     }
 
@@ -333,6 +357,16 @@ public class HomeFragment extends Fragment {
         mViewModel.revert();
     }
 
+    /**
+     * Cancel the hosts file update.
+     *
+     * @param view The view which trigger the action.
+     */
+    private void cancelApply(@SuppressWarnings("unused") @Nullable View view) {
+        mCancelApplyButton.setEnabled(false);
+        mViewModel.cancelUpdate();
+    }
+
     /**
      * Show more help.
      *
@@ -36,6 +36,7 @@ public class HostsInstallViewModel extends AndroidViewModel {
     private final MutableLiveData<HostsInstallStatus> status;
     private final MutableLiveData<String> state;
     private final MutableLiveData<String> details;
+    private final MutableLiveData<Integer> progress;
     private final MutableLiveData<HostsInstallError> error;
     private final Observer modelObserver;
     private boolean loaded;
@@ -53,11 +54,13 @@ public class HostsInstallViewModel extends AndroidViewModel {
         status = new MutableLiveData<>();
         state = new MutableLiveData<>();
         details = new MutableLiveData<>();
+        progress = new MutableLiveData<>(-1);
         error = new MutableLiveData<>();
         // Bind model to live data
         modelObserver = (o, a) -> {
             state.postValue(model.getState());
             details.postValue(model.getDetailedState());
+            progress.postValue(model.getProgress());
         };
         model.addObserver(modelObserver);
         // Initialize model as not loaded
@@ -83,6 +86,15 @@ public class HostsInstallViewModel extends AndroidViewModel {
         return details;
     }
 
+    /**
+     * Get the apply progress.
+     *
+     * @return The apply progress percent, {@code -1} if no apply is in progress.
+     */
+    MutableLiveData<Integer> getProgress() {
+        return progress;
+    }
+
     MutableLiveData<HostsInstallError> getError() {
         return error;
     }
@@ -124,13 +136,24 @@ public class HostsInstallViewModel extends AndroidViewModel {
                 model.applyHostsFile();
                 status.postValue(INSTALLED);
             } catch (HostsInstallException exception) {
-                Log.e(Constants.TAG, "Failed to update hosts file.", exception);
                 status.postValue(previousStatus);
+                if (exception.getInstallError() == HostsInstallError.CANCELLED) {
+                    Log.i(Constants.TAG, "Hosts file update was cancelled.");
+                    return;
+                }
+                Log.e(Constants.TAG, "Failed to update hosts file.", exception);
                 error.postValue(exception.getInstallError());
             }
         });
     }
 
+    /**
+     * Cancel the hosts file update.
+     */
+    void cancelUpdate() {
+        model.cancel();
+    }
+
     /**
      * Check if there is update available in hosts source.
      */
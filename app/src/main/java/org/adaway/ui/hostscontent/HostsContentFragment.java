@@ -1,5 +1,6 @@
 package org.adaway.ui.hostscontent;
 
+import android.content.Intent;
 import android.os.AsyncTask;
 import android.os.Bundle;
 
@@ -16,14 +17,13 @@ import android.widget.TextView;
 
 import org.adaway.R;
 import org.adaway.helper.OpenHelper;
+import org.adaway.hosts.HostsFileReader;
+import org.adaway.ui.diagnostics.ApplyDiagnosticsActivity;
 import org.adaway.util.Constants;
 import org.adaway.util.Log;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.ref.WeakReference;
 import java.util.function.Consumer;
 
@@ -57,6 +57,12 @@ public class HostsContentFragment extends Fragment {
         Button openFileButton = view.findViewById(R.id.hosts_open_file);
         // Bind on click listener
         openFileButton.setOnClickListener(button -> OpenHelper.openHostsFile(activity));
+        // Get show diagnostics button
+        Button showDiagnosticsButton = view.findViewById(R.id.hosts_show_diagnostics);
+        // Bind on click listener to start apply diagnostics activity
+        showDiagnosticsButton.setOnClickListener(
+                button -> startActivity(new Intent(activity, ApplyDiagnosticsActivity.class))
+        );
         // Return created view
         return view;
     }
@@ -103,8 +109,9 @@ public class HostsContentFragment extends Fragment {
             File hostsFile = new File(Constants.ANDROID_SYSTEM_ETC_HOSTS);
             // Declare file content
             StringBuilder content = new StringBuilder();
-            // Open reader onto the file
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(hostsFile)))) {
+            // Map the file to only decode the displayed lines
+            try {
+                HostsFileReader reader = HostsFileReader.open(hostsFile);
                 // Declare line content
                 String line;
                 // Declare number of read lines
@@ -0,0 +1,220 @@
+package org.adaway.ui.tcpdump;
+
+import androidx.annotation.Nullable;
+
+/**
+ * This class decodes DNS queries from raw captured packets.
+ * <p>
+ * It walks the link layer header, the IPv4 or IPv6 header and the UDP header down to the DNS
+ * message, then reads the name, type and class of its first question. Queries of any type are
+ * decoded. Responses, truncated packets and IP fragments are skipped.
+ */
+final class DnsPacketDecoder {
+    /**
+     * The Ethernet link type.
+     */
+    static final int LINK_TYPE_ETHERNET = 1;
+    /**
+     * The raw IP link type.
+     */
+    static final int LINK_TYPE_RAW = 101;
+    // Raw IP link type aliases
+    private static final int LINK_TYPE_RAW_OPENBSD = 12;
+    private static final int LINK_TYPE_IPV4 = 228;
+    private static final int LINK_TYPE_IPV6 = 229;
+    /**
+     * The Linux cooked capture link type, used to capture on any interface.
+     */
+    static final int LINK_TYPE_LINUX_SLL = 113;
+    /**
+     * The Linux cooked capture v2 link type, used by newer libpcap to capture on any interface.
+     */
+    static final int LINK_TYPE_LINUX_SLL2 = 276;
+    private static final int ETHER_TYPE_IPV4 = 0x0800;
+    private static final int ETHER_TYPE_IPV6 = 0x86DD;
+    private static final int ETHER_TYPE_VLAN = 0x8100;
+    private static final int PROTOCOL_UDP = 17;
+    private static final int IPV6_HOP_BY_HOP = 0;
+    private static final int IPV6_ROUTING = 43;
+    private static final int IPV6_DESTINATION_OPTIONS = 60;
+    private static final int UDP_HEADER_LENGTH = 8;
+    private static final int DNS_HEADER_LENGTH = 12;
+    private static final int DNS_MAX_NAME_LENGTH = 255;
+    private static final int DNS_CLASS_INTERNET = 1;
+
+    /**
+     * Private constructor.
+     */
+    private DnsPacketDecoder() {
+
+    }
+
+    /**
+     * Decode the DNS query of a captured packet.
+     *
+     * @param linkType The capture link type.
+     * @param packet   The captured packet bytes.
+     * @param length   The captured packet length.
+     * @param time     The packet capture time (in milliseconds since epoch).
+     * @return The decoded DNS query, {@code null} if the packet is not a DNS query.
+     */
+    @Nullable
+    static DnsQuery decode(int linkType, byte[] packet, int length, long time) {
+        int etherType;
+        int offset;
+        switch (linkType) {
+            case LINK_TYPE_ETHERNET:
+                if (length < 14) {
+                    return null;
+                }
+                etherType = readShort(packet, 12);
+                offset = 14;
+                if (etherType == ETHER_TYPE_VLAN && length >= 18) {
+                    etherType = readShort(packet, 16);
+                    offset = 18;
+                }
+                break;
+            case LINK_TYPE_LINUX_SLL:
+                if (length < 16) {
+                    return null;
+                }
+                etherType = readShort(packet, 14);
+                offset = 16;
+                break;
+            case LINK_TYPE_LINUX_SLL2:
+                if (length < 20) {
+                    return null;
+                }
+                etherType = readShort(packet, 0);
+                offset = 20;
+                break;
+            case LINK_TYPE_RAW:
+            case LINK_TYPE_RAW_OPENBSD:
+            case LINK_TYPE_IPV4:
+            case LINK_TYPE_IPV6:
+                if (length < 1) {
+                    return null;
+                }
+                etherType = (packet[0] & 0xF0) == 0x60 ? ETHER_TYPE_IPV6 : ETHER_TYPE_IPV4;
+                offset = 0;
+                break;
+            default:
+                return null;
+        }
+        int udpOffset;
+        if (etherType == ETHER_TYPE_IPV4) {
+            udpOffset = getIpv4Payload(packet, offset, length);
+        } else if (etherType == ETHER_TYPE_IPV6) {
+            udpOffset = getIpv6Payload(packet, offset, length);
+        } else {
+            return null;
+        }
+        if (udpOffset == -1 || udpOffset + UDP_HEADER_LENGTH > length) {
+            return null;
+        }
+        int sourcePort = readShort(packet, udpOffset);
+        return decodeDnsQuery(packet, udpOffset + UDP_HEADER_LENGTH, length, sourcePort, time);
+    }
+
+    /**
+     * Get the UDP payload offset of an IPv4 packet.
+     *
+     * @return The UDP header offset, {@code -1} if the packet is not an unfragmented UDP packet.
+     */
+    private static int getIpv4Payload(byte[] packet, int offset, int length) {
+        if (offset + 20 > length || (packet[offset] & 0xF0) != 0x40) {
+            return -1;
+        }
+        int headerLength = (packet[offset] & 0x0F) * 4;
+        int fragmentOffset = readShort(packet, offset + 6) & 0x1FFF;
+        if (headerLength < 20 || fragmentOffset != 0 || (packet[offset + 9] & 0xFF) != PROTOCOL_UDP) {
+            return -1;
+        }
+        return offset + headerLength;
+    }
+
+    /**
+     * Get the UDP payload offset of an IPv6 packet.
+     *
+     * @return The UDP header offset, {@code -1} if the packet is not an unfragmented UDP packet.
+     */
+    private static int getIpv6Payload(byte[] packet, int offset, int length) {
+        if (offset + 40 > length || (packet[offset] & 0xF0) != 0x60) {
+            return -1;
+        }
+        int nextHeader = packet[offset + 6] & 0xFF;
+        offset += 40;
+        // Skip extension headers
+        while (nextHeader == IPV6_HOP_BY_HOP || nextHeader == IPV6_ROUTING || nextHeader == IPV6_DESTINATION_OPTIONS) {
+            if (offset + 2 > length) {
+                return -1;
+            }
+            nextHeader = packet[offset] & 0xFF;
+            offset += ((packet[offset + 1] & 0xFF) + 1) * 8;
+        }
+        return nextHeader == PROTOCOL_UDP ? offset : -1;
+    }
+
+    /**
+     * Decode the first question of a DNS query message.
+     *
+     * @return The decoded DNS query, {@code null} if the message is not a standard query.
+     */
+    @Nullable
+    private static DnsQuery decodeDnsQuery(byte[] packet, int offset, int length, int sourcePort, long time) {
+        if (offset + DNS_HEADER_LENGTH > length) {
+            return null;
+        }
+        // Check QR bit (query) and opcode (standard query)
+        int flags = readShort(packet, offset + 2);
+        int questionCount = readShort(packet, offset + 4);
+        if ((flags & 0xF800) != 0 || questionCount == 0) {
+            return null;
+        }
+        // Read question name, labels are not compressed in queries
+        StringBuilder hostname = new StringBuilder();
+        int position = offset + DNS_HEADER_LENGTH;
+        while (true) {
+            if (position >= length) {
+                return null;
+            }
+            int labelLength = packet[position++] & 0xFF;
+            if (labelLength == 0) {
+                break;
+            }
+            if (labelLength > 63 || position + labelLength > length ||
+                    hostname.length() + labelLength + 1 > DNS_MAX_NAME_LENGTH) {
+                return null;
+            }
+            if (hostname.length() > 0) {
+                hostname.append('.');
+            }
+            for (int index = 0; index < labelLength; index++) {
+                char character = (char) (packet[position + index] & 0xFF);
+                if (character <= ' ' || character >= 0x7F) {
+                    return null;
+                }
+                // Queries may have random case (DNS 0x20 encoding)
+                if (character >= 'A' && character <= 'Z') {
+                    character += 'a' - 'A';
+                }
+                hostname.append(character);
+            }
+            position += labelLength;
+        }
+        // Read question type and class
+        if (hostname.length() == 0 || position + 4 > length) {
+            return null;
+        }
+        int type = readShort(packet, position);
+        int queryClass = readShort(packet, position + 2);
+        if (queryClass != DNS_CLASS_INTERNET) {
+            return null;
+        }
+        return new DnsQuery(hostname.toString(), type, sourcePort, time);
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | bytes[offset + 1] & 0xFF;
+    }
+}
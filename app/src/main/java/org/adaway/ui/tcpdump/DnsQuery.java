@@ -0,0 +1,143 @@
+package org.adaway.ui.tcpdump;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.adaway.util.RegexUtils;
+
+/**
+ * This class represents a DNS query captured by tcpdump.
+ */
+class DnsQuery {
+    /**
+     * The query type of IPv4 addresses ({@code A} record).
+     */
+    static final int TYPE_A = 1;
+    /**
+     * The query type of IPv6 addresses ({@code AAAA} record).
+     */
+    static final int TYPE_AAAA = 28;
+    /**
+     * The unknown source port value.
+     */
+    static final int UNKNOWN_PORT = -1;
+    /**
+     * The queried host name.
+     */
+    @NonNull
+    private final String hostname;
+    /**
+     * The query type (DNS {@code QTYPE}).
+     */
+    private final int type;
+    /**
+     * The query source port ({@link #UNKNOWN_PORT} if unknown).
+     */
+    private final int sourcePort;
+    /**
+     * The query time (in milliseconds since epoch).
+     */
+    private final long time;
+
+    /**
+     * Constructor.
+     *
+     * @param hostname   The queried host name.
+     * @param type       The query type (DNS {@code QTYPE}).
+     * @param sourcePort The query source port ({@link #UNKNOWN_PORT} if unknown).
+     * @param time       The query time (in milliseconds since epoch).
+     */
+    DnsQuery(@NonNull String hostname, int type, int sourcePort, long time) {
+        this.hostname = hostname;
+        this.type = type;
+        this.sourcePort = sourcePort;
+        this.time = time;
+    }
+
+    @NonNull
+    String getHostname() {
+        return this.hostname;
+    }
+
+    int getType() {
+        return this.type;
+    }
+
+    int getSourcePort() {
+        return this.sourcePort;
+    }
+
+    long getTime() {
+        return this.time;
+    }
+
+    /**
+     * This class parses the DNS queries of tcpdump verbose text output lines.
+     * <p>
+     * Only {@code A} and {@code AAAA} queries are parsed, without source port. See
+     * {@link DnsPacketDecoder} to decode any query from raw packets.
+     * <p>
+     * tcpdump prints the packet timestamp ({@code -tt} option) on the packet header line and the
+     * query on the next line, so the parser keeps the timestamp of the last header line. Lines
+     * without timestamp, from older logs, get the parse time.
+     * <p>
+     * This class is not thread-safe.
+     */
+    static class Parser {
+        /**
+         * The timestamp of the last packet header line (in milliseconds since epoch, {@code 0} if
+         * unknown).
+         */
+        private long packetTime;
+
+        /**
+         * Parse a tcpdump output line.
+         *
+         * @param line The line to parse.
+         * @return The parsed DNS query, {@code null} if the line is not a DNS query.
+         */
+        @Nullable
+        DnsQuery parse(String line) {
+            long timestamp = parseTimestamp(line);
+            if (timestamp != -1) {
+                this.packetTime = timestamp;
+            }
+            String[] query = RegexUtils.getTcpdumpQuery(line);
+            if (query == null) {
+                return null;
+            }
+            long time = this.packetTime == 0 ? System.currentTimeMillis() : this.packetTime;
+            int type = "AAAA".equals(query[0]) ? TYPE_AAAA : TYPE_A;
+            return new DnsQuery(query[1], type, UNKNOWN_PORT, time);
+        }
+
+        /**
+         * Parse the leading timestamp of a line, like {@code 1593561600.123456}.
+         *
+         * @param line The line to parse.
+         * @return The timestamp (in milliseconds since epoch), {@code -1} if the line has no
+         * timestamp.
+         */
+        private static long parseTimestamp(String line) {
+            long seconds = 0;
+            int index = 0;
+            int length = line.length();
+            while (index < length && Character.isDigit(line.charAt(index))) {
+                seconds = seconds * 10 + line.charAt(index) - '0';
+                index++;
+            }
+            if (index == 0 || index >= length || line.charAt(index) != '.') {
+                return -1;
+            }
+            index++;
+            long millis = 0;
+            for (int digit = 0; digit < 3; digit++, index++) {
+                millis *= 10;
+                if (index < length && Character.isDigit(line.charAt(index))) {
+                    millis += line.charAt(index) - '0';
+                }
+            }
+            return seconds * 1000 + millis;
+        }
+    }
+}
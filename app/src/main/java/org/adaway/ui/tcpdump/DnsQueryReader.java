@@ -0,0 +1,24 @@
+package org.adaway.ui.tcpdump;
+
+import java.util.List;
+
+/**
+ * This interface follows a tcpdump capture to read the DNS queries.
+ * <p>
+ * Implementations are not thread-safe.
+ */
+interface DnsQueryReader {
+    /**
+     * Read the DNS queries captured since the last read.
+     *
+     * @param queries The list to add the read DNS queries to.
+     * @return {@code true} if the capture was cleared and read again from the beginning,
+     * {@code false} otherwise.
+     */
+    boolean readNewQueries(List<DnsQuery> queries);
+
+    /**
+     * Clear the captured DNS queries.
+     */
+    void clear();
+}
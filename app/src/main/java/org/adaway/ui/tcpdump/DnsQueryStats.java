@@ -0,0 +1,283 @@
+package org.adaway.ui.tcpdump;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * This class aggregates the DNS queries by host name.
+ * <p>
+ * Each host name gets an integer identifier, indexing the arrays of its query counts (all types,
+ * A and AAAA) and its first and last query times. The queries of the last day are also counted by minute, in
+ * maps keyed by host name identifier, to count the queries of a sliding time window. The queries
+ * themselves are not kept.
+ * <p>
+ * This class is not thread-safe.
+ */
+class DnsQueryStats {
+    /**
+     * The duration of a time window bucket (in milliseconds).
+     */
+    static final long BUCKET_DURATION = 60_000L;
+    /**
+     * The number of time window buckets (one day of one minute buckets).
+     */
+    static final int BUCKET_COUNT = 24 * 60;
+    /**
+     * The initial capacity of the host name arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * The host name identifiers, by host name.
+     */
+    private final TObjectIntHashMap<String> ids;
+    /**
+     * The host names, by identifier.
+     */
+    private String[] hostnames;
+    /**
+     * The query counts of all types, by host name identifier.
+     */
+    private int[] counts;
+    /**
+     * The A query counts, by host name identifier.
+     */
+    private int[] ipv4Counts;
+    /**
+     * The AAAA query counts, by host name identifier.
+     */
+    private int[] ipv6Counts;
+    /**
+     * The first query times, by host name identifier.
+     */
+    private long[] firstTimes;
+    /**
+     * The last query times, by host name identifier.
+     */
+    private long[] lastTimes;
+    /**
+     * The number of host names.
+     */
+    private int size;
+    /**
+     * The query counts by host name identifier, of each minute bucket.
+     */
+    private final TIntIntHashMap[] buckets;
+    /**
+     * The minute of each bucket ({@code -1} if the bucket is empty).
+     */
+    private final long[] bucketMinutes;
+
+    /**
+     * Constructor.
+     */
+    DnsQueryStats() {
+        this.ids = new TObjectIntHashMap<>(INITIAL_CAPACITY, 0.5F, -1);
+        this.buckets = new TIntIntHashMap[BUCKET_COUNT];
+        this.bucketMinutes = new long[BUCKET_COUNT];
+        clear();
+    }
+
+    /**
+     * Remove all the aggregated queries.
+     */
+    void clear() {
+        this.ids.clear();
+        this.hostnames = new String[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+        this.ipv4Counts = new int[INITIAL_CAPACITY];
+        this.ipv6Counts = new int[INITIAL_CAPACITY];
+        this.firstTimes = new long[INITIAL_CAPACITY];
+        this.lastTimes = new long[INITIAL_CAPACITY];
+        this.size = 0;
+        Arrays.fill(this.buckets, null);
+        Arrays.fill(this.bucketMinutes, -1);
+    }
+
+    /**
+     * Get the number of host names.
+     *
+     * @return The number of host names.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Add a DNS query.
+     *
+     * @param query The DNS query to add.
+     */
+    void add(DnsQuery query) {
+        int id = getId(query.getHostname());
+        this.counts[id]++;
+        if (query.getType() == DnsQuery.TYPE_A) {
+            this.ipv4Counts[id]++;
+        } else if (query.getType() == DnsQuery.TYPE_AAAA) {
+            this.ipv6Counts[id]++;
+        }
+        long time = query.getTime();
+        this.firstTimes[id] = Math.min(this.firstTimes[id], time);
+        this.lastTimes[id] = Math.max(this.lastTimes[id], time);
+        // Count query in its minute bucket
+        long minute = time / BUCKET_DURATION;
+        int slot = (int) (minute % BUCKET_COUNT);
+        if (this.bucketMinutes[slot] != minute) {
+            if (this.bucketMinutes[slot] > minute) {
+                // Query is older than the buckets
+                return;
+            }
+            this.bucketMinutes[slot] = minute;
+            if (this.buckets[slot] == null) {
+                this.buckets[slot] = new TIntIntHashMap();
+            } else {
+                this.buckets[slot].clear();
+            }
+        }
+        this.buckets[slot].adjustOrPutValue(id, 1, 1);
+    }
+
+    /**
+     * Get the most queried host names.
+     *
+     * @param count  The maximum number of host names to get.
+     * @param window The time window to count queries in (in milliseconds), {@code 0} to count all
+     *               queries. Time windows are rounded to minutes and limited to one day.
+     * @param now    The time window end (in milliseconds since epoch).
+     * @return The most queried host names statistics, by decreasing query count.
+     */
+    List<HostnameStats> getTop(int count, long window, long now) {
+        int[] counts = window <= 0 ? this.counts : getWindowCounts(window, now);
+        // Keep the top host names in a min heap
+        PriorityQueue<HostnameStats> top = new PriorityQueue<>(count + 1,
+                (stats1, stats2) -> Integer.compare(stats1.count, stats2.count));
+        for (int id = 0; id < this.size; id++) {
+            if (counts[id] == 0 || top.size() == count && counts[id] <= top.peek().count) {
+                continue;
+            }
+            top.add(new HostnameStats(
+                    this.hostnames[id],
+                    counts[id],
+                    this.ipv4Counts[id],
+                    this.ipv6Counts[id],
+                    this.firstTimes[id],
+                    this.lastTimes[id]
+            ));
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+        List<HostnameStats> result = new ArrayList<>(top);
+        Collections.sort(result, (stats1, stats2) -> Integer.compare(stats2.count, stats1.count));
+        return result;
+    }
+
+    private int[] getWindowCounts(long window, long now) {
+        int[] counts = new int[this.size];
+        long lastMinute = now / BUCKET_DURATION;
+        long minuteCount = Math.min(BUCKET_COUNT, Math.max(1, window / BUCKET_DURATION));
+        long firstMinute = lastMinute - minuteCount + 1;
+        for (int slot = 0; slot < BUCKET_COUNT; slot++) {
+            long minute = this.bucketMinutes[slot];
+            if (minute < firstMinute || minute > lastMinute) {
+                continue;
+            }
+            this.buckets[slot].forEachEntry((id, bucketCount) -> {
+                counts[id] += bucketCount;
+                return true;
+            });
+        }
+        return counts;
+    }
+
+    private int getId(String hostname) {
+        int id = this.ids.get(hostname);
+        if (id != -1) {
+            return id;
+        }
+        id = this.size++;
+        if (id == this.hostnames.length) {
+            int capacity = id * 2;
+            this.hostnames = Arrays.copyOf(this.hostnames, capacity);
+            this.counts = Arrays.copyOf(this.counts, capacity);
+            this.ipv4Counts = Arrays.copyOf(this.ipv4Counts, capacity);
+            this.ipv6Counts = Arrays.copyOf(this.ipv6Counts, capacity);
+            this.firstTimes = Arrays.copyOf(this.firstTimes, capacity);
+            this.lastTimes = Arrays.copyOf(this.lastTimes, capacity);
+        }
+        this.ids.put(hostname, id);
+        this.hostnames[id] = hostname;
+        this.firstTimes[id] = Long.MAX_VALUE;
+        this.lastTimes[id] = Long.MIN_VALUE;
+        return id;
+    }
+
+    /**
+     * This class represents the query statistics of a host name.
+     */
+    static class HostnameStats {
+        @NonNull
+        private final String hostname;
+        private final int count;
+        private final int ipv4Count;
+        private final int ipv6Count;
+        private final long firstTime;
+        private final long lastTime;
+
+        HostnameStats(@NonNull String hostname, int count, int ipv4Count, int ipv6Count, long firstTime, long lastTime) {
+            this.hostname = hostname;
+            this.count = count;
+            this.ipv4Count = ipv4Count;
+            this.ipv6Count = ipv6Count;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+        }
+
+        @NonNull
+        String getHostname() {
+            return this.hostname;
+        }
+
+        /**
+         * Get the query count in the requested time window.
+         *
+         * @return The query count in the requested time window.
+         */
+        int getCount() {
+            return this.count;
+        }
+
+        /**
+         * Get the A query count, all time.
+         *
+         * @return The A query count.
+         */
+        int getIpv4Count() {
+            return this.ipv4Count;
+        }
+
+        /**
+         * Get the AAAA query count, all time.
+         *
+         * @return The AAAA query count.
+         */
+        int getIpv6Count() {
+            return this.ipv6Count;
+        }
+
+        long getFirstTime() {
+            return this.firstTime;
+        }
+
+        long getLastTime() {
+            return this.lastTime;
+        }
+    }
+}
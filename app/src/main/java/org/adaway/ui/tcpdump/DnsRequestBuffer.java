@@ -0,0 +1,69 @@
+package org.adaway.ui.tcpdump;
+
+import java.util.List;
+
+/**
+ * This class is a bounded ring buffer of the last DNS queries.
+ * <p>
+ * Each added query gets the next sequence number. Readers remember the last sequence number
+ * they read and get the queries added since. Once the buffer is full, the oldest queries are
+ * overwritten so slow readers miss them.
+ * <p>
+ * This class is thread-safe.
+ */
+class DnsRequestBuffer {
+    /**
+     * The buffered queries, indexed by sequence number modulo capacity.
+     */
+    private final DnsQuery[] queries;
+    /**
+     * The number of queries added since the buffer creation.
+     */
+    private long sequence;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The maximum number of buffered queries.
+     */
+    DnsRequestBuffer(int capacity) {
+        this.queries = new DnsQuery[capacity];
+        this.sequence = 0;
+    }
+
+    /**
+     * Add a DNS query.
+     *
+     * @param query The DNS query.
+     * @return The sequence number after the added query.
+     */
+    synchronized long add(DnsQuery query) {
+        this.queries[(int) (this.sequence % this.queries.length)] = query;
+        return ++this.sequence;
+    }
+
+    /**
+     * Read the queries added since a sequence number.
+     *
+     * @param from    The sequence number after the last read query.
+     * @param queries The list to add the read queries to, oldest first.
+     * @return The sequence number after the last read query.
+     */
+    synchronized long readSince(long from, List<DnsQuery> queries) {
+        // Skip overwritten queries
+        long start = Math.max(from, this.sequence - this.queries.length);
+        for (long index = start; index < this.sequence; index++) {
+            queries.add(this.queries[(int) (index % this.queries.length)]);
+        }
+        return this.sequence;
+    }
+
+    /**
+     * Get the sequence number after the last added query.
+     *
+     * @return The current sequence number.
+     */
+    synchronized long getSequence() {
+        return this.sequence;
+    }
+}
@@ -0,0 +1,320 @@
+package org.adaway.ui.tcpdump;
+
+import org.adaway.util.Constants;
+import org.adaway.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class follows the raw packet capture of tcpdump to read the DNS queries.
+ * <p>
+ * tcpdump writes the packets in pcap format and starts a new numbered file once the current one
+ * reaches one megabyte ({@code -C} option): {@code dns_log.pcap}, {@code dns_log.pcap1},
+ * {@code dns_log.pcap2}... The reader remembers the file and the offset after the last read packet
+ * and decodes the packets with {@link DnsPacketDecoder}. The oldest files are evicted when the
+ * capture exceeds its size cap.
+ * <p>
+ * As tcpdump keeps writing the current file at its own offset, it can't be truncated. Clearing the
+ * capture deletes the previous files and saves the current position as the capture start instead.
+ * <p>
+ * This class is not thread-safe.
+ */
+class PcapLogReader implements DnsQueryReader {
+    /**
+     * The maximum capture size (in bytes).
+     */
+    static final long MAX_SIZE = TcpdumpLogStorage.MAX_SIZE;
+    /**
+     * The pcap global header length (in bytes).
+     */
+    private static final int GLOBAL_HEADER_LENGTH = 24;
+    /**
+     * The pcap packet header length (in bytes).
+     */
+    private static final int PACKET_HEADER_LENGTH = 16;
+    /**
+     * The maximum captured packet length (in bytes).
+     */
+    private static final int MAX_PACKET_LENGTH = 262144;
+    /**
+     * The capture start file name suffix.
+     */
+    private static final String START_SUFFIX = ".start";
+    /**
+     * The lock of the capture files.
+     */
+    private static final Object LOCK = new Object();
+    /**
+     * The first capture file.
+     */
+    private final File pcapFile;
+    /**
+     * The buffer of the packet being read.
+     */
+    private final byte[] packet;
+    /**
+     * The sequence number of the file of the last read packet.
+     */
+    private long sequence;
+    /**
+     * The offset after the last read packet in its file (in bytes).
+     */
+    private long offset;
+
+    /**
+     * Constructor.
+     *
+     * @param pcapFile The first capture file.
+     */
+    PcapLogReader(File pcapFile) {
+        this.pcapFile = pcapFile;
+        this.packet = new byte[MAX_PACKET_LENGTH];
+        reset();
+    }
+
+    /**
+     * Delete all the capture files, before starting a new capture.
+     *
+     * @param pcapFile The first capture file.
+     */
+    static void delete(File pcapFile) {
+        synchronized (LOCK) {
+            for (long sequence : listSequences(pcapFile)) {
+                deleteFile(getFile(pcapFile, sequence));
+            }
+            deleteFile(getStartFile(pcapFile));
+        }
+    }
+
+    /**
+     * Delete the oldest capture files until the capture fits its size cap. The current file is
+     * always kept as tcpdump is writing it.
+     *
+     * @param pcapFile The first capture file.
+     */
+    static void evict(File pcapFile) {
+        synchronized (LOCK) {
+            long[] sequences = listSequences(pcapFile);
+            long size = 0;
+            for (long sequence : sequences) {
+                size += getFile(pcapFile, sequence).length();
+            }
+            for (int index = 0; index < sequences.length - 1 && size > MAX_SIZE; index++) {
+                File file = getFile(pcapFile, sequences[index]);
+                size -= file.length();
+                deleteFile(file);
+            }
+        }
+    }
+
+    @Override
+    public boolean readNewQueries(List<DnsQuery> queries) {
+        evict(this.pcapFile);
+        synchronized (LOCK) {
+            long[] sequences = listSequences(this.pcapFile);
+            // Check if the capture was cleared or restarted, an evicted current file is not
+            File file = getFile(this.pcapFile, this.sequence);
+            boolean truncated = sequences.length > 0 && this.sequence > sequences[sequences.length - 1] ||
+                    file.exists() && file.length() < this.offset;
+            if (truncated) {
+                reset();
+            }
+            for (long sequence : sequences) {
+                if (sequence >= this.sequence) {
+                    readFile(sequence, sequence == this.sequence ? this.offset : 0, queries);
+                }
+            }
+            return truncated;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (LOCK) {
+            // Skip to the last packet of the current file
+            readNewQueries(new ArrayList<>());
+            long[] sequences = listSequences(this.pcapFile);
+            for (long sequence : sequences) {
+                if (sequence < this.sequence) {
+                    deleteFile(getFile(this.pcapFile, sequence));
+                }
+            }
+            // Save position as capture start
+            try (DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(getStartFile(this.pcapFile)))) {
+                outputStream.writeLong(this.sequence);
+                outputStream.writeLong(this.offset);
+            } catch (IOException exception) {
+                Log.e(Constants.TAG, "Failed to save the tcpdump capture start.", exception);
+            }
+        }
+    }
+
+    /**
+     * Start over from the capture start.
+     */
+    private void reset() {
+        this.sequence = 0;
+        this.offset = 0;
+        File startFile = getStartFile(this.pcapFile);
+        if (!startFile.exists()) {
+            return;
+        }
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(startFile))) {
+            this.sequence = inputStream.readLong();
+            this.offset = inputStream.readLong();
+        } catch (IOException exception) {
+            Log.w(Constants.TAG, "Failed to read the tcpdump capture start.", exception);
+        }
+    }
+
+    private void readFile(long sequence, long start, List<DnsQuery> queries) {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(getFile(this.pcapFile, sequence)))) {
+            // Read global header
+            byte[] header = new byte[GLOBAL_HEADER_LENGTH];
+            if (!readFully(inputStream, header, GLOBAL_HEADER_LENGTH)) {
+                return;
+            }
+            int magic = readInt(header, 0, true);
+            boolean bigEndian;
+            boolean nanoseconds;
+            switch (magic) {
+                case 0xA1B2C3D4:
+                    bigEndian = true;
+                    nanoseconds = false;
+                    break;
+                case 0xD4C3B2A1:
+                    bigEndian = false;
+                    nanoseconds = false;
+                    break;
+                case 0xA1B23C4D:
+                    bigEndian = true;
+                    nanoseconds = true;
+                    break;
+                case 0x4D3CB2A1:
+                    bigEndian = false;
+                    nanoseconds = true;
+                    break;
+                default:
+                    Log.w(Constants.TAG, "Invalid tcpdump capture file " + sequence + ".");
+                    return;
+            }
+            int linkType = readInt(header, 20, bigEndian) & 0xFFFF;
+            long position = GLOBAL_HEADER_LENGTH;
+            if (start > position) {
+                skipFully(inputStream, start - position);
+                position = start;
+            }
+            this.sequence = sequence;
+            this.offset = position;
+            // Read packets
+            while (readFully(inputStream, header, PACKET_HEADER_LENGTH)) {
+                long seconds = readInt(header, 0, bigEndian) & 0xFFFFFFFFL;
+                long fraction = readInt(header, 4, bigEndian) & 0xFFFFFFFFL;
+                int length = readInt(header, 8, bigEndian);
+                if (length < 0 || length > MAX_PACKET_LENGTH) {
+                    Log.w(Constants.TAG, "Invalid packet length in tcpdump capture file " + sequence + ".");
+                    return;
+                }
+                long time = seconds * 1000 + fraction / (nanoseconds ? 1_000_000 : 1_000);
+                if (!readFully(inputStream, this.packet, length)) {
+                    return;
+                }
+                DnsQuery query = DnsPacketDecoder.decode(linkType, this.packet, length, time);
+                if (query != null) {
+                    queries.add(query);
+                }
+                position += PACKET_HEADER_LENGTH + length;
+                this.offset = position;
+            }
+        } catch (IOException exception) {
+            Log.e(Constants.TAG, "Failed to read the tcpdump capture file " + sequence + ".", exception);
+        }
+    }
+
+    /**
+     * List the capture file sequence numbers.
+     *
+     * @param pcapFile The first capture file.
+     * @return The capture file sequence numbers, sorted.
+     */
+    private static long[] listSequences(File pcapFile) {
+        String[] names = pcapFile.getParentFile().list();
+        if (names == null) {
+            return new long[0];
+        }
+        String prefix = pcapFile.getName();
+        long[] sequences = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (!name.startsWith(prefix)) {
+                continue;
+            }
+            String suffix = name.substring(prefix.length());
+            if (suffix.isEmpty()) {
+                sequences[count++] = 0;
+            } else if (suffix.matches("[0-9]{1,18}")) {
+                sequences[count++] = Long.parseLong(suffix);
+            }
+        }
+        sequences = Arrays.copyOf(sequences, count);
+        Arrays.sort(sequences);
+        return sequences;
+    }
+
+    private static File getFile(File pcapFile, long sequence) {
+        return sequence == 0 ? pcapFile : new File(pcapFile.getPath() + sequence);
+    }
+
+    private static File getStartFile(File pcapFile) {
+        return new File(pcapFile.getPath() + START_SUFFIX);
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(Constants.TAG, "Failed to delete " + file + ".");
+        }
+    }
+
+    private static boolean readFully(InputStream inputStream, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = inputStream.read(buffer, read, length - read);
+            if (count == -1) {
+                return false;
+            }
+            read += count;
+        }
+        return true;
+    }
+
+    private static void skipFully(InputStream inputStream, long count) throws IOException {
+        while (count > 0) {
+            long skipped = inputStream.skip(count);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            count -= skipped;
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset, boolean bigEndian) {
+        int b0 = bytes[offset] & 0xFF;
+        int b1 = bytes[offset + 1] & 0xFF;
+        int b2 = bytes[offset + 2] & 0xFF;
+        int b3 = bytes[offset + 3] & 0xFF;
+        return bigEndian ?
+                b0 << 24 | b1 << 16 | b2 << 8 | b3 :
+                b3 << 24 | b2 << 16 | b1 << 8 | b0;
+    }
+}
@@ -53,6 +53,10 @@ import org.adaway.ui.dialog.AlertDialogValidator;
 import org.adaway.ui.hostsinstall.HostsInstallSnackbar;
 import org.adaway.util.RegexUtils;
 
+import java.util.List;
+
+import static org.adaway.ui.tcpdump.TcpdumpLogViewModel.STATISTICS_WINDOWS;
+
 /**
  * This class is an {@link android.app.Activity} to show tcpdump log entries.
  *
@@ -138,15 +142,49 @@ public class TcpdumpLogActivity extends AppCompatActivity implements TcpdumpLogV
             case R.id.sort:
                 mViewModel.toggleSort();
                 return true;
+            case R.id.statistics:
+                mViewModel.getStatistics(this::showStatistics);
+                return true;
             case R.id.delete:
-                TcpdumpUtils.clearLogFile(this);
-                mViewModel.updateDnsRequests();
+                mViewModel.clearDnsRequests();
                 return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
     }
 
+    private void showStatistics(List<List<DnsQueryStats.HostnameStats>> statistics) {
+        if (isFinishing()) {
+            return;
+        }
+        String[] windowNames = getResources().getStringArray(R.array.tcpdump_statistics_windows);
+        StringBuilder message = new StringBuilder();
+        for (int index = 0; index < STATISTICS_WINDOWS.length; index++) {
+            if (index > 0) {
+                message.append('\n');
+            }
+            message.append(windowNames[index]).append('\n');
+            List<DnsQueryStats.HostnameStats> top = statistics.get(index);
+            if (top.isEmpty()) {
+                message.append(getString(R.string.tcpdump_statistics_empty)).append('\n');
+            }
+            for (DnsQueryStats.HostnameStats stats : top) {
+                message.append(getString(
+                        R.string.tcpdump_statistics_entry,
+                        stats.getCount(),
+                        stats.getHostname(),
+                        stats.getIpv4Count(),
+                        stats.getIpv6Count()
+                )).append('\n');
+            }
+        }
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.tcpdump_statistics_title)
+                .setMessage(message)
+                .setPositiveButton(R.string.button_close, (dialog, which) -> dialog.dismiss())
+                .show();
+    }
+
     @Override
     public void addListItem(@NonNull String hostName, @NonNull ListType type) {
         // Check view model and snackbar notification
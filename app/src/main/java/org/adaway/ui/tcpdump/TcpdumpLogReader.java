@@ -0,0 +1,135 @@
+package org.adaway.ui.tcpdump;
+
+import org.adaway.util.Constants;
+import org.adaway.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * This class follows the tcpdump text log to read the DNS queries.
+ * <p>
+ * The reader remembers the position of the last read line, as a segment sequence number and an
+ * offset in this segment, so each read only parses the lines appended since, including the ones
+ * rotated in between. An incomplete last line is left to be read once tcpdump ends it. If the log
+ * is cleared, the reader starts over from the beginning.
+ * <p>
+ * This class is not thread-safe.
+ */
+class TcpdumpLogReader implements DnsQueryReader {
+    /**
+     * The read buffer size (in bytes).
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * The tcpdump log storage.
+     */
+    private final TcpdumpLogStorage storage;
+    /**
+     * The DNS query parser.
+     */
+    private DnsQuery.Parser parser;
+    /**
+     * The sequence number of the segment of the last read line.
+     */
+    private long sequence;
+    /**
+     * The offset after the last read line in its segment (in bytes).
+     */
+    private long offset;
+
+    /**
+     * Constructor.
+     *
+     * @param storage The tcpdump log storage.
+     */
+    TcpdumpLogReader(TcpdumpLogStorage storage) {
+        this.storage = storage;
+        reset();
+    }
+
+    /**
+     * Start over from the beginning of the log.
+     */
+    private void reset() {
+        this.parser = new DnsQuery.Parser();
+        this.sequence = 0;
+        this.offset = 0;
+    }
+
+    @Override
+    public boolean readNewQueries(List<DnsQuery> queries) {
+        synchronized (this.storage) {
+            // Check if the log was cleared
+            long liveSequence = this.storage.getLiveSequence();
+            boolean truncated = this.sequence > liveSequence || this.sequence == liveSequence &&
+                    this.storage.getLiveFile().length() < this.offset;
+            if (truncated) {
+                reset();
+            }
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long nextSequence = this.sequence;
+            for (TcpdumpLogStorage.Segment segment : this.storage.getSegments(this.sequence)) {
+                if (!segment.exists()) {
+                    continue;
+                }
+                long start = 0;
+                if (segment.getSequence() == this.sequence) {
+                    start = this.offset;
+                } else if (segment.getSequence() != nextSequence) {
+                    // Previous segments were evicted
+                    line.reset();
+                }
+                readSegment(segment, start, line, queries);
+                nextSequence = segment.getSequence() + 1;
+            }
+            return truncated;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this.storage) {
+            this.storage.clear();
+            reset();
+        }
+    }
+
+    private void readSegment(TcpdumpLogStorage.Segment segment, long start, ByteArrayOutputStream line, List<DnsQuery> queries) {
+        try (InputStream inputStream = segment.open()) {
+            long position = 0;
+            while (position < start) {
+                long skipped = inputStream.skip(start - position);
+                if (skipped <= 0) {
+                    return;
+                }
+                position += skipped;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                int lineStart = 0;
+                for (int index = 0; index < count; index++) {
+                    if (buffer[index] == '\n') {
+                        line.write(buffer, lineStart, index - lineStart);
+                        DnsQuery query = this.parser.parse(line.toString(StandardCharsets.UTF_8.name()));
+                        if (query != null) {
+                            queries.add(query);
+                        }
+                        line.reset();
+                        lineStart = index + 1;
+                        this.sequence = segment.getSequence();
+                        this.offset = position + lineStart;
+                    }
+                }
+                line.write(buffer, lineStart, count - lineStart);
+                position += count;
+            }
+        } catch (IOException exception) {
+            Log.e(Constants.TAG, "Failed to read the tcpdump log segment " + segment.getSequence() + ".", exception);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.adaway.ui.tcpdump;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.TimeUnit;
+
+import static androidx.work.ListenableWorker.Result.success;
+
+/**
+ * This class is a service to periodically rotate the tcpdump log while tcpdump writes it, and to
+ * evict the oldest raw packet capture files.<br/>
+ * It could be {@link #enable()} or {@link #disable()} with tcpdump.<br>
+ * The implementation is based on WorkManager from Android X.
+ */
+public final class TcpdumpLogRotation {
+    /**
+     * The rotation work tag.
+     */
+    private static final String WORKER_TAG = "TcpdumpLogRotationWorkTag";
+
+    /**
+     * Private constructor.
+     */
+    private TcpdumpLogRotation() {
+
+    }
+
+    /**
+     * Enable log rotation.
+     */
+    static void enable() {
+        // Cancel previous work
+        WorkManager.getInstance().cancelAllWorkByTag(WORKER_TAG);
+        // Create work request (shortest period allowed)
+        PeriodicWorkRequest workRequest = new PeriodicWorkRequest.Builder(LogRotationWorker.class, 15, TimeUnit.MINUTES)
+                .addTag(WORKER_TAG)
+                .build();
+        // Enqueue work request
+        WorkManager.getInstance().enqueue(workRequest);
+    }
+
+    /**
+     * Disable log rotation.
+     */
+    static void disable() {
+        // Cancel previous work
+        WorkManager.getInstance().cancelAllWorkByTag(WORKER_TAG);
+    }
+
+    /**
+     * This class is a {@link Worker} to rotate the tcpdump log.
+     */
+    public static class LogRotationWorker extends Worker {
+        /**
+         * Constructor.
+         *
+         * @param context      The application context.
+         * @param workerParams The parameters to setup this worker.
+         */
+        public LogRotationWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+            super(context, workerParams);
+        }
+
+        @NonNull
+        @Override
+        public Result doWork() {
+            Context context = getApplicationContext();
+            TcpdumpLogStorage.getInstance(context).rotate();
+            PcapLogReader.evict(TcpdumpUtils.getPcapFile(context));
+            return success();
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package org.adaway.ui.tcpdump;
+
+import android.content.Context;
+
+import org.adaway.util.Constants;
+import org.adaway.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class stores the tcpdump log as rotated segment files.
+ * <p>
+ * tcpdump appends to the live log file. Once it is big or old enough, its content is moved to a
+ * new segment file (optionally compressed) and the live log file is truncated, tcpdump keeps
+ * appending to it. Each segment has a sequence number and the live log file has the sequence
+ * number its next segment will get, so the log is read in sequence order. The oldest segments are
+ * evicted when the log exceeds its size cap.
+ * <p>
+ * Rotation, clear and reads must be synchronized on the storage instance.
+ */
+class TcpdumpLogStorage {
+    /**
+     * The live log size to rotate at (in bytes).
+     */
+    static final long SEGMENT_SIZE = 1024 * 1024;
+    /**
+     * The live log age to rotate at (in milliseconds).
+     */
+    static final long SEGMENT_DURATION = TimeUnit.HOURS.toMillis(1);
+    /**
+     * The maximum log size, segments and live log file included (in bytes).
+     */
+    static final long MAX_SIZE = 8 * 1024 * 1024;
+    /**
+     * The segment directory name.
+     */
+    private static final String SEGMENT_DIRECTORY = "dns_log";
+    /**
+     * The segment file name prefix.
+     */
+    private static final String SEGMENT_PREFIX = "dns_log.";
+    /**
+     * The segment file name suffix.
+     */
+    private static final String SEGMENT_SUFFIX = ".txt";
+    /**
+     * The compressed segment file name suffix.
+     */
+    private static final String COMPRESSED_SEGMENT_SUFFIX = ".txt.gz";
+    /**
+     * The segment temporary file name suffix.
+     */
+    private static final String TEMPORARY_SEGMENT_SUFFIX = ".tmp";
+    /**
+     * The singleton instance ({@code null} if not created yet).
+     */
+    private static TcpdumpLogStorage instance;
+    /**
+     * The live log file.
+     */
+    private final File liveFile;
+    /**
+     * The segment directory.
+     */
+    private final File segmentDirectory;
+    /**
+     * Whether rotated segments are compressed.
+     */
+    private final boolean compress;
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory to store the log into.
+     * @param compress  {@code true} to compress rotated segments, {@code false} otherwise.
+     */
+    TcpdumpLogStorage(File directory, boolean compress) {
+        this.liveFile = new File(directory, Constants.TCPDUMP_LOG);
+        this.segmentDirectory = new File(directory, SEGMENT_DIRECTORY);
+        this.compress = compress;
+    }
+
+    /**
+     * Get the tcpdump log storage.
+     *
+     * @param context The application context.
+     * @return The tcpdump log storage instance.
+     */
+    static synchronized TcpdumpLogStorage getInstance(Context context) {
+        if (instance == null) {
+            instance = new TcpdumpLogStorage(context.getCacheDir(), true);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the live log file tcpdump appends to.
+     *
+     * @return The live log file.
+     */
+    File getLiveFile() {
+        return this.liveFile;
+    }
+
+    /**
+     * Get the sequence number of the live log file.
+     *
+     * @return The sequence number after the last segment.
+     */
+    synchronized long getLiveSequence() {
+        long[] sequences = listSequences();
+        return sequences.length == 0 ? 0 : sequences[sequences.length - 1] + 1;
+    }
+
+    /**
+     * Get the log segments, in sequence order, ending with the live log file.
+     * <p>
+     * Segments are only opened when iterated over.
+     *
+     * @param fromSequence The sequence number of the first segment to get.
+     * @return The log segments from the given sequence number.
+     */
+    synchronized Iterable<Segment> getSegments(long fromSequence) {
+        long[] sequences = listSequences();
+        long liveSequence = sequences.length == 0 ? 0 : sequences[sequences.length - 1] + 1;
+        int start = 0;
+        while (start < sequences.length && sequences[start] < fromSequence) {
+            start++;
+        }
+        int first = start;
+        return () -> new Iterator<Segment>() {
+            private int index = first;
+
+            @Override
+            public boolean hasNext() {
+                return this.index <= sequences.length;
+            }
+
+            @Override
+            public Segment next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int current = this.index++;
+                return current == sequences.length ?
+                        new Segment(liveSequence, liveFile, false) :
+                        getSegment(sequences[current]);
+            }
+        };
+    }
+
+    /**
+     * Rotate the live log file if it is big or old enough, then evict the oldest segments if the
+     * log exceeds its size cap.
+     * <p>
+     * The live log file is copied then truncated in place as tcpdump keeps it open. Lines
+     * appended in between are lost.
+     *
+     * @return {@code true} if the live log file was rotated, {@code false} otherwise.
+     */
+    synchronized boolean rotate() {
+        long length = this.liveFile.length();
+        if (length == 0) {
+            return false;
+        }
+        // The segment directory modification time is the last rotation time
+        if (!this.segmentDirectory.isDirectory() && !this.segmentDirectory.mkdirs()) {
+            Log.w(Constants.TAG, "Failed to create tcpdump log segment directory.");
+            return false;
+        }
+        long age = System.currentTimeMillis() - this.segmentDirectory.lastModified();
+        if (length < SEGMENT_SIZE && age < SEGMENT_DURATION) {
+            return false;
+        }
+        long sequence = getLiveSequence();
+        File temporaryFile = new File(this.segmentDirectory, SEGMENT_PREFIX + sequence + TEMPORARY_SEGMENT_SUFFIX);
+        try (RandomAccessFile file = new RandomAccessFile(this.liveFile, "rw");
+             FileChannel liveChannel = file.getChannel();
+             FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+            FileChannel segmentChannel = outputStream.getChannel();
+            long position = 0;
+            long size;
+            while (position < (size = liveChannel.size())) {
+                position += liveChannel.transferTo(position, size - position, segmentChannel);
+            }
+            liveChannel.truncate(0);
+        } catch (IOException exception) {
+            Log.e(Constants.TAG, "Failed to rotate the tcpdump log file.", exception);
+            deleteFile(temporaryFile);
+            return false;
+        }
+        File segmentFile = new File(this.segmentDirectory, SEGMENT_PREFIX + sequence + SEGMENT_SUFFIX);
+        if (this.compress) {
+            File compressedFile = new File(this.segmentDirectory, SEGMENT_PREFIX + sequence + COMPRESSED_SEGMENT_SUFFIX);
+            boolean compressed = false;
+            try (InputStream inputStream = new FileInputStream(temporaryFile);
+                 OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(compressedFile))) {
+                copy(inputStream, outputStream);
+                compressed = true;
+            } catch (IOException exception) {
+                // Keep the segment uncompressed
+                Log.w(Constants.TAG, "Failed to compress tcpdump log segment.", exception);
+                deleteFile(compressedFile);
+            }
+            if (compressed) {
+                deleteFile(temporaryFile);
+                evict();
+                return true;
+            }
+        }
+        if (!temporaryFile.renameTo(segmentFile)) {
+            Log.w(Constants.TAG, "Failed to rename tcpdump log segment " + temporaryFile + ".");
+        }
+        evict();
+        return true;
+    }
+
+    /**
+     * Delete all the segments and truncate the live log file.
+     *
+     * @return {@code true} if the log was cleared, {@code false} otherwise.
+     */
+    synchronized boolean clear() {
+        boolean cleared = true;
+        File[] files = this.segmentDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                cleared &= file.delete();
+            }
+        }
+        if (this.liveFile.exists()) {
+            // Truncate the file content as tcpdump keeps it open
+            try (FileOutputStream outputStream = new FileOutputStream(this.liveFile, false)) {
+                // Only truncate the file
+                outputStream.close();   // Useless but help lint
+            } catch (IOException exception) {
+                Log.e(Constants.TAG, "Error while truncating the tcpdump file!", exception);
+                cleared = false;
+            }
+        }
+        return cleared;
+    }
+
+    /**
+     * Delete the oldest segments until the log fits its size cap. The last segment is always kept
+     * as it holds the sequence number of the live log file.
+     */
+    private void evict() {
+        long[] sequences = listSequences();
+        File[] files = new File[sequences.length];
+        long size = this.liveFile.length();
+        for (int index = 0; index < sequences.length; index++) {
+            files[index] = getSegment(sequences[index]).file;
+            size += files[index].length();
+        }
+        for (int index = 0; index < files.length - 1 && size > MAX_SIZE; index++) {
+            size -= files[index].length();
+            deleteFile(files[index]);
+        }
+    }
+
+    private Segment getSegment(long sequence) {
+        File compressedFile = new File(this.segmentDirectory, SEGMENT_PREFIX + sequence + COMPRESSED_SEGMENT_SUFFIX);
+        if (compressedFile.exists()) {
+            return new Segment(sequence, compressedFile, true);
+        }
+        return new Segment(sequence, new File(this.segmentDirectory, SEGMENT_PREFIX + sequence + SEGMENT_SUFFIX), false);
+    }
+
+    /**
+     * List the segment sequence numbers.
+     *
+     * @return The segment sequence numbers, sorted.
+     */
+    private long[] listSequences() {
+        String[] names = this.segmentDirectory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] sequences = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            long sequence = parseSequence(name);
+            if (sequence != -1) {
+                sequences[count++] = sequence;
+            }
+        }
+        Arrays.sort(sequences, 0, count);
+        // Remove duplicate sequences of both compressed and uncompressed segments
+        int uniqueCount = 0;
+        for (int index = 0; index < count; index++) {
+            if (uniqueCount == 0 || sequences[index] != sequences[uniqueCount - 1]) {
+                sequences[uniqueCount++] = sequences[index];
+            }
+        }
+        return Arrays.copyOf(sequences, uniqueCount);
+    }
+
+    private static long parseSequence(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX)) {
+            return -1;
+        }
+        int end;
+        if (name.endsWith(COMPRESSED_SEGMENT_SUFFIX)) {
+            end = name.length() - COMPRESSED_SEGMENT_SUFFIX.length();
+        } else if (name.endsWith(SEGMENT_SUFFIX)) {
+            end = name.length() - SEGMENT_SUFFIX.length();
+        } else {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), end));
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(Constants.TAG, "Failed to delete " + file + ".");
+        }
+    }
+
+    /**
+     * This class is a segment of the tcpdump log.
+     */
+    static class Segment {
+        /**
+         * The segment sequence number.
+         */
+        private final long sequence;
+        /**
+         * The segment file.
+         */
+        private final File file;
+        /**
+         * Whether the segment file is compressed.
+         */
+        private final boolean compressed;
+
+        private Segment(long sequence, File file, boolean compressed) {
+            this.sequence = sequence;
+            this.file = file;
+            this.compressed = compressed;
+        }
+
+        long getSequence() {
+            return this.sequence;
+        }
+
+        boolean exists() {
+            return this.file.exists();
+        }
+
+        /**
+         * Open the segment content.
+         *
+         * @return The segment content, uncompressed.
+         * @throws IOException If the segment could not be opened.
+         */
+        InputStream open() throws IOException {
+            InputStream inputStream = new FileInputStream(this.file);
+            return this.compressed ? new GZIPInputStream(inputStream) : inputStream;
+        }
+    }
+}
@@ -5,23 +5,32 @@ import android.app.Application;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 import androidx.annotation.NonNull;
 
 import android.widget.Toast;
 
 import com.annimon.stream.Collectors;
 import com.annimon.stream.Stream;
+import com.annimon.stream.function.Consumer;
 
 import org.adaway.db.AppDatabase;
 import org.adaway.db.dao.HostListItemDao;
 import org.adaway.db.entity.HostListItem;
 import org.adaway.db.entity.ListType;
+import org.adaway.helper.PreferenceHelper;
 import org.adaway.util.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
 
 /**
  * This class is an {@link AndroidViewModel} for the {@link TcpdumpLogActivity}.
@@ -29,6 +38,14 @@ import java.util.Map;
  * @author Bruce BUJON (bruce.bujon(at)gmail(dot)com)
  */
 public class TcpdumpLogViewModel extends AndroidViewModel {
+    /**
+     * The statistics time windows (in milliseconds).
+     */
+    static final long[] STATISTICS_WINDOWS = {MINUTES.toMillis(5), HOURS.toMillis(1), HOURS.toMillis(24)};
+    /**
+     * The number of most queried host names to get statistics for.
+     */
+    private static final int STATISTICS_TOP_COUNT = 10;
     /**
      * The {@link HostListItem} DAO.
      */
@@ -37,6 +54,35 @@ public class TcpdumpLogViewModel extends AndroidViewModel {
      * The tcpdump log entries (wrapped into {@link LiveData}.
      */
     private final MutableLiveData<List<LogEntry>> logEntries;
+    /**
+     * The tcpdump log storage.
+     */
+    private final TcpdumpLogStorage logStorage;
+    /**
+     * The tcpdump log reader, of the text log or the raw packet capture.
+     */
+    private final DnsQueryReader logReader;
+    /**
+     * The observer of the streamed DNS requests.
+     */
+    private final Observer<Long> streamObserver;
+    /**
+     * The sequence number after the last read streamed DNS request (only accessed from disk IO
+     * executor).
+     */
+    private long streamSequence;
+    /**
+     * The current log entries, sorted (only accessed from disk IO executor).
+     */
+    private List<LogEntry> entries;
+    /**
+     * The host names of the current log entries (only accessed from disk IO executor).
+     */
+    private final Set<String> entryHostnames;
+    /**
+     * The DNS query statistics (only accessed from disk IO executor).
+     */
+    private final DnsQueryStats stats;
     /**
      * The current log entry sort.
      */
@@ -46,7 +92,24 @@ public class TcpdumpLogViewModel extends AndroidViewModel {
         super(application);
         hostListItemDao = AppDatabase.getInstance(getApplication()).hostsListItemDao();
         logEntries = new MutableLiveData<>();
+        logStorage = TcpdumpLogStorage.getInstance(application);
+        logReader = PreferenceHelper.getTcpdumpPcap(application) ?
+                new PcapLogReader(TcpdumpUtils.getPcapFile(application)) :
+                new TcpdumpLogReader(logStorage);
+        entries = Collections.emptyList();
+        entryHostnames = new HashSet<>();
+        stats = new DnsQueryStats();
         sort = LogEntrySort.TOP_LEVEL_DOMAIN;
+        // Follow DNS requests streamed from tcpdump
+        streamSequence = 0;
+        streamObserver = sequence -> updateStreamedDnsRequests();
+        TcpdumpStream.getInstance().getSequence().observeForever(streamObserver);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        TcpdumpStream.getInstance().getSequence().removeObserver(streamObserver);
     }
 
     public LiveData<List<LogEntry>> getLogEntries() {
@@ -60,30 +123,107 @@ public class TcpdumpLogViewModel extends AndroidViewModel {
         );
     }
 
+    /**
+     * Update the log entries with the DNS requests logged since the last update.
+     */
     public void updateDnsRequests() {
-        AppExecutors.getInstance().diskIO().execute(
-                () -> {
-                    // Get tcpdump logs
-                    List<String> logs = TcpdumpUtils.getLogs(getApplication());
-                    // Create lookup table of host list item by host name
-                    Map<String, HostListItem> hosts = Stream.of(hostListItemDao.getAll())
-                            .collect(Collectors.toMap(HostListItem::getHost));
-                    // Create log entry collection
-                    List<LogEntry> logItems = Stream.of(logs)
-                            .map(log -> {
-                                ListType type = null;
-                                HostListItem hostListItem = hosts.get(log);
-                                if (hostListItem != null) {
-                                    type = hostListItem.getType();
-                                }
-                                return new LogEntry(log, type);
-                            })
-                            .sorted(sort.comparator())
-                            .collect(Collectors.toList());
-                    // Post result
-                    logEntries.postValue(logItems);
-                }
-        );
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            // Rotate tcpdump log then read only the new queries
+            logStorage.rotate();
+            List<DnsQuery> queries = new ArrayList<>();
+            if (logReader.readNewQueries(queries)) {
+                clearEntries();
+            }
+            addEntries(queries);
+            // Post result
+            logEntries.postValue(entries);
+        });
+    }
+
+    /**
+     * Clear the tcpdump log and its entries.
+     */
+    public void clearDnsRequests() {
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            logReader.clear();
+            // Skip already streamed DNS requests
+            streamSequence = TcpdumpStream.getInstance().getBuffer().getSequence();
+            clearEntries();
+            logEntries.postValue(entries);
+        });
+    }
+
+    /**
+     * Update the log entries with the DNS requests streamed since the last update.
+     */
+    private void updateStreamedDnsRequests() {
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            List<DnsQuery> queries = new ArrayList<>();
+            streamSequence = TcpdumpStream.getInstance().getBuffer().readSince(streamSequence, queries);
+            if (addEntries(queries)) {
+                logEntries.postValue(entries);
+            }
+        });
+    }
+
+    /**
+     * Get the statistics of the most queried host names for each of the {@link #STATISTICS_WINDOWS}.
+     *
+     * @param callback The callback to give the statistics to, called on main thread.
+     */
+    public void getStatistics(Consumer<List<List<DnsQueryStats.HostnameStats>>> callback) {
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.diskIO().execute(() -> {
+            long now = System.currentTimeMillis();
+            List<List<DnsQueryStats.HostnameStats>> statistics = new ArrayList<>(STATISTICS_WINDOWS.length);
+            for (long window : STATISTICS_WINDOWS) {
+                statistics.add(stats.getTop(STATISTICS_TOP_COUNT, window, now));
+            }
+            executors.mainThread().execute(() -> callback.accept(statistics));
+        });
+    }
+
+    /**
+     * Count the DNS queries and add log entries for the host names without entry yet.
+     *
+     * @param queries The DNS queries to add entries for.
+     * @return {@code true} if entries were added, {@code false} otherwise.
+     */
+    private boolean addEntries(List<DnsQuery> queries) {
+        for (DnsQuery query : queries) {
+            stats.add(query);
+        }
+        List<String> hostnames = Stream.of(queries)
+                .map(DnsQuery::getHostname)
+                .filter(entryHostnames::add)
+                .collect(Collectors.toList());
+        if (hostnames.isEmpty()) {
+            return false;
+        }
+        // Create lookup table of host list item by host name
+        Map<String, HostListItem> hosts = Stream.of(hostListItemDao.getAll())
+                .collect(Collectors.toMap(HostListItem::getHost));
+        // Create new log entries
+        List<LogEntry> newEntries = Stream.of(hostnames)
+                .map(hostname -> {
+                    ListType type = null;
+                    HostListItem hostListItem = hosts.get(hostname);
+                    if (hostListItem != null) {
+                        type = hostListItem.getType();
+                    }
+                    return new LogEntry(hostname, type);
+                })
+                .sorted(sort.comparator())
+                .collect(Collectors.toList());
+        // Merge them into current log entries
+        entries = merge(entries, newEntries, sort.comparator());
+        return true;
+    }
+
+    private void clearEntries() {
+        entryHostnames.clear();
+        stats.clear();
+        entries = Collections.emptyList();
     }
 
     public void addListItem(@NonNull String host, @NonNull ListType type, String redirection) {
@@ -111,29 +251,26 @@ public class TcpdumpLogViewModel extends AndroidViewModel {
     }
 
     private void updateLogEntryType(@NonNull String host, ListType type) {
-        // Get current values
-        List<LogEntry> entries = logEntries.getValue();
-        if (entries == null) {
-            return;
-        }
-        // Update entry type
-        List<LogEntry> updatedEntries = Stream.of(entries)
-                .map(entry -> entry.getHost().equals(host) ? new LogEntry(host, type) : entry)
-                .collect(Collectors.toList());
-        // Post new values
-        logEntries.postValue(updatedEntries);
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            // Update entry type
+            entries = Stream.of(entries)
+                    .map(entry -> entry.getHost().equals(host) ? new LogEntry(host, type) : entry)
+                    .collect(Collectors.toList());
+            // Post new values
+            logEntries.postValue(entries);
+        });
     }
 
     private void sortDnsRequests(LogEntrySort sort) {
         // Save current sort
         this.sort = sort;
         // Apply sort to values
-        List<LogEntry> entries = logEntries.getValue();
-        if (entries != null) {
+        AppExecutors.getInstance().diskIO().execute(() -> {
             List<LogEntry> sortedEntries = new ArrayList<>(entries);
             Collections.sort(sortedEntries, sort.comparator());
-            logEntries.postValue(sortedEntries);
-        }
+            entries = sortedEntries;
+            logEntries.postValue(entries);
+        });
         // Notify user
         Toast.makeText(
                 getApplication(),
@@ -141,4 +278,28 @@ public class TcpdumpLogViewModel extends AndroidViewModel {
                 Toast.LENGTH_SHORT
         ).show();
     }
+
+    /**
+     * Merge two sorted log entry lists.
+     *
+     * @param entries    The current log entries.
+     * @param newEntries The new log entries.
+     * @param comparator The comparator both lists are sorted with.
+     * @return The merged log entries, sorted.
+     */
+    private static List<LogEntry> merge(List<LogEntry> entries, List<LogEntry> newEntries, Comparator<LogEntry> comparator) {
+        List<LogEntry> merged = new ArrayList<>(entries.size() + newEntries.size());
+        int index = 0;
+        int newIndex = 0;
+        while (index < entries.size() && newIndex < newEntries.size()) {
+            if (comparator.compare(newEntries.get(newIndex), entries.get(index)) < 0) {
+                merged.add(newEntries.get(newIndex++));
+            } else {
+                merged.add(entries.get(index++));
+            }
+        }
+        merged.addAll(entries.subList(index, entries.size()));
+        merged.addAll(newEntries.subList(newIndex, newEntries.size()));
+        return merged;
+    }
 }
@@ -0,0 +1,139 @@
+package org.adaway.ui.tcpdump;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import org.adaway.util.Constants;
+import org.adaway.util.Log;
+import org.sufficientlysecure.rootcommands.Shell;
+import org.sufficientlysecure.rootcommands.command.ExecutableCommand;
+
+import java.io.IOException;
+
+/**
+ * This class streams the DNS requests from the tcpdump output.
+ * <p>
+ * tcpdump runs in its own root shell and its line buffered output is read as it is printed, with
+ * no log file. Each DNS query is published to a {@link DnsRequestBuffer} and the sequence number
+ * of the last published query is posted to observers.
+ */
+final class TcpdumpStream {
+    /**
+     * The maximum number of buffered DNS requests.
+     */
+    private static final int BUFFER_CAPACITY = 1024;
+    /**
+     * The singleton instance.
+     */
+    private static final TcpdumpStream INSTANCE = new TcpdumpStream();
+    /**
+     * The DNS requests buffer.
+     */
+    private final DnsRequestBuffer buffer;
+    /**
+     * The sequence number after the last published DNS request.
+     */
+    private final MutableLiveData<Long> sequence;
+    /**
+     * The root shell running tcpdump ({@code null} if not streaming).
+     */
+    private Shell shell;
+
+    /**
+     * Private constructor.
+     */
+    private TcpdumpStream() {
+        this.buffer = new DnsRequestBuffer(BUFFER_CAPACITY);
+        this.sequence = new MutableLiveData<>(0L);
+    }
+
+    /**
+     * Get the tcpdump stream.
+     *
+     * @return The tcpdump stream instance.
+     */
+    static TcpdumpStream getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the DNS requests buffer.
+     *
+     * @return The DNS requests buffer.
+     */
+    DnsRequestBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Get the sequence number after the last published DNS request.
+     *
+     * @return The sequence number, wrapped into {@link LiveData}.
+     */
+    LiveData<Long> getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Start tcpdump and stream its output.
+     * <p>
+     * tcpdump is stopped by killing its process (see {@link TcpdumpUtils#stopTcpdump(Shell)}).
+     *
+     * @param context    The application context.
+     * @param parameters The tcpdump parameters.
+     * @return {@code true} if tcpdump was started, {@code false} otherwise.
+     */
+    synchronized boolean start(Context context, String parameters) {
+        if (this.shell != null) {
+            return true;
+        }
+        try {
+            Shell streamShell = Shell.startRootShell();
+            DnsQuery.Parser parser = new DnsQuery.Parser();
+            streamShell.add(new ExecutableCommand(context, Constants.TCPDUMP_EXECUTABLE, parameters) {
+                @Override
+                public void output(int id, String line) {
+                    DnsQuery query = parser.parse(line);
+                    if (query != null) {
+                        sequence.postValue(buffer.add(query));
+                    }
+                }
+
+                @Override
+                public void afterExecution(int id, int exitCode) {
+                    // Command is never waited for
+                }
+
+                @Override
+                public void commandFinished(int id) {
+                    super.commandFinished(id);
+                    onStopped(streamShell);
+                }
+            });
+            this.shell = streamShell;
+            return true;
+        } catch (Exception exception) {
+            Log.e(Constants.TAG, "Exception while starting tcpdump stream", exception);
+            return false;
+        }
+    }
+
+    /**
+     * Release the root shell once tcpdump is stopped.
+     *
+     * @param streamShell The root shell tcpdump was running in.
+     */
+    private synchronized void onStopped(Shell streamShell) {
+        Log.d(Constants.TAG, "Tcpdump stream stopped.");
+        try {
+            streamShell.close();
+        } catch (IOException exception) {
+            Log.w(Constants.TAG, "Failed to close tcpdump stream shell.", exception);
+        }
+        if (this.shell == streamShell) {
+            this.shell = null;
+        }
+    }
+}
@@ -22,26 +22,16 @@ package org.adaway.ui.tcpdump;
 
 import android.content.Context;
 
+import org.adaway.helper.PreferenceHelper;
 import org.adaway.util.Constants;
 import org.adaway.util.Log;
-import org.adaway.util.RegexUtils;
 import org.sufficientlysecure.rootcommands.Shell;
 import org.sufficientlysecure.rootcommands.Toolbox;
 import org.sufficientlysecure.rootcommands.command.SimpleCommand;
 import org.sufficientlysecure.rootcommands.command.SimpleExecutableCommand;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
 
 import io.sentry.Sentry;
 
@@ -70,6 +60,11 @@ class TcpdumpUtils {
 
     /**
      * Start tcpdump tool.
+     * <p>
+     * If live DNS requests are enabled, tcpdump output is streamed (see {@link TcpdumpStream}).
+     * If binary capture is enabled, tcpdump writes the raw packets (see {@link PcapLogReader}).
+     * Otherwise its output is appended to the log file, periodically rotated (see
+     * {@link TcpdumpLogStorage}).
      *
      * @param context The application context.
      * @return returns true if starting worked
@@ -78,6 +73,22 @@ class TcpdumpUtils {
         Log.d(Constants.TAG, "Starting tcpdump...");
         checkSystemTcpdump(shell);
 
+        // "-i any": listen on any network interface
+        // "-p": disable promiscuous mode (doesn't work anyway)
+        // "-l": Make stdout line buffered. Useful if you want to see the data while
+        // capturing it.
+        // "-v": verbose
+        // "-tt": print an unformatted timestamp (seconds since epoch)
+        // "-s 0": capture first 512 bit of packet to get DNS content
+        String parameters = "-i any -p -l -v -tt -s 512 'udp dst port 53'";
+
+        if (PreferenceHelper.getTcpdumpStreaming(context)) {
+            return TcpdumpStream.getInstance().start(context, parameters);
+        }
+        if (PreferenceHelper.getTcpdumpPcap(context)) {
+            return startPcapCapture(context, shell);
+        }
+
         File file = getLogFile(context);
         try {
             // Create log file before using it with tcpdump if not exists
@@ -89,24 +100,51 @@ class TcpdumpUtils {
             return false;
         }
 
+        SimpleExecutableCommand tcpdumpCommand = new SimpleExecutableCommand(context,
+                Constants.TCPDUMP_EXECUTABLE, parameters + " >> " + file.toString() + " 2>&1 &");
+
+        try {
+            shell.add(tcpdumpCommand).waitForFinish();
+        } catch (Exception exception) {
+            Log.e(Constants.TAG, "Exception while starting tcpdump", exception);
+            return false;
+        }
+        TcpdumpLogRotation.enable();
+        return true;
+    }
+
+    /**
+     * Start tcpdump to write the raw packets to the capture files.
+     *
+     * @param context The application context.
+     * @param shell   The root shell to start tcpdump.
+     * @return returns true if starting worked
+     */
+    private static boolean startPcapCapture(Context context, Shell shell) {
+        // Delete previous capture as tcpdump overwrites its files
+        File file = getPcapFile(context);
+        PcapLogReader.delete(file);
+
         // "-i any": listen on any network interface
         // "-p": disable promiscuous mode (doesn't work anyway)
-        // "-l": Make stdout line buffered. Useful if you want to see the data while
-        // capturing it.
-        // "-v": verbose
-        // "-t": don't print a timestamp
-        // "-s 0": capture first 512 bit of packet to get DNS content
-        String parameters = "-i any -p -l -v -t -s 512 'udp dst port 53' >> " + file.toString() + " 2>&1 &";
+        // "-U": write each packet as it is captured
+        // "-s 512": capture first 512 bytes of packet to get DNS content
+        // "-C 1": start a new file every megabyte
+        // "-w": write raw packets to file
+        String parameters = "-i any -p -U -s 512 -C 1 -w " + file.toString() + " 'udp dst port 53'";
 
         SimpleExecutableCommand tcpdumpCommand = new SimpleExecutableCommand(context,
-                Constants.TCPDUMP_EXECUTABLE, parameters);
+                Constants.TCPDUMP_EXECUTABLE, parameters + " > /dev/null 2>&1 &");
 
         try {
+            // Let the application read the capture files created by root
+            shell.add(new SimpleCommand("umask 022")).waitForFinish();
             shell.add(tcpdumpCommand).waitForFinish();
         } catch (Exception exception) {
             Log.e(Constants.TAG, "Exception while starting tcpdump", exception);
             return false;
         }
+        TcpdumpLogRotation.enable();
         return true;
     }
 
@@ -120,6 +158,7 @@ class TcpdumpUtils {
         } catch (Exception e) {
             Log.e(Constants.TAG, "Exception while killing tcpdump", e);
         }
+        TcpdumpLogRotation.disable();
     }
 
     /**
@@ -146,68 +185,19 @@ class TcpdumpUtils {
      * Get the tcpdump log file.
      *
      * @param context The application context.
-     * @return The tcpdump log file.
+     * @return The tcpdump live log file.
      */
     static File getLogFile(Context context) {
-        return new File(context.getCacheDir(), Constants.TCPDUMP_LOG);
+        return TcpdumpLogStorage.getInstance(context).getLiveFile();
     }
 
     /**
-     * Get the tcpdump log content.
+     * Get the first tcpdump capture file.
      *
      * @param context The application context.
-     * @return The tcpdump log file content.
+     * @return The first tcpdump capture file.
      */
-    static List<String> getLogs(Context context) {
-        File logFile = TcpdumpUtils.getLogFile(context);
-        // Check if the log file exists
-        if (!logFile.exists()) {
-            return Collections.emptyList();
-        }
-        // hashset, because every hostname should be contained only once
-        Set<String> set = new HashSet<>();
-        // open the file for reading
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile)))) {
-            // read every line of the file into the line-variable, one line at a time
-            String nextLine;
-            String hostname;
-            while ((nextLine = reader.readLine()) != null) {
-                hostname = RegexUtils.getTcpdumpHostname(nextLine);
-                if (hostname != null) {
-                    set.add(hostname);
-                }
-            }
-        } catch (FileNotFoundException exception) {
-            Log.e(Constants.TAG, "The tcpdump log file is missing.", exception);
-        } catch (IOException exception) {
-            Log.e(Constants.TAG, "Can not get cache directory.", exception);
-        }
-
-        return new ArrayList<>(set);
-    }
-
-    /**
-     * Delete log file of tcpdump.
-     *
-     * @param context The application context.
-     */
-    static boolean clearLogFile(Context context) {
-        // Get the log file
-        File file = getLogFile(context);
-        // Check if file exists
-        if (!file.exists()) {
-            return true;
-        }
-        // Truncate the file content
-        try (FileOutputStream outputStream = new FileOutputStream(file, false)) {
-            // Only truncate the file
-            outputStream.close();   // Useless but help lint
-        } catch (IOException exception) {
-            Log.e(Constants.TAG, "Error while truncating the tcpdump file!", exception);
-            // Return failed to clear the log file
-            return false;
-        }
-        // Return successfully clear the log file
-        return true;
+    static File getPcapFile(Context context) {
+        return new File(context.getCacheDir(), Constants.TCPDUMP_PCAP);
     }
 }
@@ -24,17 +24,16 @@ import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.StatFs;
+import android.os.SystemClock;
 
+import org.adaway.hosts.HostsFileReader;
 import org.sufficientlysecure.rootcommands.Shell;
 import org.sufficientlysecure.rootcommands.Toolbox;
 import org.sufficientlysecure.rootcommands.command.SimpleCommand;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.concurrent.TimeoutException;
 
 public class ApplyUtils {
@@ -99,12 +98,13 @@ public class ApplyUtils {
 
         /* Check if first line in hosts file is AdAway comment */
         File file = new File(target);
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)))) {
-            String firstLine = reader.readLine();
+        try {
+            // Only read the first bytes of hosts file
+            String firstLine = HostsFileReader.readFirstLine(file);
 
             Log.d(Constants.TAG, "First line of " + target + ": " + firstLine);
 
-            status = firstLine.equals(Constants.HEADER1);
+            status = Constants.HEADER1.equals(firstLine);
         } catch (FileNotFoundException e) {
             Log.e(Constants.TAG, "FileNotFoundException", e);
             status = true; // workaround for: http://code.google.com/p/ad-away/issues/detail?id=137
@@ -118,10 +118,13 @@ public class ApplyUtils {
 
     /**
      * Copy hosts file from private storage of AdAway to internal partition using RootTools
+     * <p>
+     * Targets other than /system/etc/hosts are written next to the target then atomically swapped.
      *
+     * @return The time spent remounting the target partition (in milliseconds).
      * @throws NotEnoughSpaceException RemountException CopyException
      */
-    public static void copyHostsFile(Context context, String target, Shell shell)
+    public static long copyHostsFile(Context context, String target, Shell shell)
             throws NotEnoughSpaceException, RemountException, CommandException {
         Log.i(Constants.TAG, "Copy hosts file with target: " + target);
         String privateDir = context.getFilesDir().getAbsolutePath();
@@ -143,18 +146,26 @@ public class ApplyUtils {
         /* check for space on partition */
         long size = new File(privateFile).length();
         Log.i(Constants.TAG, "Size of hosts file: " + size);
-        if (!hasEnoughSpaceOnPartition(target, size)) {
+        // the new file is written next to the current one when swapped
+        long requiredSize = target.equals(Constants.ANDROID_SYSTEM_ETC_HOSTS) ?
+                size :
+                size + new File(target).length();
+        if (!hasEnoughSpaceOnPartition(target, requiredSize)) {
             throw new NotEnoughSpaceException();
         }
 
         Toolbox tb = new Toolbox(shell);
         boolean writable = isWritable(shell, target);
+        long remountDuration = 0;
         /* Execute commands */
         try {
             if (!writable) {
                 // remount for write access
                 Log.i(Constants.TAG, "Remounting for RW...");
-                if (!tb.remount(target, "RW")) {
+                long remountStart = SystemClock.elapsedRealtime();
+                boolean remounted = tb.remount(target, "RW");
+                remountDuration += SystemClock.elapsedRealtime() - remountStart;
+                if (!remounted) {
                     throw new RemountException("Remounting as RW failed! Probably not a problem!");
                 }
             }
@@ -163,16 +174,34 @@ public class ApplyUtils {
                 // remove before copying when using /system/etc/hosts
                 SimpleCommand command = new SimpleCommand(Constants.COMMAND_RM + " " + target);
                 shell.add(command).waitForFinish();
-            }
-            // copy file
-            if (!tb.copyFile(privateFile, target, false, false)) {
-                throw new CommandException();
-            }
+                // copy file
+                if (!tb.copyFile(privateFile, target, false, false)) {
+                    throw new CommandException();
+                }
 
-            // execute commands: chown, chmod
-            SimpleCommand command = new SimpleCommand(Constants.COMMAND_CHOWN + " " + target,
-                    Constants.COMMAND_CHMOD_644 + " " + target);
-            shell.add(command).waitForFinish();
+                // execute commands: chown, chmod
+                command = new SimpleCommand(Constants.COMMAND_CHOWN + " " + target,
+                        Constants.COMMAND_CHMOD_644 + " " + target);
+                shell.add(command).waitForFinish();
+            } else {
+                // copy file next to target then swap it so target is never partially written
+                String temporaryTarget = target + ".new";
+                if (!tb.copyFile(privateFile, temporaryTarget, false, false)) {
+                    throw new CommandException();
+                }
+
+                // execute commands: chcon, chown, chmod, mv
+                SimpleCommand command = new SimpleCommand(
+                        Constants.COMMAND_CHCON_SYSTEMFILE + " " + temporaryTarget,
+                        Constants.COMMAND_CHOWN + " " + temporaryTarget,
+                        Constants.COMMAND_CHMOD_644 + " " + temporaryTarget,
+                        Constants.COMMAND_MV + " " + temporaryTarget + " " + target
+                );
+                shell.add(command).waitForFinish();
+                if (command.getExitCode() != 0) {
+                    throw new CommandException("Failed to swap hosts file.");
+                }
+            }
         } catch (IOException | TimeoutException exception) {
             Log.e(Constants.TAG, "Exception!", exception);
 
@@ -181,12 +210,15 @@ public class ApplyUtils {
             if (!writable) {
                 // after all remount target back as read only
                 Log.i(Constants.TAG, "Remounting back to RO...");
+                long remountStart = SystemClock.elapsedRealtime();
                 if (!tb.remount(target, "RO")) {
                     Log.e(Constants.TAG, "Remounting as RO failed! Probably not a problem!");
                 }
+                remountDuration += SystemClock.elapsedRealtime() - remountStart;
             }
 
         }
+        return remountDuration;
     }
 
     /**
@@ -20,6 +20,8 @@
 
 package org.adaway.util;
 
+import org.adaway.hosts.HostsFormat;
+
 public class Constants {
     /* DEBUG enables Log.d outputs, wrapped in org.adaway.util.Log and RootTools Debug Mode */
     // DEBUG must be set by a preference
@@ -31,15 +33,14 @@ public class Constants {
 
     public static final String PREFS_NAME = "preferences";
 
-    public static final String LOCALHOST_IPv4 = "127.0.0.1";
-    public static final String LOCALHOST_IPv6 = "::1";
-    public static final String WHITELIST_ENTRY = "white";
-    public static final String BOGUS_IPv4 = "0.0.0.0";
-    public static final String LOCALHOST_HOSTNAME = "localhost";
+    public static final String LOCALHOST_IPv4 = HostsFormat.LOCALHOST_IPv4;
+    public static final String LOCALHOST_IPv6 = HostsFormat.LOCALHOST_IPv6;
+    public static final String WHITELIST_ENTRY = HostsFormat.WHITELIST_ENTRY;
+    public static final String BOGUS_IPv4 = HostsFormat.BOGUS_IPv4;
+    public static final String LOCALHOST_HOSTNAME = HostsFormat.LOCALHOST_HOSTNAME;
 
-    public static final String DOWNLOADED_HOSTS_FILENAME = "hosts_downloaded";
     public static final String HOSTS_FILENAME = "hosts";
-    public static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n");
+    public static final String LINE_SEPARATOR = HostsFormat.LINE_SEPARATOR;
     public static final String FILE_SEPARATOR = System.getProperty("file.separator", "/");
 
     public static final String COMMAND_CHOWN = "chown 0:0";
@@ -48,12 +49,14 @@ public class Constants {
     public static final String COMMAND_LN = "ln -s";
     public static final String COMMAND_RM = "rm -f";
     public static final String COMMAND_MKDIR = "mkdir -p";
+    public static final String COMMAND_MV = "mv -f";
     public static final String COMMAND_CHCON_SYSTEMFILE = "chcon u:object_r:system_file:s0";
 
     public static final String WEBSERVER_EXECUTABLE = "blank_webserver";
 
     public static final String TCPDUMP_EXECUTABLE = "tcpdump";
     public static final String TCPDUMP_LOG = "dns_log.txt";
+    public static final String TCPDUMP_PCAP = "dns_log.pcap";
 
     public static final String ANDROID_SYSTEM_PATH = System.getProperty("java.home", "/system");
     public static final String ANDROID_SYSTEM_ETC_HOSTS = ANDROID_SYSTEM_PATH + FILE_SEPARATOR
@@ -74,9 +77,9 @@ public class Constants {
             + "supersu" + FILE_SEPARATOR + "su.d" + FILE_SEPARATOR
             + ANDROID_SYSTEMLESS_SCRIPT_FILENAME;
 
-    public static final String HEADER1 = "# This hosts file has been generated by AdAway on:";
-    public static final String HEADER2 = "# Please do not modify it directly, it will be overwritten when AdAway is applied again.";
-    public static final String HEADER_SOURCES = "# This file is generated from the following sources:";
+    public static final String HEADER1 = HostsFormat.HEADER1;
+    public static final String HEADER2 = HostsFormat.HEADER2;
+    public static final String HEADER_SOURCES = HostsFormat.HEADER_SOURCES;
 
     public static final String HEADER_EXPORT = "# This hosts file contains exported entries from AdAway.";
 
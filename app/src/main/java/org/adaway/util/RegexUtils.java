@@ -20,8 +20,7 @@
 
 package org.adaway.util;
 
-import com.google.common.net.InetAddresses;
-import com.google.common.net.InternetDomainName;
+import org.adaway.hosts.HostnameUtils;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -34,39 +33,27 @@ public class RegexUtils {
     private static final Pattern TCPDUMP_HOSTNAME_PATTERN = Pattern.compile(TCPDUMP_HOSTNAME_REGEX);
 
 
-    private static final String HOSTS_PARSER = "^\\s*([^#\\s]+)\\s+([^#\\s]+)\\s*(?:#.*)*$";
-    public static final Pattern HOSTS_PARSER_PATTERN = Pattern.compile(HOSTS_PARSER);
-
-
     /**
      * I could not find any android class that provides checking of an hostnames, thus I am using
      * regex
      *
      * @param input
      * @return return true if input is valid hostname
+     * @see HostnameUtils#isValidHostname(String)
      */
     public static boolean isValidHostname(String input) {
-        return InternetDomainName.isValid(input);
+        return HostnameUtils.isValidHostname(input);
     }
 
     /**
      * Same as {@link RegexUtils#isValidHostname(String)} but also allows * and ? as wildcard.
-     * <p/>
-     * Wildcard validation is quite tricky, because wildcards can be placed anywhere and can match with
-     * anything. To make sure we don't dismiss certain valid wildcard host names, we trim wildcards
-     * or replace them with an alphanumeric character for further validation.<br/>
-     * We only reject whitelist host names which cannot match against valid host names under any circumstances.
      *
      * @param hostname
      * @return
+     * @see HostnameUtils#isValidWhitelistHostname(String)
      */
     public static boolean isValidWhitelistHostname(String hostname) {
-        // Clear wildcards from host name then validate it
-        String clearedHostname = hostname.replaceAll("\\*", "").replaceAll("\\?", "");
-        // Replace wildcards from host name by an alphanumeric character
-        String replacedHostname = hostname.replaceAll("\\*", "a").replaceAll("\\?", "a");
-        // Check if any hostname is valid
-        return isValidHostname(clearedHostname) || isValidHostname(replacedHostname);
+        return HostnameUtils.isValidWhitelistHostname(hostname);
     }
 
     /**
@@ -76,13 +63,11 @@ public class RegexUtils {
      * @return {@code true} if the IP is valid, {@code false} otherwise.
      */
     public static boolean isValidIP(String ip) {
-        try {
-            InetAddresses.forString(ip);
-            return true;
-        } catch (IllegalArgumentException exception) {
-            Log.d(Constants.TAG, "Invalid IP address: " + ip, exception);
-            return false;
+        boolean valid = HostnameUtils.isValidIp(ip);
+        if (!valid) {
+            Log.d(Constants.TAG, "Invalid IP address: " + ip);
         }
+        return valid;
     }
 
     /**
@@ -92,17 +77,33 @@ public class RegexUtils {
      * @return
      */
     public static String getTcpdumpHostname(String input) {
+        String[] query = getTcpdumpQuery(input);
+        return query == null ? null : query[1];
+    }
+
+    /**
+     * Gets query type and hostname out of tcpdump log line
+     *
+     * @param input one line from dns log
+     * @return the query type ("A" or "AAAA") and the hostname, <code>null</code> if the line is
+     * not a DNS query
+     */
+    public static String[] getTcpdumpQuery(String input) {
         Matcher tcpdumpHostnameMatcher = TCPDUMP_HOSTNAME_PATTERN.matcher(input);
 
         try {
             if (tcpdumpHostnameMatcher.find()) {
-                return tcpdumpHostnameMatcher.group(2);
+                String type = tcpdumpHostnameMatcher.group(1);
+                return new String[]{
+                        type.substring(0, type.length() - 1),
+                        tcpdumpHostnameMatcher.group(2)
+                };
             } else {
                 Log.d(Constants.TAG, "Does not find: " + input);
                 return null;
             }
         } catch (Exception e) {
-            Log.e(Constants.TAG, "Error in getTcpdumpHostname", e);
+            Log.e(Constants.TAG, "Error in getTcpdumpQuery", e);
             // workaround for some devices that throws jni exceptions: just accept everything
             return null;
         }
@@ -110,41 +111,9 @@ public class RegexUtils {
 
     /*
      * Transforms String with * and ? characters to regex String, convert "example*.*" to regex
-     * "^example.*\\..*$", from http://www.rgagnon.com/javadetails/java-0515.html
+     * "^example.*\\..*$", see HostnameUtils.wildcardToRegex(String).
      */
     public static String wildcardToRegex(String wildcard) {
-        StringBuffer s = new StringBuffer(wildcard.length());
-        s.append('^');
-        for (int i = 0, is = wildcard.length(); i < is; i++) {
-            char c = wildcard.charAt(i);
-            switch (c) {
-                case '*':
-                    s.append(".*");
-                    break;
-                case '?':
-                    s.append(".");
-                    break;
-                // escape special regex-characters
-                case '(':
-                case ')':
-                case '[':
-                case ']':
-                case '$':
-                case '^':
-                case '.':
-                case '{':
-                case '}':
-                case '|':
-                case '\\':
-                    s.append("\\");
-                    s.append(c);
-                    break;
-                default:
-                    s.append(c);
-                    break;
-            }
-        }
-        s.append('$');
-        return (s.toString());
+        return HostnameUtils.wildcardToRegex(wildcard);
     }
 }
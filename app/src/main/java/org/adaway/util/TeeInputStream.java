@@ -0,0 +1,67 @@
+package org.adaway.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This class is an input stream that copies all the bytes read to an output stream.
+ * <p>
+ * The output stream is not closed with the input stream.
+ */
+public class TeeInputStream extends FilterInputStream {
+    /**
+     * The output stream to copy the read bytes to.
+     */
+    private final OutputStream output;
+
+    /**
+     * Constructor.
+     *
+     * @param input  The input stream to read from.
+     * @param output The output stream to copy the read bytes to.
+     */
+    public TeeInputStream(InputStream input, OutputStream output) {
+        super(input);
+        this.output = output;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            this.output.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        if (count > 0) {
+            this.output.write(buffer, offset, count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        // Read skipped bytes to copy them
+        byte[] buffer = new byte[(int) Math.min(count, 8192)];
+        long skipped = 0;
+        while (skipped < count) {
+            int read = read(buffer, 0, (int) Math.min(count - skipped, buffer.length));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+package org.adaway.ui.tcpdump;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DnsPacketDecoderTest {
+    private static final long TIME = 1_593_561_600_123L;
+
+    @Test
+    public void testLinuxCookedIpv4Query() {
+        byte[] packet = concat(sllHeader(0x0800), ipv4Header(), udpHeader(40000), dnsQuery(0x0100, "WWW.Example.com", 1));
+        DnsQuery query = DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_LINUX_SLL, packet, packet.length, TIME);
+        assertNotNull(query);
+        assertEquals("www.example.com", query.getHostname());
+        assertEquals(DnsQuery.TYPE_A, query.getType());
+        assertEquals(40000, query.getSourcePort());
+        assertEquals(TIME, query.getTime());
+    }
+
+    @Test
+    public void testOtherQueryTypes() {
+        byte[] packet = concat(sllHeader(0x0800), ipv4Header(), udpHeader(1234), dnsQuery(0x0100, "example.com", 65));
+        DnsQuery query = DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_LINUX_SLL, packet, packet.length, TIME);
+        assertNotNull(query);
+        assertEquals(65, query.getType());
+
+        packet = concat(new byte[12], new byte[]{(byte) 0x86, (byte) 0xDD}, ipv6Header(), udpHeader(5353), dnsQuery(0, "example.org", 28));
+        query = DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_ETHERNET, packet, packet.length, TIME);
+        assertNotNull(query);
+        assertEquals("example.org", query.getHostname());
+        assertEquals(DnsQuery.TYPE_AAAA, query.getType());
+        assertEquals(5353, query.getSourcePort());
+    }
+
+    @Test
+    public void testLinuxCookedV2AndRawQueries() {
+        byte[] sll2Header = new byte[20];
+        sll2Header[0] = (byte) 0x86;
+        sll2Header[1] = (byte) 0xDD;
+        byte[] packet = concat(sll2Header, ipv6Header(), udpHeader(1234), dnsQuery(0, "example.net", 16));
+        DnsQuery query = DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_LINUX_SLL2, packet, packet.length, TIME);
+        assertNotNull(query);
+        assertEquals("example.net", query.getHostname());
+
+        packet = concat(ipv4Header(), udpHeader(1234), dnsQuery(0, "example.net", 1));
+        query = DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_RAW, packet, packet.length, TIME);
+        assertNotNull(query);
+        assertEquals("example.net", query.getHostname());
+    }
+
+    @Test
+    public void testInvalidPackets() {
+        // Response
+        byte[] packet = concat(sllHeader(0x0800), ipv4Header(), udpHeader(53), dnsQuery(0x8180, "example.com", 1));
+        assertNull(DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_LINUX_SLL, packet, packet.length, TIME));
+        // Truncated question
+        packet = concat(sllHeader(0x0800), ipv4Header(), udpHeader(1234), dnsQuery(0, "example.com", 1));
+        assertNull(DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_LINUX_SLL, packet, packet.length - 6, TIME));
+        // Root name
+        packet = concat(sllHeader(0x0800), ipv4Header(), udpHeader(1234), dnsQuery(0, "", 2));
+        assertNull(DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_LINUX_SLL, packet, packet.length, TIME));
+        // ARP
+        packet = concat(sllHeader(0x0806), new byte[28]);
+        assertNull(DnsPacketDecoder.decode(DnsPacketDecoder.LINK_TYPE_LINUX_SLL, packet, packet.length, TIME));
+        // Unknown link type
+        packet = concat(ipv4Header(), udpHeader(1234), dnsQuery(0, "example.com", 1));
+        assertNull(DnsPacketDecoder.decode(147, packet, packet.length, TIME));
+    }
+
+    static byte[] sllHeader(int protocol) {
+        byte[] header = new byte[16];
+        header[14] = (byte) (protocol >> 8);
+        header[15] = (byte) protocol;
+        return header;
+    }
+
+    static byte[] ipv4Header() {
+        byte[] header = new byte[20];
+        header[0] = 0x45;
+        header[9] = 17;
+        return header;
+    }
+
+    static byte[] ipv6Header() {
+        byte[] header = new byte[40];
+        header[0] = 0x60;
+        header[6] = 17;
+        return header;
+    }
+
+    static byte[] udpHeader(int sourcePort) {
+        byte[] header = new byte[8];
+        header[0] = (byte) (sourcePort >> 8);
+        header[1] = (byte) sourcePort;
+        header[3] = 53;
+        return header;
+    }
+
+    static byte[] dnsQuery(int flags, String hostname, int type) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.write(0x12);
+        outputStream.write(0x34);
+        outputStream.write(flags >> 8);
+        outputStream.write(flags);
+        outputStream.write(0);
+        outputStream.write(1);
+        outputStream.write(new byte[6], 0, 6);
+        if (!hostname.isEmpty()) {
+            for (String label : hostname.split("\\.")) {
+                outputStream.write(label.length());
+                outputStream.write(label.getBytes(), 0, label.length());
+            }
+        }
+        outputStream.write(0);
+        outputStream.write(type >> 8);
+        outputStream.write(type);
+        outputStream.write(0);
+        outputStream.write(1);
+        return outputStream.toByteArray();
+    }
+
+    static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            outputStream.write(array, 0, array.length);
+        }
+        return outputStream.toByteArray();
+    }
+}
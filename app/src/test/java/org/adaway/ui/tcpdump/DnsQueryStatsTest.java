@@ -0,0 +1,126 @@
+package org.adaway.ui.tcpdump;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DnsQueryStatsTest {
+    private static final long NOW = 1_593_561_600_000L;
+    private static final int PORT = 40000;
+
+    @Test
+    public void testAllTimeCounts() {
+        DnsQueryStats stats = new DnsQueryStats();
+        stats.add(new DnsQuery("example.com", DnsQuery.TYPE_A, PORT, NOW - HOURS.toMillis(48)));
+        stats.add(new DnsQuery("example.com", DnsQuery.TYPE_AAAA, PORT, NOW));
+        stats.add(new DnsQuery("example.com", DnsQuery.TYPE_A, PORT, NOW - MINUTES.toMillis(1)));
+        stats.add(new DnsQuery("ads.example.com", DnsQuery.TYPE_A, PORT, NOW));
+        assertEquals(2, stats.size());
+
+        List<DnsQueryStats.HostnameStats> top = stats.getTop(10, 0, NOW);
+        assertEquals(2, top.size());
+        DnsQueryStats.HostnameStats first = top.get(0);
+        assertEquals("example.com", first.getHostname());
+        assertEquals(3, first.getCount());
+        assertEquals(2, first.getIpv4Count());
+        assertEquals(1, first.getIpv6Count());
+        assertEquals(NOW - HOURS.toMillis(48), first.getFirstTime());
+        assertEquals(NOW, first.getLastTime());
+        assertEquals("ads.example.com", top.get(1).getHostname());
+        assertEquals(1, top.get(1).getCount());
+    }
+
+    @Test
+    public void testWindowCounts() {
+        DnsQueryStats stats = new DnsQueryStats();
+        for (int minute = 0; minute < 120; minute++) {
+            stats.add(new DnsQuery("tracker.com", DnsQuery.TYPE_A, PORT, NOW - MINUTES.toMillis(minute)));
+        }
+        stats.add(new DnsQuery("cdn.com", DnsQuery.TYPE_A, PORT, NOW));
+        stats.add(new DnsQuery("cdn.com", DnsQuery.TYPE_AAAA, PORT, NOW));
+        stats.add(new DnsQuery("cdn.com", DnsQuery.TYPE_A, PORT, NOW - MINUTES.toMillis(10)));
+
+        List<DnsQueryStats.HostnameStats> top = stats.getTop(10, MINUTES.toMillis(5), NOW);
+        assertEquals(2, top.size());
+        assertEquals("tracker.com", top.get(0).getHostname());
+        assertEquals(5, top.get(0).getCount());
+        assertEquals("cdn.com", top.get(1).getHostname());
+        assertEquals(2, top.get(1).getCount());
+
+        top = stats.getTop(10, HOURS.toMillis(1), NOW);
+        assertEquals(60, top.get(0).getCount());
+        assertEquals(3, top.get(1).getCount());
+
+        top = stats.getTop(10, HOURS.toMillis(24), NOW);
+        assertEquals(120, top.get(0).getCount());
+    }
+
+    @Test
+    public void testExpiredBuckets() {
+        DnsQueryStats stats = new DnsQueryStats();
+        stats.add(new DnsQuery("old.com", DnsQuery.TYPE_A, PORT, NOW - HOURS.toMillis(24)));
+        stats.add(new DnsQuery("new.com", DnsQuery.TYPE_A, PORT, NOW));
+        // Same bucket slot, one day later
+        stats.add(new DnsQuery("old.com", DnsQuery.TYPE_A, PORT, NOW));
+        stats.add(new DnsQuery("old.com", DnsQuery.TYPE_A, PORT, NOW - HOURS.toMillis(24)));
+
+        List<DnsQueryStats.HostnameStats> top = stats.getTop(10, HOURS.toMillis(24), NOW);
+        assertEquals(2, top.size());
+        assertEquals(1, top.get(0).getCount());
+        assertEquals(1, top.get(1).getCount());
+        assertEquals(3, stats.getTop(1, 0, NOW).get(0).getCount());
+    }
+
+    @Test
+    public void testTopCount() {
+        DnsQueryStats stats = new DnsQueryStats();
+        for (int index = 0; index < 100; index++) {
+            for (int count = 0; count <= index; count++) {
+                stats.add(new DnsQuery("host" + index + ".com", DnsQuery.TYPE_A, PORT, NOW));
+            }
+        }
+        List<DnsQueryStats.HostnameStats> top = stats.getTop(3, MINUTES.toMillis(5), NOW);
+        assertEquals(3, top.size());
+        assertEquals("host99.com", top.get(0).getHostname());
+        assertEquals("host98.com", top.get(1).getHostname());
+        assertEquals("host97.com", top.get(2).getHostname());
+        assertTrue(stats.getTop(3, MINUTES.toMillis(5), NOW + HOURS.toMillis(1)).isEmpty());
+    }
+
+    @Test
+    public void testOtherTypeCounts() {
+        DnsQueryStats stats = new DnsQueryStats();
+        stats.add(new DnsQuery("example.com", DnsQuery.TYPE_A, PORT, NOW));
+        stats.add(new DnsQuery("example.com", 65, PORT, NOW));
+        DnsQueryStats.HostnameStats hostnameStats = stats.getTop(1, MINUTES.toMillis(5), NOW).get(0);
+        assertEquals(2, hostnameStats.getCount());
+        assertEquals(1, hostnameStats.getIpv4Count());
+        assertEquals(0, hostnameStats.getIpv6Count());
+        assertEquals(2, stats.getTop(1, 0, NOW).get(0).getCount());
+    }
+
+    @Test
+    public void testClear() {
+        DnsQueryStats stats = new DnsQueryStats();
+        stats.add(new DnsQuery("example.com", DnsQuery.TYPE_A, PORT, NOW));
+        stats.clear();
+        assertEquals(0, stats.size());
+        assertTrue(stats.getTop(10, HOURS.toMillis(1), NOW).isEmpty());
+    }
+
+    @Test
+    public void testParser() {
+        DnsQuery.Parser parser = new DnsQuery.Parser();
+        assertEquals(null, parser.parse("1593561600.123456 IP (tos 0x0, ttl 64, id 1, offset 0, flags [DF], proto UDP (17), length 61)"));
+        DnsQuery query = parser.parse("    10.0.0.2.40000 > 10.0.0.1.53: 1234+ AAAA? www.example.com. (33)");
+        assertEquals("www.example.com", query.getHostname());
+        assertEquals(DnsQuery.TYPE_AAAA, query.getType());
+        assertEquals(DnsQuery.UNKNOWN_PORT, query.getSourcePort());
+        assertEquals(1_593_561_600_123L, query.getTime());
+    }
+}
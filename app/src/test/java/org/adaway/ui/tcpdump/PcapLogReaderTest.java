@@ -0,0 +1,175 @@
+package org.adaway.ui.tcpdump;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.adaway.ui.tcpdump.DnsPacketDecoderTest.concat;
+import static org.adaway.ui.tcpdump.DnsPacketDecoderTest.dnsQuery;
+import static org.adaway.ui.tcpdump.DnsPacketDecoderTest.ipv4Header;
+import static org.adaway.ui.tcpdump.DnsPacketDecoderTest.sllHeader;
+import static org.adaway.ui.tcpdump.DnsPacketDecoderTest.udpHeader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PcapLogReaderTest {
+    private File directory;
+    private File pcapFile;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("tcpdump").toFile();
+        this.pcapFile = new File(this.directory, "dns_log.pcap");
+    }
+
+    @After
+    public void tearDown() {
+        PcapLogReader.delete(this.pcapFile);
+        this.directory.delete();
+    }
+
+    @Test
+    public void testReadAcrossFiles() throws IOException {
+        PcapLogReader reader = new PcapLogReader(this.pcapFile);
+        List<DnsQuery> queries = new ArrayList<>();
+        assertFalse(reader.readNewQueries(queries));
+        assertTrue(queries.isEmpty());
+
+        append(this.pcapFile, globalHeader());
+        append(this.pcapFile, packet(1_593_561_600L, 123_456, "first.com"));
+        byte[] second = packet(1_593_561_601L, 0, "second.com");
+        // Incomplete packet
+        append(this.pcapFile, Arrays.copyOf(second, 30));
+        assertFalse(reader.readNewQueries(queries));
+        assertEquals(Arrays.asList("first.com"), hostnames(queries));
+        assertEquals(1_593_561_600_123L, queries.get(0).getTime());
+
+        append(this.pcapFile, Arrays.copyOfRange(second, 30, second.length));
+        File nextFile = new File(this.directory, "dns_log.pcap1");
+        append(nextFile, globalHeader());
+        append(nextFile, packet(1_593_561_602L, 0, "third.com"));
+        queries.clear();
+        assertFalse(reader.readNewQueries(queries));
+        assertEquals(Arrays.asList("second.com", "third.com"), hostnames(queries));
+        queries.clear();
+        assertFalse(reader.readNewQueries(queries));
+        assertTrue(queries.isEmpty());
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        append(this.pcapFile, globalHeader());
+        append(this.pcapFile, packet(1_593_561_600L, 0, "first.com"));
+        File nextFile = new File(this.directory, "dns_log.pcap1");
+        append(nextFile, globalHeader());
+        append(nextFile, packet(1_593_561_601L, 0, "second.com"));
+
+        PcapLogReader reader = new PcapLogReader(this.pcapFile);
+        reader.clear();
+        assertFalse(this.pcapFile.exists());
+        assertTrue(nextFile.exists());
+        append(nextFile, packet(1_593_561_602L, 0, "third.com"));
+
+        List<DnsQuery> queries = new ArrayList<>();
+        assertFalse(reader.readNewQueries(queries));
+        assertEquals(Arrays.asList("third.com"), hostnames(queries));
+        // Capture start is kept by new readers
+        queries.clear();
+        assertFalse(new PcapLogReader(this.pcapFile).readNewQueries(queries));
+        assertEquals(Arrays.asList("third.com"), hostnames(queries));
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        int fileSize = 1024 * 1024;
+        int fileCount = (int) (PcapLogReader.MAX_SIZE / fileSize) + 2;
+        for (int index = 0; index < fileCount; index++) {
+            append(new File(this.pcapFile.getPath() + (index == 0 ? "" : index)), new byte[fileSize]);
+        }
+        PcapLogReader.evict(this.pcapFile);
+        assertFalse(this.pcapFile.exists());
+        assertFalse(new File(this.pcapFile.getPath() + 1).exists());
+        assertTrue(new File(this.pcapFile.getPath() + 2).exists());
+        assertTrue(new File(this.pcapFile.getPath() + (fileCount - 1)).exists());
+    }
+
+    @Test
+    public void testReadAfterEviction() throws IOException {
+        append(this.pcapFile, globalHeader());
+        append(this.pcapFile, packet(1_593_561_600L, 0, "first.com"));
+        PcapLogReader reader = new PcapLogReader(this.pcapFile);
+        List<DnsQuery> queries = new ArrayList<>();
+        assertFalse(reader.readNewQueries(queries));
+        assertEquals(Arrays.asList("first.com"), hostnames(queries));
+
+        // Fill the capture until the file being read is evicted
+        int fileSize = 1024 * 1024;
+        int fileCount = (int) (PcapLogReader.MAX_SIZE / fileSize) + 2;
+        for (int index = 1; index < fileCount; index++) {
+            File file = new File(this.pcapFile.getPath() + index);
+            append(file, globalHeader());
+            append(file, new byte[fileSize]);
+        }
+        File lastFile = new File(this.pcapFile.getPath() + fileCount);
+        append(lastFile, globalHeader());
+        append(lastFile, packet(1_593_561_601L, 0, "second.com"));
+
+        queries.clear();
+        assertFalse(reader.readNewQueries(queries));
+        assertFalse(this.pcapFile.exists());
+        assertEquals(Arrays.asList("second.com"), hostnames(queries));
+        queries.clear();
+        assertFalse(reader.readNewQueries(queries));
+        assertTrue(queries.isEmpty());
+    }
+
+    private static byte[] globalHeader() {
+        return ByteBuffer.allocate(24)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0xA1B2C3D4)
+                .putShort((short) 2)
+                .putShort((short) 4)
+                .putInt(0)
+                .putInt(0)
+                .putInt(512)
+                .putInt(DnsPacketDecoder.LINK_TYPE_LINUX_SLL)
+                .array();
+    }
+
+    private static byte[] packet(long seconds, int microseconds, String hostname) {
+        byte[] data = concat(sllHeader(0x0800), ipv4Header(), udpHeader(40000), dnsQuery(0x0100, hostname, 1));
+        byte[] header = ByteBuffer.allocate(16)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt((int) seconds)
+                .putInt(microseconds)
+                .putInt(data.length)
+                .putInt(data.length)
+                .array();
+        return concat(header, data);
+    }
+
+    private static void append(File file, byte[] bytes) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(file, true)) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static List<String> hostnames(List<DnsQuery> queries) {
+        List<String> hostnames = new ArrayList<>();
+        for (DnsQuery query : queries) {
+            hostnames.add(query.getHostname());
+        }
+        return hostnames;
+    }
+}
@@ -0,0 +1,157 @@
+package org.adaway.ui.tcpdump;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TcpdumpLogStorageTest {
+    private static final String HEADER = "1593561600.123456 IP (tos 0x0, ttl 64, id 1, offset 0, flags [DF], proto UDP (17), length 61)\n";
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("tcpdump").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(this.directory);
+    }
+
+    @Test
+    public void testReadAcrossRotation() throws IOException {
+        TcpdumpLogStorage storage = new TcpdumpLogStorage(this.directory, true);
+        TcpdumpLogReader reader = new TcpdumpLogReader(storage);
+        List<DnsQuery> queries = new ArrayList<>();
+
+        append(storage, HEADER + query("first.com") + HEADER + "    10.0.0.2.40000 > 10.0.0.1");
+        assertFalse(reader.readNewQueries(queries));
+        assertEquals(Arrays.asList("first.com"), hostnames(queries));
+
+        // Rotate with an incomplete line
+        expire(storage);
+        assertTrue(storage.rotate());
+        assertEquals(0, storage.getLiveFile().length());
+        assertEquals(1, storage.getLiveSequence());
+        append(storage, ".53: 1234+ A? second.com. (33)\n" + HEADER + query("third.com"));
+
+        queries.clear();
+        assertFalse(reader.readNewQueries(queries));
+        assertEquals(Arrays.asList("second.com", "third.com"), hostnames(queries));
+        queries.clear();
+        assertFalse(reader.readNewQueries(queries));
+        assertTrue(queries.isEmpty());
+
+        // Read all segments from a new reader
+        TcpdumpLogReader newReader = new TcpdumpLogReader(storage);
+        assertFalse(newReader.readNewQueries(queries));
+        assertEquals(Arrays.asList("first.com", "second.com", "third.com"), hostnames(queries));
+    }
+
+    @Test
+    public void testRotationThresholds() throws IOException {
+        TcpdumpLogStorage storage = new TcpdumpLogStorage(this.directory, false);
+        assertFalse(storage.rotate());
+        append(storage, HEADER + query("example.com"));
+        assertFalse(storage.rotate());
+        expire(storage);
+        assertTrue(storage.rotate());
+        assertFalse(storage.rotate());
+        append(storage, filler(TcpdumpLogStorage.SEGMENT_SIZE));
+        assertTrue(storage.rotate());
+        assertEquals(2, storage.getLiveSequence());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        TcpdumpLogStorage storage = new TcpdumpLogStorage(this.directory, false);
+        int segmentCount = (int) (TcpdumpLogStorage.MAX_SIZE / TcpdumpLogStorage.SEGMENT_SIZE) + 2;
+        for (int index = 0; index < segmentCount; index++) {
+            append(storage, filler(TcpdumpLogStorage.SEGMENT_SIZE));
+            assertTrue(storage.rotate());
+        }
+        assertEquals(segmentCount, storage.getLiveSequence());
+        long size = storage.getLiveFile().length();
+        File[] segmentFiles = new File(this.directory, "dns_log").listFiles();
+        for (File segmentFile : segmentFiles) {
+            size += segmentFile.length();
+        }
+        assertTrue(size <= TcpdumpLogStorage.MAX_SIZE);
+        long firstSequence = storage.getSegments(0).iterator().next().getSequence();
+        assertEquals(segmentCount - TcpdumpLogStorage.MAX_SIZE / TcpdumpLogStorage.SEGMENT_SIZE, firstSequence);
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        TcpdumpLogStorage storage = new TcpdumpLogStorage(this.directory, true);
+        TcpdumpLogReader reader = new TcpdumpLogReader(storage);
+        List<DnsQuery> queries = new ArrayList<>();
+        append(storage, HEADER + query("first.com"));
+        expire(storage);
+        assertTrue(storage.rotate());
+        append(storage, HEADER + query("second.com"));
+        assertFalse(reader.readNewQueries(queries));
+        assertEquals(2, queries.size());
+
+        assertTrue(storage.clear());
+        assertEquals(0, storage.getLiveSequence());
+        append(storage, HEADER + query("third.com"));
+        queries.clear();
+        assertTrue(reader.readNewQueries(queries));
+        assertEquals(Arrays.asList("third.com"), hostnames(queries));
+    }
+
+    private static String query(String hostname) {
+        return "    10.0.0.2.40000 > 10.0.0.1.53: 1234+ A? " + hostname + ". (33)\n";
+    }
+
+    private static String filler(long size) {
+        char[] chars = new char[(int) size];
+        Arrays.fill(chars, 'x');
+        chars[chars.length - 1] = '\n';
+        return new String(chars);
+    }
+
+    private static void append(TcpdumpLogStorage storage, String content) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(storage.getLiveFile(), true)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void expire(TcpdumpLogStorage storage) {
+        File segmentDirectory = new File(this.directory, "dns_log");
+        assertTrue(segmentDirectory.isDirectory() || segmentDirectory.mkdirs());
+        assertTrue(segmentDirectory.setLastModified(System.currentTimeMillis() - 2 * TcpdumpLogStorage.SEGMENT_DURATION));
+    }
+
+    private static List<String> hostnames(List<DnsQuery> queries) {
+        List<String> hostnames = new ArrayList<>();
+        for (DnsQuery query : queries) {
+            hostnames.add(query.getHostname());
+        }
+        return hostnames;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,41 @@
+package org.adaway.benchmark;
+
+import org.adaway.hosts.HostsParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link HostsParser#compileList()} with the corpus whitelist wildcards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class CompileListBenchmark {
+    /**
+     * The parser to compile (parsed again before each compilation as compilation alters it).
+     */
+    private HostsParser parser;
+
+    @Setup(Level.Invocation)
+    public void setUp(HostsCorpus corpus) throws IOException {
+        parser = new HostsParser(new ByteArrayInputStream(corpus.content), true, true);
+        parser.addWhitelist(new HashSet<>(corpus.whitelist));
+    }
+
+    @Benchmark
+    public HostsParser compileList() {
+        parser.compileList();
+        return parser;
+    }
+}
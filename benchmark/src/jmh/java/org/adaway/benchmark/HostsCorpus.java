@@ -0,0 +1,103 @@
+package org.adaway.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class is a synthetic hosts file corpus shared by the benchmarks.
+ * <p>
+ * The corpus mixes blocking entries with both blocking IP addresses, duplicated host names,
+ * comments, whitelist and redirection entries and invalid lines, like real hosts sources do.
+ */
+@State(Scope.Benchmark)
+public class HostsCorpus {
+    /**
+     * The number of lines of the corpus.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int lineCount;
+    /**
+     * The hosts file content.
+     */
+    public byte[] content;
+    /**
+     * The host names of the corpus, in corpus order.
+     */
+    public String[] hostnames;
+    /**
+     * The IP addresses of the corpus, in corpus order.
+     */
+    public String[] ips;
+    /**
+     * The whitelist wildcards matching some of the corpus host names.
+     */
+    public List<String> whitelist;
+
+    private static final String[] TLDS = {"com", "net", "org", "io", "info", "co.uk", "de", "fr"};
+    private static final String[] LABELS = {"ads", "track", "metrics", "cdn", "pixel", "stats", "beacon", "img"};
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(lineCount);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(lineCount * 32);
+        List<String> hostnameList = new ArrayList<>(lineCount);
+        List<String> ipList = new ArrayList<>(lineCount);
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < lineCount; index++) {
+            builder.setLength(0);
+            int kind = random.nextInt(100);
+            // Reuse previous host names to create duplicates
+            String hostname = kind < 10 && !hostnameList.isEmpty()
+                    ? hostnameList.get(random.nextInt(hostnameList.size()))
+                    : randomHostname(random);
+            if (kind < 5) {
+                builder.append("# comment line ").append(index);
+            } else if (kind < 6) {
+                builder.append("white ").append(hostname);
+            } else if (kind < 7) {
+                String ip = "10.0." + random.nextInt(256) + "." + random.nextInt(256);
+                builder.append(ip).append(' ').append(hostname);
+                hostnameList.add(hostname);
+                ipList.add(ip);
+            } else if (kind < 8) {
+                builder.append("invalid-ip ").append(hostname);
+            } else {
+                String ip = random.nextBoolean() ? "127.0.0.1" : "0.0.0.0";
+                builder.append(ip).append('\t').append(hostname);
+                if (kind < 15) {
+                    builder.append(" # inline comment");
+                }
+                hostnameList.add(hostname);
+                ipList.add(ip);
+            }
+            builder.append('\n');
+            byte[] line = builder.toString().getBytes(StandardCharsets.UTF_8);
+            output.write(line, 0, line.length);
+        }
+        content = output.toByteArray();
+        hostnames = hostnameList.toArray(new String[0]);
+        ips = ipList.toArray(new String[0]);
+        whitelist = new ArrayList<>();
+        for (int index = 0; index < 20; index++) {
+            whitelist.add("*." + randomDomain(random));
+            whitelist.add(LABELS[random.nextInt(LABELS.length)] + "?." + randomDomain(random));
+        }
+    }
+
+    private static String randomHostname(Random random) {
+        return LABELS[random.nextInt(LABELS.length)] + random.nextInt(100) + "." + randomDomain(random);
+    }
+
+    private static String randomDomain(Random random) {
+        return "domain" + random.nextInt(5000) + "." + TLDS[random.nextInt(TLDS.length)];
+    }
+}
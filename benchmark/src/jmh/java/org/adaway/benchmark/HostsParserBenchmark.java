@@ -0,0 +1,72 @@
+package org.adaway.benchmark;
+
+import org.adaway.hosts.HostnameUtils;
+import org.adaway.hosts.HostsFormat;
+import org.adaway.hosts.HostsParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks {@link HostsParser} construction from hosts content, against the former regex based
+ * parser as baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HostsParserBenchmark {
+    private static final Pattern LEGACY_HOSTS_PARSER_PATTERN =
+            Pattern.compile("^\\s*([^#\\s]+)\\s+([^#\\s]+)\\s*(?:#.*)*$");
+
+    @Benchmark
+    public HostsParser parse(HostsCorpus corpus) throws IOException {
+        return new HostsParser(new ByteArrayInputStream(corpus.content), true, true);
+    }
+
+    @Benchmark
+    public int parseWithRegex(HostsCorpus corpus) throws IOException {
+        Set<String> blacklist = new HashSet<>();
+        Set<String> whitelist = new HashSet<>();
+        Set<String> redirections = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(corpus.content), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = LEGACY_HOSTS_PARSER_PATTERN.matcher(line);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                String ip = matcher.group(1);
+                if (!HostnameUtils.isValidIp(ip) && !HostsFormat.WHITELIST_ENTRY.equals(ip)) {
+                    continue;
+                }
+                String hostname = matcher.group(2);
+                if (!HostnameUtils.isValidWhitelistHostname(hostname)) {
+                    continue;
+                }
+                if (ip.equals(HostsFormat.LOCALHOST_IPv4) || ip.equals(HostsFormat.BOGUS_IPv4)
+                        || ip.equals(HostsFormat.LOCALHOST_IPv6)) {
+                    blacklist.add(hostname);
+                } else if (ip.equals(HostsFormat.WHITELIST_ENTRY)) {
+                    whitelist.add(hostname);
+                } else {
+                    redirections.add(hostname);
+                }
+            }
+        }
+        blacklist.remove(HostsFormat.LOCALHOST_HOSTNAME);
+        redirections.remove(HostsFormat.LOCALHOST_HOSTNAME);
+        return blacklist.size() + whitelist.size() + redirections.size();
+    }
+}
@@ -0,0 +1,40 @@
+package org.adaway.benchmark;
+
+import org.adaway.hosts.HostnameUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link HostnameUtils#isValidHostname(String)} and {@link HostnameUtils#isValidIp(String)}
+ * on the corpus entries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ValidationBenchmark {
+
+    @Benchmark
+    public int isValidHostname(HostsCorpus corpus) {
+        int valid = 0;
+        for (String hostname : corpus.hostnames) {
+            if (HostnameUtils.isValidHostname(hostname)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int isValidIP(HostsCorpus corpus) {
+        int valid = 0;
+        for (String ip : corpus.ips) {
+            if (HostnameUtils.isValidIp(ip)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,62 @@
+package org.adaway.benchmark;
+
+import org.adaway.hosts.HostnameUtils;
+import org.adaway.hosts.WildcardMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks whitelist wildcard matching of the corpus host names, with one
+ * {@link HostnameUtils#wildcardToRegex(String)} pattern per wildcard and with a {@link WildcardMatcher}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class WildcardBenchmark {
+    private List<Pattern> patterns;
+    private WildcardMatcher matcher;
+
+    @Setup
+    public void setUp(HostsCorpus corpus) {
+        patterns = new ArrayList<>(corpus.whitelist.size());
+        for (String wildcard : corpus.whitelist) {
+            patterns.add(Pattern.compile(HostnameUtils.wildcardToRegex(wildcard)));
+        }
+        matcher = new WildcardMatcher(corpus.whitelist);
+    }
+
+    @Benchmark
+    public int matchRegex(HostsCorpus corpus) {
+        int matches = 0;
+        for (String hostname : corpus.hostnames) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(hostname).matches()) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int matchWildcardMatcher(HostsCorpus corpus) {
+        int matches = 0;
+        for (String hostname : corpus.hostnames) {
+            if (matcher.matches(hostname)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,136 @@
+package org.adaway.benchmark;
+
+import org.adaway.hosts.HostsFileWriter;
+import org.adaway.hosts.HostsFormat;
+import org.adaway.hosts.HostsParser;
+import org.adaway.hosts.SortedHostsMerger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the hosts file output as written by {@code HostsInstallModel.writeHosts}: sorted
+ * blocked host names merged, filtered by the compiled whitelist and written for IPv4 and IPv6.
+ * Output is discarded to measure only encoding costs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class WriteHostsBenchmark {
+    private HostsParser parser;
+    private String[] sortedHostnames;
+
+    @Setup
+    public void setUp(HostsCorpus corpus) throws IOException {
+        HostsParser sourceParser = new HostsParser(new ByteArrayInputStream(corpus.content), true, true);
+        sortedHostnames = sourceParser.getBlacklist().toArray(new String[0]);
+        Arrays.sort(sortedHostnames);
+        // Keep whitelist and redirections only, as hosts sources blocked host names are merged from runs
+        parser = new HostsParser(true, true);
+        parser.addWhitelist(new HashSet<>(corpus.whitelist));
+        parser.addWhitelist(sourceParser.getWhitelist());
+        parser.addRedirectList(sourceParser.getRedirectList());
+        parser.compileList();
+    }
+
+    @Benchmark
+    public long writeHostsFileWriter() throws IOException {
+        try (HostsFileWriter writer = new HostsFileWriter(new NullChannel())) {
+            byte[] ipv4Prefix = writer.encodePrefix(HostsFormat.LOCALHOST_IPv4);
+            byte[] ipv6Prefix = writer.encodePrefix(HostsFormat.LOCALHOST_IPv6);
+            try (SortedHostsMerger merger = openMerger()) {
+                String hostname;
+                while ((hostname = merger.next()) != null) {
+                    if (parser.isExcluded(hostname)) {
+                        continue;
+                    }
+                    writer.writeEntry(ipv4Prefix, hostname);
+                    writer.writeEntry(ipv6Prefix, hostname);
+                }
+            }
+            return writer.getByteCount();
+        }
+    }
+
+    @Benchmark
+    public long writeHostsStrings() throws IOException {
+        CountingNullStream counter = new CountingNullStream();
+        try (OutputStream outputStream = new BufferedOutputStream(counter)) {
+            try (SortedHostsMerger merger = openMerger()) {
+                String hostname;
+                while ((hostname = merger.next()) != null) {
+                    if (parser.isExcluded(hostname)) {
+                        continue;
+                    }
+                    String line = HostsFormat.LINE_SEPARATOR + HostsFormat.LOCALHOST_IPv4 + " " + hostname;
+                    outputStream.write(line.getBytes());
+                    line = HostsFormat.LINE_SEPARATOR + HostsFormat.LOCALHOST_IPv6 + " " + hostname;
+                    outputStream.write(line.getBytes());
+                }
+            }
+        }
+        return counter.count;
+    }
+
+    private SortedHostsMerger openMerger() throws IOException {
+        return new SortedHostsMerger(Collections.singletonList(
+                SortedHostsMerger.runOf(Arrays.asList(sortedHostnames).iterator())
+        ));
+    }
+
+    /**
+     * A channel discarding written bytes.
+     */
+    private static class NullChannel implements WritableByteChannel {
+        private boolean open = true;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    /**
+     * An output stream discarding and counting written bytes.
+     */
+    private static class CountingNullStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+}
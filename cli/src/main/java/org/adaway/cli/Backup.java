@@ -0,0 +1,145 @@
+package org.adaway.cli;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the content of an application backup file used to compile a hosts file.
+ * <p>
+ * It reads the format written by the application backup export: the hosts sources and the
+ * blocked, allowed and redirected user lists. Only enabled items are kept.
+ */
+class Backup {
+    /*
+     * Backup format.
+     */
+    private static final String SOURCES_KEY = "sources";
+    private static final String BLOCKED_KEY = "blocked";
+    private static final String ALLOWED_KEY = "allowed";
+    private static final String REDIRECTED_KEY = "redirected";
+    private static final String ENABLED_ATTRIBUTE = "enabled";
+    private static final String HOST_ATTRIBUTE = "host";
+    private static final String REDIRECT_ATTRIBUTE = "redirect";
+    private static final String URL_ATTRIBUTE = "url";
+
+    /**
+     * The enabled hosts sources URLs, in backup order.
+     */
+    private final List<String> sourceUrls;
+    /**
+     * The enabled blocked host names.
+     */
+    private final List<String> blacklist;
+    /**
+     * The enabled allowed host names.
+     */
+    private final List<String> whitelist;
+    /**
+     * The enabled redirected host names and their redirection IP address.
+     */
+    private final Map<String, String> redirections;
+
+    private Backup(List<String> sourceUrls, List<String> blacklist, List<String> whitelist,
+                   Map<String, String> redirections) {
+        this.sourceUrls = sourceUrls;
+        this.blacklist = blacklist;
+        this.whitelist = whitelist;
+        this.redirections = redirections;
+    }
+
+    /**
+     * Create an empty backup.
+     *
+     * @return An empty backup.
+     */
+    static Backup empty() {
+        return new Backup(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyMap());
+    }
+
+    /**
+     * Read a backup file.
+     *
+     * @param path The backup file path.
+     * @return The read backup.
+     * @throws IOException If the backup file could not be read or is not valid.
+     */
+    static Backup read(Path path) throws IOException {
+        String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        try {
+            return parse(new JSONObject(content));
+        } catch (JSONException exception) {
+            throw new IOException("Invalid backup file " + path + ".", exception);
+        }
+    }
+
+    /**
+     * Parse a backup.
+     *
+     * @param backupObject The backup JSON object.
+     * @return The parsed backup.
+     * @throws JSONException If the backup is not valid.
+     */
+    static Backup parse(JSONObject backupObject) throws JSONException {
+        List<String> sourceUrls = new ArrayList<>();
+        JSONArray sources = backupObject.getJSONArray(SOURCES_KEY);
+        for (int index = 0; index < sources.length(); index++) {
+            JSONObject sourceObject = sources.getJSONObject(index);
+            if (sourceObject.getBoolean(ENABLED_ATTRIBUTE)) {
+                sourceUrls.add(sourceObject.getString(URL_ATTRIBUTE));
+            }
+        }
+        Map<String, String> redirections = new LinkedHashMap<>();
+        JSONArray redirected = backupObject.getJSONArray(REDIRECTED_KEY);
+        for (int index = 0; index < redirected.length(); index++) {
+            JSONObject hostObject = redirected.getJSONObject(index);
+            if (hostObject.getBoolean(ENABLED_ATTRIBUTE) && hostObject.has(REDIRECT_ATTRIBUTE)) {
+                redirections.put(hostObject.getString(HOST_ATTRIBUTE), hostObject.getString(REDIRECT_ATTRIBUTE));
+            }
+        }
+        return new Backup(
+                sourceUrls,
+                parseList(backupObject.getJSONArray(BLOCKED_KEY)),
+                parseList(backupObject.getJSONArray(ALLOWED_KEY)),
+                redirections
+        );
+    }
+
+    private static List<String> parseList(JSONArray hosts) throws JSONException {
+        List<String> list = new ArrayList<>();
+        for (int index = 0; index < hosts.length(); index++) {
+            JSONObject hostObject = hosts.getJSONObject(index);
+            if (hostObject.getBoolean(ENABLED_ATTRIBUTE)) {
+                list.add(hostObject.getString(HOST_ATTRIBUTE));
+            }
+        }
+        return list;
+    }
+
+    List<String> getSourceUrls() {
+        return this.sourceUrls;
+    }
+
+    List<String> getBlacklist() {
+        return this.blacklist;
+    }
+
+    List<String> getWhitelist() {
+        return this.whitelist;
+    }
+
+    Map<String, String> getRedirections() {
+        return this.redirections;
+    }
+}
@@ -0,0 +1,376 @@
+package org.adaway.cli;
+
+import org.adaway.hosts.HostsCompiler;
+import org.adaway.hosts.HostsCompilerOptions;
+import org.adaway.hosts.HostsFileReader;
+import org.adaway.hosts.HostsFileWriter;
+import org.adaway.hosts.HostsFormat;
+import org.adaway.hosts.HostsParser;
+import org.adaway.hosts.HostsRun;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class is a command line tool to compile a hosts file out of the application.
+ * <p>
+ * It compiles local hosts sources files and the user lists of an application backup file into the
+ * hosts file the application would install with the same sources and settings. Hosts sources are
+ * mapped in memory and parsed concurrently, each split into shards parsed in parallel, and a
+ * throughput report is printed to the standard error output.
+ */
+public class HostsCompilerCli {
+    private static final String USAGE = "Usage: adaway-hosts [options] [<url>=]<file>...\n"
+            + "Compile hosts sources files into a hosts file.\n"
+            + "\n"
+            + "Sources are given as local files. Use <url>=<file> to give the local copy of a\n"
+            + "hosts source URL, as listed in the hosts file header.\n"
+            + "\n"
+            + "Options:\n"
+            + "  --backup <file>            Use the user lists and enabled hosts sources of a backup file\n"
+            + "  --output <file>            Write the hosts file to a file (default: standard output)\n"
+            + "  --threads <count>          Number of threads to parse hosts sources (default: processor count)\n"
+            + "  --no-whitelist-rules       Ignore whitelist entries of hosts sources\n"
+            + "  --redirection-rules        Use redirection entries of hosts sources\n"
+            + "  --redirection-ipv4 <ip>    IPv4 address to redirect blocked hosts to (default: "
+            + HostsFormat.LOCALHOST_IPv4 + ")\n"
+            + "  --redirection-ipv6 <ip>    IPv6 address to redirect blocked hosts to (default: "
+            + HostsFormat.LOCALHOST_IPv6 + ")\n"
+            + "  --ipv6                     Also redirect blocked hosts to the IPv6 address\n"
+            + "  --help                     Print this help\n";
+    /**
+     * The exit status of a successful compilation.
+     */
+    private static final int STATUS_SUCCESS = 0;
+    /**
+     * The exit status of a failed compilation.
+     */
+    private static final int STATUS_FAILURE = 1;
+    /**
+     * The exit status of an invalid usage.
+     */
+    private static final int STATUS_USAGE = 2;
+
+    /**
+     * The local hosts sources files, by hosts source URL.
+     */
+    private final Map<String, Path> sourceFiles = new LinkedHashMap<>();
+    /**
+     * The backup file ({@code null} if no backup).
+     */
+    private Path backupFile;
+    /**
+     * The hosts file to write ({@code null} to write to the standard output).
+     */
+    private Path outputFile;
+    /**
+     * The number of threads to parse hosts sources.
+     */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private boolean parseWhitelist = true;
+    private boolean parseRedirections = false;
+    private String redirectionIpv4 = HostsFormat.LOCALHOST_IPv4;
+    private String redirectionIpv6 = HostsFormat.LOCALHOST_IPv6;
+    private boolean enableIpv6 = false;
+    /**
+     * The report output.
+     */
+    private final PrintStream report = System.err;
+
+    public static void main(String[] args) {
+        HostsCompilerCli cli = new HostsCompilerCli();
+        try {
+            if (!cli.parseArguments(args)) {
+                System.out.print(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.print(USAGE);
+            System.exit(STATUS_USAGE);
+        }
+        try {
+            cli.compile();
+        } catch (IOException exception) {
+            System.err.println("Failed to compile hosts file: " + exception.getMessage());
+            System.exit(STATUS_FAILURE);
+        }
+        System.exit(STATUS_SUCCESS);
+    }
+
+    /**
+     * Parse the command line arguments.
+     *
+     * @param args The command line arguments.
+     * @return {@code true} to compile the hosts file, {@code false} if help was requested.
+     * @throws IllegalArgumentException If the arguments are not valid.
+     */
+    boolean parseArguments(String[] args) {
+        for (int index = 0; index < args.length; index++) {
+            String arg = args[index];
+            switch (arg) {
+                case "--help":
+                    return false;
+                case "--backup":
+                    this.backupFile = Paths.get(getValue(args, ++index, arg));
+                    break;
+                case "--output":
+                    this.outputFile = Paths.get(getValue(args, ++index, arg));
+                    break;
+                case "--threads":
+                    try {
+                        this.threadCount = Integer.parseInt(getValue(args, ++index, arg));
+                    } catch (NumberFormatException exception) {
+                        throw new IllegalArgumentException("Invalid thread count: " + args[index]);
+                    }
+                    if (this.threadCount < 1) {
+                        throw new IllegalArgumentException("Invalid thread count: " + this.threadCount);
+                    }
+                    break;
+                case "--no-whitelist-rules":
+                    this.parseWhitelist = false;
+                    break;
+                case "--redirection-rules":
+                    this.parseRedirections = true;
+                    break;
+                case "--redirection-ipv4":
+                    this.redirectionIpv4 = getValue(args, ++index, arg);
+                    break;
+                case "--redirection-ipv6":
+                    this.redirectionIpv6 = getValue(args, ++index, arg);
+                    break;
+                case "--ipv6":
+                    this.enableIpv6 = true;
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    addSourceFile(arg);
+            }
+        }
+        return true;
+    }
+
+    private static String getValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for option " + option);
+        }
+        return args[index];
+    }
+
+    private void addSourceFile(String arg) {
+        int separatorIndex = arg.indexOf('=');
+        if (separatorIndex == -1) {
+            Path path = Paths.get(arg);
+            this.sourceFiles.put(path.toUri().toString(), path);
+        } else {
+            this.sourceFiles.put(arg.substring(0, separatorIndex), Paths.get(arg.substring(separatorIndex + 1)));
+        }
+    }
+
+    /**
+     * Compile the hosts file.
+     *
+     * @throws IOException If the hosts file could not be compiled.
+     */
+    void compile() throws IOException {
+        long start = System.nanoTime();
+        Backup backup = this.backupFile == null ? Backup.empty() : Backup.read(this.backupFile);
+        Map<String, Path> sources = resolveSources(backup);
+        HostsCompilerOptions options = new HostsCompilerOptions(this.parseWhitelist,
+                this.parseRedirections, this.redirectionIpv4, this.redirectionIpv6, this.enableIpv6);
+        Path runDirectory = Files.createTempDirectory("adaway-runs");
+        try (HostsCompiler compiler = new HostsCompiler(options, runDirectory.toFile())) {
+            parseSources(compiler, sources);
+            compiler.addUserLists(backup.getBlacklist(), backup.getWhitelist(), backup.getRedirections());
+            compiler.compile();
+            writeHosts(compiler, new ArrayList<>(sources.keySet()));
+        } finally {
+            deleteRunDirectory(runDirectory);
+        }
+        this.report.println("Compiled hosts file in " + toMillis(System.nanoTime() - start) + " ms.");
+    }
+
+    /**
+     * Delete the runs directory, with the runs of the hosts sources not added to the compiler.
+     *
+     * @param runDirectory The runs directory.
+     * @throws IOException If the runs directory could not be deleted.
+     */
+    private static void deleteRunDirectory(Path runDirectory) throws IOException {
+        try (DirectoryStream<Path> runFiles = Files.newDirectoryStream(runDirectory)) {
+            for (Path runFile : runFiles) {
+                Files.deleteIfExists(runFile);
+            }
+        }
+        Files.deleteIfExists(runDirectory);
+    }
+
+    /**
+     * Resolve the local file of each hosts source to compile.
+     * <p>
+     * The enabled hosts sources of the backup come first, followed by the other given files.
+     *
+     * @param backup The backup.
+     * @return The local files to compile, by hosts source URL.
+     * @throws IOException If a backup hosts source has no local file.
+     */
+    private Map<String, Path> resolveSources(Backup backup) throws IOException {
+        Map<String, Path> sources = new LinkedHashMap<>();
+        for (String url : backup.getSourceUrls()) {
+            Path path = this.sourceFiles.get(url);
+            if (path == null) {
+                if (!url.startsWith("file:")) {
+                    throw new IOException("No local file given for hosts source " + url + ".");
+                }
+                path = Paths.get(URI.create(url));
+            }
+            sources.put(url, path);
+        }
+        for (Map.Entry<String, Path> entry : this.sourceFiles.entrySet()) {
+            if (!sources.containsKey(entry.getKey())) {
+                sources.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Parse the hosts sources concurrently and add them to the compiler in hosts sources order.
+     *
+     * @param compiler The compiler to add the hosts sources to.
+     * @param sources  The local files to parse, by hosts source URL.
+     * @throws IOException If a hosts source could not be parsed.
+     */
+    private void parseSources(HostsCompiler compiler, Map<String, Path> sources) throws IOException {
+        long start = System.nanoTime();
+        int threads = Math.max(1, Math.min(this.threadCount, sources.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // Split each hosts source to parse it on all threads
+        ForkJoinPool shardPool = new ForkJoinPool(this.threadCount);
+        List<Future<ParsedSource>> futures = new ArrayList<>(sources.size());
+        long lineCount = 0;
+        long byteCount = 0;
+        try {
+            for (Map.Entry<String, Path> source : sources.entrySet()) {
+                futures.add(executor.submit(() -> parseSource(compiler, source.getKey(), source.getValue(), shardPool)));
+            }
+            for (Future<ParsedSource> future : futures) {
+                ParsedSource source = getParsedSource(future);
+                compiler.addSource(source.parser, source.run);
+                lineCount += source.parser.getLineCount();
+                byteCount += source.byteCount;
+                this.report.println("Parsed " + source.url + ": "
+                        + source.parser.getLineCount() + " lines, "
+                        + source.parser.getRejectedLineCount() + " rejected, "
+                        + source.run.size() + " unique blocked hosts, "
+                        + (source.parser.getBlockedEntryCount() - source.run.size()) + " duplicates, "
+                        + source.parser.getSharedHostnameCount() + " shared with other sources, "
+                        + formatThroughput(source.byteCount, source.duration));
+            }
+        } finally {
+            executor.shutdownNow();
+            shardPool.shutdownNow();
+        }
+        long duration = System.nanoTime() - start;
+        this.report.println("Parsed " + sources.size() + " sources with " + threads + " threads: "
+                + lineCount + " lines (" + lineCount * 1_000_000_000L / Math.max(1, duration) + " lines/s), "
+                + formatThroughput(byteCount, duration));
+    }
+
+    private static ParsedSource parseSource(HostsCompiler compiler, String url, Path path,
+                                            ForkJoinPool shardPool) throws IOException {
+        long start = System.nanoTime();
+        HostsParser parser = compiler.createSourceParser();
+        HostsFileReader reader = HostsFileReader.open(path.toFile());
+        parser.parse(reader.getContent(), shardPool);
+        HostsRun run = compiler.createRun(parser);
+        return new ParsedSource(url, parser, run, reader.size(), System.nanoTime() - start);
+    }
+
+    private static ParsedSource getParsedSource(Future<ParsedSource> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to parse hosts source.", cause);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Hosts sources parsing was interrupted.", exception);
+        }
+    }
+
+    /**
+     * Write the compiled hosts file.
+     *
+     * @param compiler   The compiler holding the hosts sources and user lists.
+     * @param sourceUrls The URLs of the hosts sources to list in header.
+     * @throws IOException If the hosts file could not be written.
+     */
+    private void writeHosts(HostsCompiler compiler, List<String> sourceUrls) throws IOException {
+        long start = System.nanoTime();
+        WritableByteChannel channel = this.outputFile == null ?
+                Channels.newChannel(System.out) :
+                new FileOutputStream(this.outputFile.toFile()).getChannel();
+        try (HostsFileWriter writer = new HostsFileWriter(channel)) {
+            compiler.writeHeaderDate(writer, new Date());
+            compiler.writeHosts(writer, sourceUrls);
+            writer.flush();
+            this.report.println("Wrote " + writer.getEntryCount() + " entries"
+                    + (this.outputFile == null ? "" : " to " + this.outputFile) + ": "
+                    + formatThroughput(writer.getByteCount(), System.nanoTime() - start));
+        }
+    }
+
+    private static String formatThroughput(long byteCount, long duration) {
+        double seconds = Math.max(1, duration) / 1_000_000_000D;
+        return String.format(Locale.US, "%.1f MB in %d ms (%.1f MB/s)",
+                byteCount / 1_000_000D, toMillis(duration), byteCount / 1_000_000D / seconds);
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000L;
+    }
+
+    /**
+     * This class is a parsed hosts source, waiting to be added to the compiler.
+     */
+    private static class ParsedSource {
+        private final String url;
+        private final HostsParser parser;
+        private final HostsRun run;
+        private final long byteCount;
+        private final long duration;
+
+        private ParsedSource(String url, HostsParser parser, HostsRun run, long byteCount, long duration) {
+            this.url = url;
+            this.parser = parser;
+            this.run = run;
+            this.byteCount = byteCount;
+            this.duration = duration;
+        }
+    }
+}
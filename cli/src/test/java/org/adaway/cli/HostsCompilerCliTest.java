@@ -0,0 +1,112 @@
+package org.adaway.cli;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HostsCompilerCliTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCompile() throws IOException {
+        Path source1 = write("source1", "0.0.0.0 ads.example.com\nwhite good.example.com\n");
+        Path source2 = write("source2", "127.0.0.1 good.example.com\n127.0.0.1 tracker.example.com\n");
+        Path output = this.folder.getRoot().toPath().resolve("hosts");
+
+        HostsCompilerCli cli = new HostsCompilerCli();
+        assertTrue(cli.parseArguments(new String[]{
+                "--threads", "2",
+                "--redirection-ipv4", "0.0.0.0",
+                "--output", output.toString(),
+                "https://example.com/hosts=" + source1,
+                source2.toString()
+        }));
+        cli.compile();
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertTrue(lines.contains("# https://example.com/hosts"));
+        assertTrue(lines.contains("# " + source2.toUri()));
+        assertTrue(lines.contains("0.0.0.0 ads.example.com"));
+        assertTrue(lines.contains("0.0.0.0 tracker.example.com"));
+        assertFalse(lines.contains("0.0.0.0 good.example.com"));
+    }
+
+    @Test
+    public void testCompileBackup() throws IOException {
+        Path backup = write("backup.json", "{"
+                + "\"sources\": ["
+                + "{\"url\": \"https://example.com/hosts\", \"enabled\": true},"
+                + "{\"url\": \"https://disabled.example.com/hosts\", \"enabled\": false}"
+                + "],"
+                + "\"blocked\": ["
+                + "{\"host\": \"user.example.com\", \"enabled\": true},"
+                + "{\"host\": \"disabled.example.com\", \"enabled\": false}"
+                + "],"
+                + "\"allowed\": ["
+                + "{\"host\": \"ads.example.com\", \"enabled\": true},"
+                + "{\"host\": \"tracker.example.com\", \"enabled\": false}"
+                + "],"
+                + "\"redirected\": ["
+                + "{\"host\": \"redirected.example.com\", \"redirect\": \"10.0.0.1\", \"enabled\": true},"
+                + "{\"host\": \"disabled-redirected.example.com\", \"redirect\": \"10.0.0.2\", \"enabled\": false},"
+                + "{\"host\": \"no-redirect.example.com\", \"enabled\": true}"
+                + "]"
+                + "}");
+        Path source1 = write("source1", "0.0.0.0 ads.example.com\n0.0.0.0 tracker.example.com\n");
+        Path source2 = write("source2", "0.0.0.0 other.example.com\n");
+        Path output = this.folder.getRoot().toPath().resolve("hosts");
+
+        HostsCompilerCli cli = new HostsCompilerCli();
+        // Loose file given before the backup hosts source file
+        assertTrue(cli.parseArguments(new String[]{
+                "--backup", backup.toString(),
+                "--output", output.toString(),
+                source2.toString(),
+                "https://example.com/hosts=" + source1
+        }));
+        cli.compile();
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        // Backup hosts sources are listed first, disabled ones are skipped
+        int backupSourceIndex = lines.indexOf("# https://example.com/hosts");
+        int looseSourceIndex = lines.indexOf("# " + source2.toUri());
+        assertTrue(backupSourceIndex >= 0);
+        assertTrue(backupSourceIndex < looseSourceIndex);
+        assertFalse(lines.contains("# https://disabled.example.com/hosts"));
+        // Disabled user list items are skipped
+        assertTrue(lines.contains("127.0.0.1 user.example.com"));
+        assertFalse(lines.contains("127.0.0.1 disabled.example.com"));
+        assertFalse(lines.contains("127.0.0.1 ads.example.com"));
+        assertTrue(lines.contains("127.0.0.1 tracker.example.com"));
+        assertTrue(lines.contains("127.0.0.1 other.example.com"));
+        // Redirected items without redirection are skipped
+        assertTrue(lines.contains("10.0.0.1 redirected.example.com"));
+        assertFalse(lines.contains("10.0.0.2 disabled-redirected.example.com"));
+        for (String line : lines) {
+            assertFalse(line.endsWith(" no-redirect.example.com"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreadCount() {
+        new HostsCompilerCli().parseArguments(new String[]{"--threads", "0"});
+    }
+
+    @Test
+    public void testHelp() {
+        assertFalse(new HostsCompilerCli().parseArguments(new String[]{"--help"}));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(this.folder.getRoot().toPath().resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,46 @@
+package org.adaway.hosts;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This class is an input stream reading the remaining bytes of a buffer.
+ */
+class ByteBufferInputStream extends InputStream {
+    /**
+     * The buffer to read bytes from.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer The buffer to read bytes from. Its position is moved while reading.
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, this.buffer.remaining());
+        this.buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return this.buffer.remaining();
+    }
+}
@@ -0,0 +1,730 @@
+package org.adaway.hosts;
+
+import java.nio.charset.Charset;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * This class is a compact set of host names stored as a trie of reversed labels.
+ * <p>
+ * Each host name is split into labels which are stored from the top level one: {@code ads.example.com}
+ * is stored as {@code com -> example -> ads}. Nodes and labels are stored in primitive arrays and
+ * shared between host names, so common suffixes are stored once.<br>
+ * It supports exact lookup, subdomain queries and iteration in reversed domain order (each domain
+ * is followed by its subdomains, sibling labels are sorted by bytes).<br>
+ * Host names are compared as is (case sensitive). Adding host names while iterating is not
+ * supported. This class is not thread-safe.
+ */
+public class DomainTrie extends AbstractSet<String> {
+    /**
+     * The host name charset.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     * The root node identifier.
+     */
+    static final int ROOT = 0;
+    /**
+     * The node value of non terminal nodes (not an host name, only a suffix).
+     */
+    private static final int NOT_TERMINAL = -2;
+    /**
+     * The node value of terminal nodes without value.
+     */
+    static final int NO_VALUE = -1;
+    /**
+     * The initial capacity of internal arrays.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /*
+     * Label pool: label bytes are appended to labelBytes, label i is in
+     * [labelOffsets[i], labelOffsets[i+1]), labelSlots is an open addressing table of label ids + 1.
+     */
+    private byte[] labelBytes;
+    private int labelBytesSize;
+    private int[] labelOffsets;
+    private int labelCount;
+    private int[] labelSlots;
+    /*
+     * Nodes: the label, the parent and the value of each node, childSlots is an open addressing
+     * table of node ids, indexed by parent and label.
+     */
+    private int[] nodeLabels;
+    private int[] nodeParents;
+    private int[] nodeValues;
+    private int nodeCount;
+    private int[] childSlots;
+    /*
+     * Value pool (for map usage).
+     */
+    private final List<String> values;
+    private final TObjectIntHashMap<String> valueIds;
+    /**
+     * The number of host names.
+     */
+    private int size;
+    /*
+     * The sorted children cache: children of node n are in children[childOffsets[n], childOffsets[n+1]).
+     * It is valid while no node is added.
+     */
+    private int[] childOffsets;
+    private int[] children;
+    /**
+     * The buffer to encode host names.
+     */
+    private byte[] encodeBuffer;
+    /**
+     * The buffer to decode host names.
+     */
+    private byte[] decodeBuffer;
+
+    /**
+     * Constructor.
+     */
+    public DomainTrie() {
+        this.values = new ArrayList<>();
+        this.valueIds = new TObjectIntHashMap<>();
+        this.encodeBuffer = new byte[256];
+        this.decodeBuffer = new byte[256];
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        this.labelBytes = new byte[INITIAL_CAPACITY * 8];
+        this.labelBytesSize = 0;
+        this.labelOffsets = new int[INITIAL_CAPACITY + 1];
+        this.labelCount = 0;
+        this.labelSlots = new int[INITIAL_CAPACITY * 2];
+        this.nodeLabels = new int[INITIAL_CAPACITY];
+        this.nodeParents = new int[INITIAL_CAPACITY];
+        this.nodeValues = new int[INITIAL_CAPACITY];
+        this.childSlots = new int[INITIAL_CAPACITY * 2];
+        this.values.clear();
+        this.valueIds.clear();
+        this.size = 0;
+        this.childOffsets = null;
+        this.children = null;
+        // Create root node
+        this.nodeLabels[ROOT] = -1;
+        this.nodeParents[ROOT] = -1;
+        this.nodeValues[ROOT] = NOT_TERMINAL;
+        this.nodeCount = 1;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean add(String hostname) {
+        int length = encode(hostname);
+        return add(this.encodeBuffer, 0, length);
+    }
+
+    /**
+     * Add an host name from its UTF-8 bytes.
+     *
+     * @param bytes  The bytes holding the host name.
+     * @param offset The host name offset.
+     * @param length The host name length.
+     * @return {@code true} if the host name was added, {@code false} if it was already present.
+     */
+    public boolean add(byte[] bytes, int offset, int length) {
+        int node = findNode(bytes, offset, length, true);
+        if (this.nodeValues[node] != NOT_TERMINAL) {
+            return false;
+        }
+        this.nodeValues[node] = NO_VALUE;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Add all the host names of another domain trie.
+     * <p>
+     * Tries are merged node by node: host names are neither decoded nor looked up label by label,
+     * except to add the newly added host names to a pool.
+     *
+     * @param other The domain trie to add host names from.
+     * @param pool  The pool to add the newly added host names to ({@code null} to not pool them).
+     * @return The number of newly added host names which were already pooled.
+     */
+    int addAll(DomainTrie other, HostnamePool pool) {
+        int[] nodeMap = new int[other.nodeCount];
+        int[] labelMap = new int[other.labelCount];
+        Arrays.fill(labelMap, -1);
+        nodeMap[ROOT] = ROOT;
+        int pooledCount = 0;
+        // Parent nodes are always created before their children
+        for (int otherNode = 1; otherNode < other.nodeCount; otherNode++) {
+            int otherLabel = other.nodeLabels[otherNode];
+            int label = labelMap[otherLabel];
+            if (label == -1) {
+                int labelOffset = other.labelOffsets[otherLabel];
+                int labelLength = other.labelOffsets[otherLabel + 1] - labelOffset;
+                label = findLabel(other.labelBytes, labelOffset, labelLength, true);
+                labelMap[otherLabel] = label;
+            }
+            int node = findChild(nodeMap[other.nodeParents[otherNode]], label, true);
+            nodeMap[otherNode] = node;
+            if (other.nodeValues[otherNode] == NOT_TERMINAL || this.nodeValues[node] != NOT_TERMINAL) {
+                continue;
+            }
+            this.nodeValues[node] = NO_VALUE;
+            this.size++;
+            if (pool != null) {
+                int length = decodeHostname(node);
+                if (!pool.add(this.decodeBuffer, 0, length)) {
+                    pooledCount++;
+                }
+            }
+        }
+        return pooledCount;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return getNode(o) != -1;
+    }
+
+    /**
+     * Check whether an host name is present from its UTF-8 bytes.
+     *
+     * @param bytes  The bytes holding the host name.
+     * @param offset The host name offset.
+     * @param length The host name length.
+     * @return {@code true} if the host name is present, {@code false} otherwise.
+     */
+    public boolean contains(byte[] bytes, int offset, int length) {
+        int node = findNode(bytes, offset, length, false);
+        return node != -1 && this.nodeValues[node] != NOT_TERMINAL;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int node = getNode(o);
+        if (node == -1) {
+            return false;
+        }
+        removeNode(node);
+        return true;
+    }
+
+    /**
+     * Remove all the subdomains of a domain. The domain itself is kept.<br>
+     * For example, removing subdomains of {@code example.com} removes {@code ads.example.com} and
+     * {@code a.b.example.com} but not {@code example.com}.
+     *
+     * @param domain The domain to remove subdomains.
+     * @return The number of removed host names.
+     */
+    public int removeSubdomains(String domain) {
+        int length = encode(domain);
+        int node = findNode(this.encodeBuffer, 0, length, false);
+        if (node == -1) {
+            return 0;
+        }
+        int removed = 0;
+        NodeIterator iterator = new NodeIterator(node);
+        while (iterator.hasNextNode()) {
+            removeNode(iterator.nextNode());
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * Get all the subdomains of a domain, in reversed domain order. The domain itself is excluded.
+     *
+     * @param domain The domain to get subdomains.
+     * @return The subdomains of the domain.
+     */
+    public Iterable<String> subdomains(String domain) {
+        int length = encode(domain);
+        int node = findNode(this.encodeBuffer, 0, length, false);
+        if (node == -1) {
+            return Collections.emptyList();
+        }
+        return () -> new HostnameIterator(node);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new HostnameIterator(ROOT);
+    }
+
+    /*
+     * Value support (for DomainTrieMap).
+     */
+
+    /**
+     * Get the terminal node of an host name.
+     *
+     * @param o The host name to get node.
+     * @return The terminal node of the host name, {@code -1} if the host name is not present.
+     */
+    int getNode(Object o) {
+        if (!(o instanceof String)) {
+            return -1;
+        }
+        int length = encode((String) o);
+        int node = findNode(this.encodeBuffer, 0, length, false);
+        return node == -1 || this.nodeValues[node] == NOT_TERMINAL ? -1 : node;
+    }
+
+    /**
+     * Add an host name with its value.
+     *
+     * @param hostname The host name to add.
+     * @param value    The value of the host name.
+     * @return The terminal node of the host name.
+     */
+    int put(String hostname, String value) {
+        int length = encode(hostname);
+        int node = findNode(this.encodeBuffer, 0, length, true);
+        if (this.nodeValues[node] == NOT_TERMINAL) {
+            this.size++;
+        }
+        setValue(node, value);
+        return node;
+    }
+
+    /**
+     * Get the value of a terminal node.
+     *
+     * @param node The terminal node.
+     * @return The value of the node, {@code null} if the node has no value.
+     */
+    String getValue(int node) {
+        int value = this.nodeValues[node];
+        return value < 0 ? null : this.values.get(value);
+    }
+
+    /**
+     * Set the value of a terminal node.
+     *
+     * @param node  The terminal node.
+     * @param value The value to set.
+     */
+    void setValue(int node, String value) {
+        if (value == null) {
+            this.nodeValues[node] = NO_VALUE;
+            return;
+        }
+        int valueId;
+        if (this.valueIds.containsKey(value)) {
+            valueId = this.valueIds.get(value);
+        } else {
+            valueId = this.values.size();
+            this.values.add(value);
+            this.valueIds.put(value, valueId);
+        }
+        this.nodeValues[node] = valueId;
+    }
+
+    /**
+     * Get the host name of a node.
+     *
+     * @param node The node to get host name.
+     * @return The host name of the node.
+     */
+    String getHostname(int node) {
+        int length = decodeHostname(node);
+        return new String(this.decodeBuffer, 0, length, CHARSET);
+    }
+
+    /**
+     * Decode the host name of a node into the decode buffer.
+     *
+     * @param node The node to decode host name.
+     * @return The decoded host name length.
+     */
+    int decodeHostname(int node) {
+        // Compute host name length
+        int length = 0;
+        for (int current = node; current != ROOT; current = this.nodeParents[current]) {
+            int label = this.nodeLabels[current];
+            length += this.labelOffsets[label + 1] - this.labelOffsets[label] + 1;
+        }
+        length--;
+        // Write labels from the leaf one
+        if (this.decodeBuffer.length < length) {
+            this.decodeBuffer = new byte[Math.max(length, this.decodeBuffer.length * 2)];
+        }
+        byte[] bytes = this.decodeBuffer;
+        int position = 0;
+        for (int current = node; current != ROOT; current = this.nodeParents[current]) {
+            int label = this.nodeLabels[current];
+            int labelOffset = this.labelOffsets[label];
+            int labelLength = this.labelOffsets[label + 1] - labelOffset;
+            System.arraycopy(this.labelBytes, labelOffset, bytes, position, labelLength);
+            position += labelLength;
+            if (position < length) {
+                bytes[position++] = '.';
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Remove a terminal node.
+     *
+     * @param node The terminal node to remove.
+     */
+    void removeNode(int node) {
+        this.nodeValues[node] = NOT_TERMINAL;
+        this.size--;
+    }
+
+    /**
+     * Encode an host name into the encode buffer.
+     *
+     * @param hostname The host name to encode.
+     * @return The encoded host name length.
+     */
+    private int encode(String hostname) {
+        int length = hostname.length();
+        if (this.encodeBuffer.length < length) {
+            this.encodeBuffer = new byte[Math.max(length, this.encodeBuffer.length * 2)];
+        }
+        for (int index = 0; index < length; index++) {
+            char c = hostname.charAt(index);
+            if (c >= 0x80) {
+                // Fallback to charset encoding
+                byte[] bytes = hostname.getBytes(CHARSET);
+                if (this.encodeBuffer.length < bytes.length) {
+                    this.encodeBuffer = new byte[bytes.length];
+                }
+                System.arraycopy(bytes, 0, this.encodeBuffer, 0, bytes.length);
+                return bytes.length;
+            }
+            this.encodeBuffer[index] = (byte) c;
+        }
+        return length;
+    }
+
+    /**
+     * Find the node of an host name.
+     *
+     * @param bytes  The bytes holding the host name.
+     * @param offset The host name offset.
+     * @param length The host name length.
+     * @param create {@code true} to create missing labels and nodes, {@code false} otherwise.
+     * @return The node of the host name, {@code -1} if not found and not created.
+     */
+    private int findNode(byte[] bytes, int offset, int length, boolean create) {
+        int node = ROOT;
+        int labelEnd = offset + length;
+        // Walk labels from the last one
+        for (int index = labelEnd - 1; index >= offset - 1; index--) {
+            if (index >= offset && bytes[index] != '.') {
+                continue;
+            }
+            int labelStart = index + 1;
+            int label = findLabel(bytes, labelStart, labelEnd - labelStart, create);
+            if (label == -1) {
+                return -1;
+            }
+            node = findChild(node, label, create);
+            if (node == -1) {
+                return -1;
+            }
+            labelEnd = index;
+        }
+        return node;
+    }
+
+    private int findLabel(byte[] bytes, int offset, int length, boolean create) {
+        int hash = 0;
+        for (int index = offset; index < offset + length; index++) {
+            hash = 31 * hash + bytes[index];
+        }
+        int mask = this.labelSlots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int label = this.labelSlots[slot] - 1;
+            if (label == -1) {
+                if (!create) {
+                    return -1;
+                }
+                label = appendLabel(bytes, offset, length);
+                this.labelSlots[slot] = label + 1;
+                if (this.labelCount * 2 > this.labelSlots.length) {
+                    rehashLabels();
+                }
+                return label;
+            }
+            if (labelEquals(label, bytes, offset, length)) {
+                return label;
+            }
+        }
+    }
+
+    private boolean labelEquals(int label, byte[] bytes, int offset, int length) {
+        int labelOffset = this.labelOffsets[label];
+        if (this.labelOffsets[label + 1] - labelOffset != length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            if (this.labelBytes[labelOffset + index] != bytes[offset + index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int appendLabel(byte[] bytes, int offset, int length) {
+        if (this.labelBytesSize + length > this.labelBytes.length) {
+            this.labelBytes = Arrays.copyOf(this.labelBytes, Math.max(this.labelBytesSize + length, this.labelBytes.length * 3 / 2));
+        }
+        if (this.labelCount + 2 > this.labelOffsets.length) {
+            this.labelOffsets = Arrays.copyOf(this.labelOffsets, this.labelOffsets.length * 3 / 2);
+        }
+        System.arraycopy(bytes, offset, this.labelBytes, this.labelBytesSize, length);
+        this.labelBytesSize += length;
+        int label = this.labelCount++;
+        this.labelOffsets[this.labelCount] = this.labelBytesSize;
+        return label;
+    }
+
+    private void rehashLabels() {
+        int[] slots = new int[this.labelSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int label = 0; label < this.labelCount; label++) {
+            int hash = 0;
+            for (int index = this.labelOffsets[label]; index < this.labelOffsets[label + 1]; index++) {
+                hash = 31 * hash + this.labelBytes[index];
+            }
+            int slot = mix(hash) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = label + 1;
+        }
+        this.labelSlots = slots;
+    }
+
+    private int findChild(int parent, int label, boolean create) {
+        int mask = this.childSlots.length - 1;
+        for (int slot = childHash(parent, label) & mask; ; slot = (slot + 1) & mask) {
+            int node = this.childSlots[slot];
+            if (node == 0) {
+                if (!create) {
+                    return -1;
+                }
+                node = appendNode(parent, label);
+                this.childSlots[slot] = node;
+                if (this.nodeCount * 2 > this.childSlots.length) {
+                    rehashChildren();
+                }
+                return node;
+            }
+            if (this.nodeParents[node] == parent && this.nodeLabels[node] == label) {
+                return node;
+            }
+        }
+    }
+
+    private int appendNode(int parent, int label) {
+        if (this.nodeCount == this.nodeLabels.length) {
+            int capacity = this.nodeLabels.length * 3 / 2;
+            this.nodeLabels = Arrays.copyOf(this.nodeLabels, capacity);
+            this.nodeParents = Arrays.copyOf(this.nodeParents, capacity);
+            this.nodeValues = Arrays.copyOf(this.nodeValues, capacity);
+        }
+        int node = this.nodeCount++;
+        this.nodeLabels[node] = label;
+        this.nodeParents[node] = parent;
+        this.nodeValues[node] = NOT_TERMINAL;
+        // Invalidate sorted children cache
+        this.childOffsets = null;
+        this.children = null;
+        return node;
+    }
+
+    private void rehashChildren() {
+        int[] slots = new int[this.childSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int node = 1; node < this.nodeCount; node++) {
+            int slot = childHash(this.nodeParents[node], this.nodeLabels[node]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = node;
+        }
+        this.childSlots = slots;
+    }
+
+    private static int childHash(int parent, int label) {
+        return mix(parent * 0x9E3779B9 + label);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * Build the sorted children cache if needed.
+     */
+    private void ensureSortedChildren() {
+        if (this.children != null) {
+            return;
+        }
+        // Rank labels by bytes
+        Integer[] sortedLabels = new Integer[this.labelCount];
+        for (int label = 0; label < this.labelCount; label++) {
+            sortedLabels[label] = label;
+        }
+        Arrays.sort(sortedLabels, this::compareLabels);
+        int[] labelRanks = new int[this.labelCount];
+        for (int rank = 0; rank < this.labelCount; rank++) {
+            labelRanks[sortedLabels[rank]] = rank;
+        }
+        // Sort nodes by parent then label rank
+        int childCount = this.nodeCount - 1;
+        long[] keys = new long[childCount];
+        for (int node = 1; node < this.nodeCount; node++) {
+            keys[node - 1] = ((long) this.nodeParents[node] << 32) | labelRanks[this.nodeLabels[node]];
+        }
+        Arrays.sort(keys);
+        // Build children offsets
+        int[] offsets = new int[this.nodeCount + 1];
+        int[] sortedChildren = new int[childCount];
+        for (int index = 0; index < childCount; index++) {
+            int parent = (int) (keys[index] >>> 32);
+            int label = sortedLabels[(int) keys[index]];
+            sortedChildren[index] = findChild(parent, label, false);
+            offsets[parent + 1]++;
+        }
+        for (int node = 0; node < this.nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        this.childOffsets = offsets;
+        this.children = sortedChildren;
+    }
+
+    private int compareLabels(int label1, int label2) {
+        int offset1 = this.labelOffsets[label1];
+        int length1 = this.labelOffsets[label1 + 1] - offset1;
+        int offset2 = this.labelOffsets[label2];
+        int length2 = this.labelOffsets[label2 + 1] - offset2;
+        for (int index = 0; index < Math.min(length1, length2); index++) {
+            int diff = (this.labelBytes[offset1 + index] & 0xFF) - (this.labelBytes[offset2 + index] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length1 - length2;
+    }
+
+    /**
+     * This class iterates over the terminal nodes of a subtree in reversed domain order.
+     * The subtree root is excluded.
+     */
+    class NodeIterator {
+        private final int expectedNodeCount;
+        private int[] stackNodes;
+        private int[] stackCursors;
+        private int depth;
+        private int next;
+        private int current;
+
+        NodeIterator(int start) {
+            ensureSortedChildren();
+            this.expectedNodeCount = DomainTrie.this.nodeCount;
+            this.stackNodes = new int[16];
+            this.stackCursors = new int[16];
+            this.stackNodes[0] = start;
+            this.stackCursors[0] = DomainTrie.this.childOffsets[start];
+            this.depth = 0;
+            this.current = -1;
+            this.next = findNext();
+        }
+
+        private int findNext() {
+            while (this.depth >= 0) {
+                int node = this.stackNodes[this.depth];
+                int cursor = this.stackCursors[this.depth];
+                if (cursor >= DomainTrie.this.childOffsets[node + 1]) {
+                    this.depth--;
+                    continue;
+                }
+                this.stackCursors[this.depth]++;
+                int child = DomainTrie.this.children[cursor];
+                // Push child
+                this.depth++;
+                if (this.depth == this.stackNodes.length) {
+                    this.stackNodes = Arrays.copyOf(this.stackNodes, this.depth * 2);
+                    this.stackCursors = Arrays.copyOf(this.stackCursors, this.depth * 2);
+                }
+                this.stackNodes[this.depth] = child;
+                this.stackCursors[this.depth] = DomainTrie.this.childOffsets[child];
+                if (DomainTrie.this.nodeValues[child] != NOT_TERMINAL) {
+                    return child;
+                }
+            }
+            return -1;
+        }
+
+        boolean hasNextNode() {
+            return this.next != -1;
+        }
+
+        int nextNode() {
+            if (this.expectedNodeCount != DomainTrie.this.nodeCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.next == -1) {
+                throw new NoSuchElementException();
+            }
+            this.current = this.next;
+            this.next = findNext();
+            return this.current;
+        }
+
+        void removeNode() {
+            if (this.current == -1 || DomainTrie.this.nodeValues[this.current] == NOT_TERMINAL) {
+                throw new IllegalStateException();
+            }
+            DomainTrie.this.removeNode(this.current);
+        }
+    }
+
+    /**
+     * This class iterates over host names of a subtree in reversed domain order.
+     */
+    private class HostnameIterator implements Iterator<String> {
+        private final NodeIterator iterator;
+
+        private HostnameIterator(int start) {
+            this.iterator = new NodeIterator(start);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.iterator.hasNextNode();
+        }
+
+        @Override
+        public String next() {
+            return getHostname(this.iterator.nextNode());
+        }
+
+        @Override
+        public void remove() {
+            this.iterator.removeNode();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.adaway.hosts;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is a compact map of host names to values backed by a {@link DomainTrie}.
+ * <p>
+ * Values are pooled so the same value (like a redirection IP address) is stored once. Entries are
+ * iterated in reversed domain order. This class is not thread-safe.
+ */
+public class DomainTrieMap extends AbstractMap<String, String> {
+    /**
+     * The backing domain trie.
+     */
+    private final DomainTrie trie;
+
+    /**
+     * Constructor.
+     */
+    public DomainTrieMap() {
+        this.trie = new DomainTrie();
+    }
+
+    @Override
+    public int size() {
+        return this.trie.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.trie.contains(key);
+    }
+
+    @Override
+    public String get(Object key) {
+        int node = this.trie.getNode(key);
+        return node == -1 ? null : this.trie.getValue(node);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int node = this.trie.getNode(key);
+        String previousValue = node == -1 ? null : this.trie.getValue(node);
+        this.trie.put(key, value);
+        return previousValue;
+    }
+
+    @Override
+    public String remove(Object key) {
+        int node = this.trie.getNode(key);
+        if (node == -1) {
+            return null;
+        }
+        String previousValue = this.trie.getValue(node);
+        this.trie.removeNode(node);
+        return previousValue;
+    }
+
+    @Override
+    public void clear() {
+        this.trie.clear();
+    }
+
+    /**
+     * Get the host names of the map as a domain trie.
+     *
+     * @return The host names of the map.
+     */
+    public DomainTrie domains() {
+        return this.trie;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                DomainTrie.NodeIterator iterator = DomainTrieMap.this.trie.new NodeIterator(DomainTrie.ROOT);
+                return new Iterator<Entry<String, String>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNextNode();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        int node = iterator.nextNode();
+                        return new TrieEntry(node);
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.removeNode();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return DomainTrieMap.this.trie.size();
+            }
+        };
+    }
+
+    /**
+     * This class is a map entry bound to a trie node.
+     */
+    private class TrieEntry implements Map.Entry<String, String> {
+        private final int node;
+        private final String key;
+
+        private TrieEntry(int node) {
+            this.node = node;
+            this.key = DomainTrieMap.this.trie.getHostname(node);
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public String getValue() {
+            return DomainTrieMap.this.trie.getValue(this.node);
+        }
+
+        @Override
+        public String setValue(String value) {
+            String previousValue = getValue();
+            DomainTrieMap.this.trie.setValue(this.node, value);
+            return previousValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            String value = getValue();
+            return this.key.equals(entry.getKey())
+                    && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            String value = getValue();
+            return this.key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+    }
+}
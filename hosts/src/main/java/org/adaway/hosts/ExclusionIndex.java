@@ -0,0 +1,312 @@
+package org.adaway.hosts;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class indexes the whitelist and redirection list items to exclude host names from blacklist.
+ * <p>
+ * Whitelist items are indexed by kind:
+ * <ul>
+ * <li>exact items (without wildcard) and redirected host names are probed with a Bloom filter
+ * first, so most host names are ruled out with no set lookup,</li>
+ * <li>subdomains wildcards like {@code *.example.com} are indexed by domain,</li>
+ * <li>suffix only wildcards like {@code *tracker.example.com} are stored in a reversed character
+ * trie and prefix only wildcards like {@code tracker.*} in a character trie,</li>
+ * <li>other general wildcard items are bucketed by the domain of their literal suffix (for
+ * example, {@code ads?.example.com} is bucketed in {@code example.com}) and only matched against
+ * the host names of this domain.</li>
+ * </ul>
+ * Checking a host name costs a Bloom filter probe, a walk of both tries and a lookup per parent
+ * domain, whatever the whitelist size. This class is not thread-safe.
+ */
+class ExclusionIndex {
+    /**
+     * The Bloom filter false positive probability.
+     */
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+    /**
+     * The Bloom filter of exact whitelist items and redirected host names.
+     */
+    private final BloomFilter<CharSequence> exactFilter;
+    /**
+     * The exact whitelist items.
+     */
+    private final DomainTrie exactItems;
+    /**
+     * The redirected host names.
+     */
+    private final Set<String> redirectedHostnames;
+    /**
+     * The whitelist domains and wildcard buckets, by domain.
+     */
+    private final Map<String, Domain> domains;
+    /**
+     * The whitelist domains with all subdomains whitelisted.
+     */
+    private final List<String> subdomainsWildcards;
+    /**
+     * The literal suffixes of the suffix only wildcard items.
+     */
+    private final AffixTrie suffixes;
+    /**
+     * The literal prefixes of the prefix only wildcard items.
+     */
+    private final AffixTrie prefixes;
+    /**
+     * The matcher of the wildcard items without literal domain suffix ({@code null} if none).
+     */
+    private final WildcardMatcher unbucketedMatcher;
+    /**
+     * Whether the whitelist has wildcard items other than subdomains wildcards.
+     */
+    private final boolean hasWildcards;
+
+    /**
+     * Constructor.
+     *
+     * @param whitelist           The whitelist items, with optional wildcards.
+     * @param redirectedHostnames The redirected host names.
+     */
+    ExclusionIndex(Collection<String> whitelist, Set<String> redirectedHostnames) {
+        this.exactItems = new DomainTrie();
+        this.redirectedHostnames = redirectedHostnames;
+        this.domains = new HashMap<>();
+        this.subdomainsWildcards = new ArrayList<>();
+        this.suffixes = new AffixTrie(true);
+        this.prefixes = new AffixTrie(false);
+        Map<String, List<String>> bucketWildcards = new HashMap<>();
+        List<String> unbucketedWildcards = new ArrayList<>();
+        for (String item : whitelist) {
+            int lastWildcard = lastWildcardIndex(item);
+            if (lastWildcard == -1) {
+                this.exactItems.add(item);
+            } else if (lastWildcard == 0 && item.startsWith("*.") && item.length() > 2) {
+                String domain = item.substring(2);
+                getDomain(domain).subdomains = true;
+                this.subdomainsWildcards.add(domain);
+            } else if (lastWildcard == 0 && item.charAt(0) == '*') {
+                this.suffixes.add(item.substring(1));
+            } else if (lastWildcard == item.length() - 1 && item.charAt(lastWildcard) == '*'
+                    && firstWildcardIndex(item) == lastWildcard) {
+                this.prefixes.add(item.substring(0, lastWildcard));
+            } else {
+                String bucket = getBucket(item, lastWildcard);
+                List<String> wildcards = bucket == null ? unbucketedWildcards : bucketWildcards.get(bucket);
+                if (wildcards == null) {
+                    wildcards = new ArrayList<>();
+                    bucketWildcards.put(bucket, wildcards);
+                }
+                wildcards.add(item);
+            }
+        }
+        for (Map.Entry<String, List<String>> bucket : bucketWildcards.entrySet()) {
+            getDomain(bucket.getKey()).matcher = new WildcardMatcher(bucket.getValue());
+        }
+        this.unbucketedMatcher = unbucketedWildcards.isEmpty() ? null : new WildcardMatcher(unbucketedWildcards);
+        this.hasWildcards = !this.suffixes.isEmpty() || !this.prefixes.isEmpty()
+                || !bucketWildcards.isEmpty() || !unbucketedWildcards.isEmpty();
+        // Load exact host names into the Bloom filter
+        this.exactFilter = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(1, this.exactItems.size() + redirectedHostnames.size()),
+                FALSE_POSITIVE_PROBABILITY
+        );
+        for (String hostname : this.exactItems) {
+            this.exactFilter.put(hostname);
+        }
+        for (String hostname : redirectedHostnames) {
+            this.exactFilter.put(hostname);
+        }
+    }
+
+    /**
+     * Remove the excluded host names from a blacklist.
+     * <p>
+     * Exact items, redirected host names and subdomains wildcards are removed by lookup. The
+     * blacklist is only scanned if there are other wildcard items.
+     *
+     * @param blacklist The blacklist to remove excluded host names from.
+     */
+    void removeExcluded(DomainTrie blacklist) {
+        // prune whole subdomain trees for "*.example.com" like whitelist items
+        for (String domain : this.subdomainsWildcards) {
+            blacklist.removeSubdomains(domain);
+        }
+        blacklist.removeAll(this.exactItems);
+        blacklist.removeAll(this.redirectedHostnames);
+        if (this.hasWildcards) {
+            for (Iterator<String> iterator = blacklist.iterator(); iterator.hasNext(); ) {
+                if (matchesWildcard(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether a host name is excluded by the whitelist or redirection list.
+     *
+     * @param hostname The host name to check.
+     * @return {@code true} if the host name is whitelisted or redirected, {@code false} otherwise.
+     */
+    boolean isExcluded(String hostname) {
+        if (this.exactFilter.mightContain(hostname)
+                && (this.exactItems.contains(hostname) || this.redirectedHostnames.contains(hostname))) {
+            return true;
+        }
+        return matchesWildcard(hostname);
+    }
+
+    private boolean matchesWildcard(String hostname) {
+        if (this.suffixes.matches(hostname) || this.prefixes.matches(hostname)) {
+            return true;
+        }
+        // check parent domains for subdomains wildcards and bucketed wildcards
+        if (!this.domains.isEmpty()) {
+            for (int index = hostname.indexOf('.'); index != -1; index = hostname.indexOf('.', index + 1)) {
+                Domain domain = this.domains.get(hostname.substring(index + 1));
+                if (domain != null && (domain.subdomains || domain.matcher != null && domain.matcher.matches(hostname))) {
+                    return true;
+                }
+            }
+        }
+        return this.unbucketedMatcher != null && this.unbucketedMatcher.matches(hostname);
+    }
+
+    private Domain getDomain(String name) {
+        Domain domain = this.domains.get(name);
+        if (domain == null) {
+            domain = new Domain();
+            this.domains.put(name, domain);
+        }
+        return domain;
+    }
+
+    private static int firstWildcardIndex(String item) {
+        for (int index = 0; index < item.length(); index++) {
+            char c = item.charAt(index);
+            if (c == '*' || c == '?') {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastWildcardIndex(String item) {
+        return Math.max(item.lastIndexOf('*'), item.lastIndexOf('?'));
+    }
+
+    /**
+     * Get the bucket of a wildcard item: the domain of its literal suffix.<br>
+     * Any matching host name ends with the literal suffix so it is a subdomain of this domain.
+     *
+     * @param item         The wildcard item.
+     * @param lastWildcard The index of the last wildcard character of the item.
+     * @return The bucket domain, {@code null} if the literal suffix has no domain.
+     */
+    private static String getBucket(String item, int lastWildcard) {
+        int dot = item.indexOf('.', lastWildcard + 1);
+        if (dot == -1 || dot == item.length() - 1) {
+            return null;
+        }
+        return item.substring(dot + 1);
+    }
+
+    /**
+     * This class is a character trie of literal prefixes or suffixes.
+     * <p>
+     * A host name matches if one of the literals is its prefix (or suffix). Each host name
+     * character is visited at most once.
+     */
+    private static class AffixTrie {
+        /**
+         * Whether the trie holds suffixes (walked from the last character).
+         */
+        private final boolean reversed;
+        /**
+         * The root node.
+         */
+        private final Node root;
+
+        private AffixTrie(boolean reversed) {
+            this.reversed = reversed;
+            this.root = new Node();
+        }
+
+        private boolean isEmpty() {
+            return !this.root.terminal && this.root.characters.length == 0;
+        }
+
+        private void add(String literal) {
+            Node node = this.root;
+            int length = literal.length();
+            for (int index = 0; index < length; index++) {
+                node = node.getChild(literal.charAt(this.reversed ? length - 1 - index : index), true);
+            }
+            node.terminal = true;
+        }
+
+        private boolean matches(String hostname) {
+            Node node = this.root;
+            int length = hostname.length();
+            for (int index = 0; !node.terminal; index++) {
+                if (index == length) {
+                    return false;
+                }
+                node = node.getChild(hostname.charAt(this.reversed ? length - 1 - index : index), false);
+                if (node == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static class Node {
+            private char[] characters = new char[0];
+            private Node[] children = new Node[0];
+            private boolean terminal;
+
+            private Node getChild(char c, boolean create) {
+                for (int index = 0; index < this.characters.length; index++) {
+                    if (this.characters[index] == c) {
+                        return this.children[index];
+                    }
+                }
+                if (!create) {
+                    return null;
+                }
+                int count = this.characters.length;
+                this.characters = Arrays.copyOf(this.characters, count + 1);
+                this.children = Arrays.copyOf(this.children, count + 1);
+                this.characters[count] = c;
+                this.children[count] = new Node();
+                return this.children[count];
+            }
+        }
+    }
+
+    /**
+     * This class holds the whitelist items of a domain.
+     */
+    private static class Domain {
+        /**
+         * Whether all subdomains of the domain are whitelisted.
+         */
+        private boolean subdomains;
+        /**
+         * The matcher of the wildcard items bucketed in the domain ({@code null} if none).
+         */
+        private WildcardMatcher matcher;
+    }
+}
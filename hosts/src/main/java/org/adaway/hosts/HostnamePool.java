@@ -0,0 +1,192 @@
+package org.adaway.hosts;
+
+import java.nio.charset.Charset;
+
+/**
+ * This class is a pool of host names shared between the parsers of several hosts sources.
+ * <p>
+ * It only tells whether an host name was already added by another hosts source, to compute the
+ * overlap between sources. Host names are neither decoded nor retained: each unique host name is
+ * stored as a 64-bit hash of its raw UTF-8 bytes, so the pool costs a few bytes per host name
+ * whatever its length.<br>
+ * Two host names sharing the same 64-bit hash are considered equal. It could only skew the overlap
+ * statistics, never the compiled hosts file.<br>
+ * The pool is split into independently locked segments so it could be shared by concurrent parsers.
+ */
+public class HostnamePool {
+    /**
+     * The host name charset.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     * The number of segments (must be a power of two).
+     */
+    private static final int SEGMENT_COUNT = 16;
+    /**
+     * The initial capacity of each segment table (must be a power of two).
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * The empty slot hash value.
+     */
+    private static final long EMPTY = 0;
+    /**
+     * The pool segments.
+     */
+    private final Segment[] segments;
+
+    /**
+     * Constructor.
+     */
+    public HostnamePool() {
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int index = 0; index < SEGMENT_COUNT; index++) {
+            this.segments[index] = new Segment();
+        }
+    }
+
+    /**
+     * Add an host name to the pool from its UTF-8 bytes.
+     *
+     * @param bytes  The bytes holding the host name.
+     * @param offset The host name offset.
+     * @param length The host name length.
+     * @return {@code true} if the host name was added, {@code false} if it was already pooled.
+     */
+    public boolean add(byte[] bytes, int offset, int length) {
+        long hash = hash(bytes, offset, length);
+        return segment(hash).add(hash);
+    }
+
+    /**
+     * Add an host name to the pool.
+     *
+     * @param hostname The host name to add.
+     * @return {@code true} if the host name was added, {@code false} if it was already pooled.
+     */
+    public boolean add(String hostname) {
+        byte[] bytes = hostname.getBytes(CHARSET);
+        return add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Get the number of pooled host names.
+     *
+     * @return The number of pooled host names.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get the memory used by the pool tables.
+     *
+     * @return The size of the pool tables (in bytes).
+     */
+    public long getTableSize() {
+        long tableSize = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                tableSize += (long) segment.hashes.length * Long.BYTES;
+            }
+        }
+        return tableSize;
+    }
+
+    /**
+     * Remove all the pooled host names.
+     */
+    public void clear() {
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segment(long hash) {
+        return this.segments[(int) (hash >>> 60) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * Compute the 64-bit hash of an host name (FNV-1a with a final mix).
+     *
+     * @param bytes  The bytes holding the host name.
+     * @param offset The host name offset.
+     * @param length The host name length.
+     * @return The host name hash, never {@link #EMPTY}.
+     */
+    private static long hash(byte[] bytes, int offset, int length) {
+        long hash = 0xCBF29CE484222325L;
+        for (int index = offset; index < offset + length; index++) {
+            hash ^= bytes[index] & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        // Spread bits for open addressing
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * This class is an open addressing table of host name hashes.
+     */
+    private static class Segment {
+        private long[] hashes;
+        private int size;
+
+        private Segment() {
+            clear();
+        }
+
+        private synchronized void clear() {
+            this.hashes = new long[INITIAL_CAPACITY];
+            this.size = 0;
+        }
+
+        /**
+         * Add an host name hash if missing.
+         *
+         * @param hash The host name hash.
+         * @return {@code true} if the hash was added, {@code false} if it was already present.
+         */
+        private synchronized boolean add(long hash) {
+            int mask = this.hashes.length - 1;
+            int slot = (int) hash & mask;
+            long pooled;
+            while ((pooled = this.hashes[slot]) != EMPTY) {
+                if (pooled == hash) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            this.hashes[slot] = hash;
+            this.size++;
+            if (this.size * 2 > this.hashes.length) {
+                rehash();
+            }
+            return true;
+        }
+
+        private void rehash() {
+            long[] oldHashes = this.hashes;
+            this.hashes = new long[oldHashes.length * 2];
+            int mask = this.hashes.length - 1;
+            for (long hash : oldHashes) {
+                if (hash == EMPTY) {
+                    continue;
+                }
+                int slot = (int) hash & mask;
+                while (this.hashes[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                this.hashes[slot] = hash;
+            }
+        }
+    }
+}
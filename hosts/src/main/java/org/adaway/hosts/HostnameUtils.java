@@ -0,0 +1,96 @@
+package org.adaway.hosts;
+
+import com.google.common.net.InetAddresses;
+import com.google.common.net.InternetDomainName;
+
+/**
+ * This class validates host names and IP addresses of hosts files.
+ */
+public final class HostnameUtils {
+
+    private HostnameUtils() {
+    }
+
+    /**
+     * Check if the given host name is a valid host name.
+     *
+     * @param input The host name to validate.
+     * @return {@code true} if input is valid hostname, {@code false} otherwise.
+     */
+    public static boolean isValidHostname(String input) {
+        return InternetDomainName.isValid(input);
+    }
+
+    /**
+     * Same as {@link #isValidHostname(String)} but also allows * and ? as wildcard.
+     * <p/>
+     * Wildcard validation is quite tricky, because wildcards can be placed anywhere and can match with
+     * anything. To make sure we don't dismiss certain valid wildcard host names, we trim wildcards
+     * or replace them with an alphanumeric character for further validation.<br/>
+     * We only reject whitelist host names which cannot match against valid host names under any circumstances.
+     *
+     * @param hostname The whitelist host name to validate.
+     * @return {@code true} if the whitelist host name is valid, {@code false} otherwise.
+     */
+    public static boolean isValidWhitelistHostname(String hostname) {
+        // Clear wildcards from host name then validate it
+        String clearedHostname = hostname.replaceAll("\\*", "").replaceAll("\\?", "");
+        // Replace wildcards from host name by an alphanumeric character
+        String replacedHostname = hostname.replaceAll("\\*", "a").replaceAll("\\?", "a");
+        // Check if any hostname is valid
+        return isValidHostname(clearedHostname) || isValidHostname(replacedHostname);
+    }
+
+    /**
+     * Check if the given ip is a valid IP address.
+     *
+     * @param ip The IP to validate.
+     * @return {@code true} if the IP is valid, {@code false} otherwise.
+     */
+    public static boolean isValidIp(String ip) {
+        return InetAddresses.isInetAddress(ip);
+    }
+
+    /**
+     * Transforms String with * and ? characters to regex String, convert "example*.*" to regex
+     * "^example.*\\..*$", from http://www.rgagnon.com/javadetails/java-0515.html
+     *
+     * @param wildcard The wildcard to transform.
+     * @return The anchored regex matching the wildcard.
+     */
+    public static String wildcardToRegex(String wildcard) {
+        StringBuilder s = new StringBuilder(wildcard.length());
+        s.append('^');
+        for (int i = 0, is = wildcard.length(); i < is; i++) {
+            char c = wildcard.charAt(i);
+            switch (c) {
+                case '*':
+                    s.append(".*");
+                    break;
+                case '?':
+                    s.append(".");
+                    break;
+                // escape special regex-characters
+                case '(':
+                case ')':
+                case '[':
+                case ']':
+                case '$':
+                case '^':
+                case '.':
+                case '{':
+                case '}':
+                case '|':
+                case '\\':
+                    s.append("\\");
+                    s.append(c);
+                    break;
+                default:
+                    s.append(c);
+                    break;
+            }
+        }
+        s.append('$');
+        return s.toString();
+    }
+}
@@ -0,0 +1,391 @@
+package org.adaway.hosts;
+
+import com.google.common.hash.Hasher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class compiles hosts sources and user lists into a hosts file.
+ * <p>
+ * Each hosts source is parsed into its own parser (see {@link #createSourceParser()}), possibly
+ * concurrently. Its blocked host names are then kept as a sorted {@link HostsRun} (see
+ * {@link #createRun(HostsParser)}) and the source is added in hosts sources order with
+ * {@link #addSource(HostsParser, HostsRun)}, so the result does not depend on which source was
+ * parsed first. Once the user lists are added, the hosts file is written by merging the runs.
+ * <p>
+ * This class does not depend on Android and only deals with streams and files.
+ */
+public class HostsCompiler implements Closeable {
+    /**
+     * The header generation date format.
+     */
+    private static final String HEADER_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    /**
+     * The compiler options.
+     */
+    private final HostsCompilerOptions options;
+    /**
+     * The directory to spill runs to ({@code null} to keep runs in memory).
+     */
+    private final File runDirectory;
+    /**
+     * The index of the next run file.
+     */
+    private final AtomicInteger runIndex;
+    /**
+     * The pool of blocked host name hashes shared by the hosts sources parsers.
+     */
+    private final HostnamePool hostnamePool;
+    /**
+     * The parser holding the merged whitelist and redirection lists and the user blacklist.
+     */
+    private final HostsParser parser;
+    /**
+     * The sorted blocked host names runs of the added hosts sources, in hosts sources order.
+     */
+    private final List<HostsRun> runs;
+    /**
+     * Whether the lists are compiled.
+     */
+    private boolean compiled;
+    /**
+     * The number of blocked host names excluded by the whitelist or redirection list when written.
+     */
+    private long excludedHostCount;
+
+    /**
+     * Constructor.
+     *
+     * @param options      The compiler options.
+     * @param runDirectory The directory to spill large runs to ({@code null} to keep runs in memory).
+     */
+    public HostsCompiler(HostsCompilerOptions options, File runDirectory) {
+        this.options = options;
+        this.runDirectory = runDirectory;
+        this.runIndex = new AtomicInteger();
+        this.hostnamePool = new HostnamePool();
+        this.parser = new HostsParser(options.isParseWhitelist(), options.isParseRedirections());
+        this.runs = new ArrayList<>();
+        this.compiled = false;
+    }
+
+    /**
+     * Get the compiler options.
+     *
+     * @return The compiler options.
+     */
+    public HostsCompilerOptions getOptions() {
+        return this.options;
+    }
+
+    /**
+     * Create an empty parser for a hosts source, according the compiler options.
+     * <p>
+     * The parsers created by the compiler share a host name pool to count the host names listed by
+     * several hosts sources (see {@link HostsParser#getSharedHostnameCount()}).
+     *
+     * @return An empty hosts source parser.
+     */
+    public HostsParser createSourceParser() {
+        HostsParser sourceParser = new HostsParser(this.options.isParseWhitelist(), this.options.isParseRedirections());
+        sourceParser.setHostnamePool(this.hostnamePool);
+        return sourceParser;
+    }
+
+    /**
+     * Create the run of a hosts source and release its blocked host names from the source parser.
+     * <p>
+     * It could be called concurrently from the threads parsing the hosts sources.
+     *
+     * @param sourceParser The parser holding the hosts source.
+     * @return The sorted blocked host names run of the hosts source.
+     */
+    public HostsRun createRun(HostsParser sourceParser) {
+        HostsRun run = HostsRun.of(sourceParser.getBlacklist(), nextRunFile());
+        sourceParser.getBlacklist().clear();
+        return run;
+    }
+
+    /**
+     * Create the run of a hosts source from its already sorted blocked host names.
+     * <p>
+     * It could be called concurrently from the threads retrieving the hosts sources.
+     *
+     * @param sortedHostnames The hosts source blocked host names, in natural string order and
+     *                        without duplicates.
+     * @return The blocked host names run of the hosts source.
+     */
+    public HostsRun createRun(String[] sortedHostnames) {
+        return HostsRun.ofSorted(sortedHostnames, nextRunFile());
+    }
+
+    /**
+     * Add a hosts source to the compiled hosts file.
+     * <p>
+     * Hosts sources must be added in hosts sources order as later redirection rules replace
+     * earlier ones.
+     *
+     * @param sourceParser The parser holding the hosts source whitelist and redirection lists.
+     * @param run          The hosts source run, created by {@link #createRun(HostsParser)} or
+     *                     {@link #createRun(String[])}.
+     */
+    public void addSource(HostsParser sourceParser, HostsRun run) {
+        checkNotCompiled();
+        this.parser.addWhitelist(sourceParser.getWhitelist());
+        this.parser.addRedirectList(sourceParser.getRedirectList());
+        this.runs.add(run);
+    }
+
+    /**
+     * Parse a hosts source content and add it to the compiled hosts file.
+     *
+     * @param input The hosts source content to parse.
+     * @return The parser holding the hosts source whitelist and redirection lists.
+     * @throws IOException If the hosts source content could not be read.
+     */
+    public HostsParser parseSource(InputStream input) throws IOException {
+        HostsParser sourceParser = createSourceParser();
+        sourceParser.parse(input);
+        addSource(sourceParser, createRun(sourceParser));
+        return sourceParser;
+    }
+
+    /**
+     * Get the host name pool shared by the hosts sources parsers.
+     *
+     * @return The host name pool.
+     */
+    HostnamePool getHostnamePool() {
+        return this.hostnamePool;
+    }
+
+    /**
+     * Get the number of added hosts sources.
+     *
+     * @return The number of added hosts sources.
+     */
+    public int getSourceCount() {
+        return this.runs.size();
+    }
+
+    /**
+     * Add the user lists to the compiled hosts file.
+     * <p>
+     * User lists are always applied, whatever the parsing options.
+     *
+     * @param blacklist    The user blocked host names.
+     * @param whitelist    The user allowed host names, with optional wildcards.
+     * @param redirections The user redirected host names and their IP address.
+     */
+    public void addUserLists(Collection<String> blacklist, Collection<String> whitelist,
+                             Map<String, String> redirections) {
+        checkNotCompiled();
+        this.parser.addBlacklist(blacklist);
+        this.parser.addWhitelist(whitelist);
+        this.parser.addRedirectList(redirections);
+    }
+
+    /**
+     * Compile the lists, removing whitelisted and redirected host names from blacklist.
+     * <p>
+     * No source or user list could be added once compiled. The host name pool is released.
+     */
+    public void compile() {
+        if (!this.compiled) {
+            this.hostnamePool.clear();
+            this.parser.compileList();
+            this.compiled = true;
+        }
+    }
+
+    /**
+     * Write the first hosts file header lines, with the generation date.
+     *
+     * @param writer The writer to write the hosts file to.
+     * @param date   The hosts file generation date.
+     * @throws IOException If the header could not be written.
+     */
+    public void writeHeaderDate(HostsFileWriter writer, Date date) throws IOException {
+        SimpleDateFormat formatter = new SimpleDateFormat(HEADER_DATE_FORMAT, Locale.US);
+        writer.write(HostsFormat.HEADER1 + HostsFormat.LINE_SEPARATOR + "# " + formatter.format(date));
+    }
+
+    /**
+     * Hash the content of a compiled hosts file, except its header date.
+     * <p>
+     * The hash matches the one of a {@link HostsFileWriter#startHashing(Hasher) writer hashing}
+     * its content after {@link #writeHeaderDate(HostsFileWriter, Date)}, so an installed hosts
+     * file could be compared to a new one whatever their generation date.
+     *
+     * @param input  The hosts file content.
+     * @param hasher The hasher to hash the content with.
+     * @return {@code true} if the content was hashed, {@code false} if it does not start with a
+     * header date.
+     * @throws IOException If the hosts file content could not be read.
+     */
+    public static boolean hashHosts(InputStream input, Hasher hasher) throws IOException {
+        byte[] header = (HostsFormat.HEADER1 + HostsFormat.LINE_SEPARATOR + "# ").getBytes(StandardCharsets.UTF_8);
+        byte[] buffer = new byte[8192];
+        // Skip the header date, formatted to a fixed length
+        int headerLength = header.length + HEADER_DATE_FORMAT.length();
+        int length = 0;
+        while (length < headerLength) {
+            int count = input.read(buffer, length, headerLength - length);
+            if (count == -1) {
+                return false;
+            }
+            length += count;
+        }
+        for (int index = 0; index < header.length; index++) {
+            if (buffer[index] != header[index]) {
+                return false;
+            }
+        }
+        int count;
+        while ((count = input.read(buffer)) != -1) {
+            hasher.putBytes(buffer, 0, count);
+        }
+        return true;
+    }
+
+    /**
+     * Write the hosts file after its header date.
+     * <p>
+     * The lists are compiled first if needed.
+     *
+     * @param writer     The writer to write the hosts file to.
+     * @param sourceUrls The URLs of the hosts sources to list in header.
+     * @throws IOException If the hosts file could not be written.
+     */
+    public void writeHosts(HostsFileWriter writer, List<String> sourceUrls) throws IOException {
+        compile();
+        writeHeader(writer, sourceUrls);
+        writeLoopback(writer);
+        writeBlockedHosts(writer);
+        writeRedirections(writer);
+        // hosts file has to end with new line, when not done last entry won't be recognized
+        writer.write(HostsFormat.LINE_SEPARATOR);
+    }
+
+    /**
+     * Get the number of hosts sources blocked host names excluded by the whitelist or redirection
+     * list by the last {@link #writeHosts(HostsFileWriter, List)} call.
+     *
+     * @return The number of excluded host names.
+     */
+    public long getExcludedHostCount() {
+        return this.excludedHostCount;
+    }
+
+    /**
+     * Delete the runs of the added hosts sources.
+     */
+    @Override
+    public void close() {
+        this.hostnamePool.clear();
+        for (HostsRun run : this.runs) {
+            run.delete();
+        }
+        this.runs.clear();
+    }
+
+    private File nextRunFile() {
+        return this.runDirectory == null ? null :
+                new File(this.runDirectory, this.runIndex.getAndIncrement() + ".run");
+    }
+
+    private void checkNotCompiled() {
+        if (this.compiled) {
+            throw new IllegalStateException("The lists are already compiled.");
+        }
+    }
+
+    private void writeHeader(HostsFileWriter writer, List<String> sourceUrls) throws IOException {
+        writer.write(HostsFormat.LINE_SEPARATOR + HostsFormat.HEADER2
+                + HostsFormat.LINE_SEPARATOR + HostsFormat.HEADER_SOURCES);
+        for (String sourceUrl : sourceUrls) {
+            writer.write(HostsFormat.LINE_SEPARATOR + "# " + sourceUrl);
+        }
+        writer.write(HostsFormat.LINE_SEPARATOR);
+    }
+
+    private void writeLoopback(HostsFileWriter writer) throws IOException {
+        // add "127.0.0.1 localhost" entry
+        writer.write(HostsFormat.LINE_SEPARATOR + HostsFormat.LOCALHOST_IPv4 + " "
+                + HostsFormat.LOCALHOST_HOSTNAME + HostsFormat.LINE_SEPARATOR
+                + HostsFormat.LOCALHOST_IPv6 + " " + HostsFormat.LOCALHOST_HOSTNAME);
+        writer.write(HostsFormat.LINE_SEPARATOR);
+    }
+
+    private void writeBlockedHosts(HostsFileWriter writer) throws IOException {
+        byte[] redirectionIpv4 = writer.encodePrefix(this.options.getRedirectionIpv4());
+        byte[] redirectionIpv6 = writer.encodePrefix(this.options.getRedirectionIpv6());
+        boolean enableIpv6 = this.options.isEnableIpv6();
+        this.excludedHostCount = 0;
+        // write hostnames merged from sorted hosts sources and user blacklist runs
+        try (SortedHostsMerger merger = openMerger()) {
+            String hostname;
+            while ((hostname = merger.next()) != null) {
+                // skip whitelisted and redirected hostnames
+                if (this.parser.isExcluded(hostname)) {
+                    this.excludedHostCount++;
+                    continue;
+                }
+                writer.writeEntry(redirectionIpv4, hostname);
+                if (enableIpv6) {
+                    writer.writeEntry(redirectionIpv6, hostname);
+                }
+            }
+        }
+    }
+
+    private void writeRedirections(HostsFileWriter writer) throws IOException {
+        Map<String, byte[]> prefixes = new HashMap<>();
+        for (Map.Entry<String, String> item : this.parser.getRedirectList().entrySet()) {
+            byte[] prefix = prefixes.get(item.getValue());
+            if (prefix == null) {
+                prefix = writer.encodePrefix(item.getValue());
+                prefixes.put(item.getValue(), prefix);
+            }
+            writer.writeEntry(prefix, item.getKey());
+        }
+    }
+
+    /**
+     * Open a merger of the hosts sources runs and the user blacklist.
+     *
+     * @return The sorted blocked host names merger.
+     * @throws IOException If a hosts run could not be opened.
+     */
+    private SortedHostsMerger openMerger() throws IOException {
+        String[] blacklist = this.parser.getBlacklist().toArray(new String[0]);
+        Arrays.sort(blacklist);
+        List<SortedHostsMerger.Run> mergedRuns = new ArrayList<>(this.runs.size() + 1);
+        mergedRuns.add(SortedHostsMerger.runOf(Arrays.asList(blacklist).iterator()));
+        try {
+            for (HostsRun run : this.runs) {
+                mergedRuns.add(run.open());
+            }
+            return new SortedHostsMerger(mergedRuns);
+        } catch (IOException exception) {
+            for (SortedHostsMerger.Run run : mergedRuns) {
+                run.close();
+            }
+            throw exception;
+        }
+    }
+}
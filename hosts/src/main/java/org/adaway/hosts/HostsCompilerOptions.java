@@ -0,0 +1,65 @@
+package org.adaway.hosts;
+
+/**
+ * This class is the options of a {@link HostsCompiler}.
+ */
+public class HostsCompilerOptions {
+    /**
+     * Whether whitelist entries of hosts sources are parsed.
+     */
+    private final boolean parseWhitelist;
+    /**
+     * Whether redirection entries of hosts sources are parsed.
+     */
+    private final boolean parseRedirections;
+    /**
+     * The IPv4 address to redirect blocked host names to.
+     */
+    private final String redirectionIpv4;
+    /**
+     * The IPv6 address to redirect blocked host names to.
+     */
+    private final String redirectionIpv6;
+    /**
+     * Whether blocked host names are also redirected to the IPv6 address.
+     */
+    private final boolean enableIpv6;
+
+    /**
+     * Constructor.
+     *
+     * @param parseWhitelist    Whether whitelist entries of hosts sources are parsed.
+     * @param parseRedirections Whether redirection entries of hosts sources are parsed.
+     * @param redirectionIpv4   The IPv4 address to redirect blocked host names to.
+     * @param redirectionIpv6   The IPv6 address to redirect blocked host names to.
+     * @param enableIpv6        Whether blocked host names are also redirected to the IPv6 address.
+     */
+    public HostsCompilerOptions(boolean parseWhitelist, boolean parseRedirections,
+                                String redirectionIpv4, String redirectionIpv6, boolean enableIpv6) {
+        this.parseWhitelist = parseWhitelist;
+        this.parseRedirections = parseRedirections;
+        this.redirectionIpv4 = redirectionIpv4;
+        this.redirectionIpv6 = redirectionIpv6;
+        this.enableIpv6 = enableIpv6;
+    }
+
+    public boolean isParseWhitelist() {
+        return this.parseWhitelist;
+    }
+
+    public boolean isParseRedirections() {
+        return this.parseRedirections;
+    }
+
+    public String getRedirectionIpv4() {
+        return this.redirectionIpv4;
+    }
+
+    public String getRedirectionIpv6() {
+        return this.redirectionIpv6;
+    }
+
+    public boolean isEnableIpv6() {
+        return this.enableIpv6;
+    }
+}
@@ -0,0 +1,141 @@
+package org.adaway.hosts;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * This class is a reader of memory-mapped hosts files.
+ * <p>
+ * The file is mapped once and read as raw bytes: the parser scans the mapped content directly
+ * (see {@link HostsParser#parse(ByteBuffer, java.util.concurrent.ForkJoinPool)}) and only the
+ * lines read with {@link #readLine()} are decoded. The mapping is released when the reader is
+ * garbage collected. This class is not thread-safe.
+ */
+public class HostsFileReader {
+    /**
+     * The hosts file charset.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     * The maximum length of the first line read by {@link #readFirstLine(File)} (in bytes).
+     */
+    private static final int FIRST_LINE_MAX_LENGTH = 256;
+    /**
+     * The hosts file content.
+     */
+    private final ByteBuffer content;
+    /**
+     * The position of the next line to read.
+     */
+    private int position;
+
+    /**
+     * Constructor.
+     *
+     * @param content The hosts file content, from its position to its limit.
+     */
+    public HostsFileReader(ByteBuffer content) {
+        this.content = content.slice();
+        this.position = 0;
+    }
+
+    /**
+     * Open a reader onto a hosts file by mapping it in memory.
+     *
+     * @param file The hosts file to read.
+     * @return The reader of the hosts file.
+     * @throws IOException If the hosts file could not be mapped.
+     */
+    public static HostsFileReader open(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            // The mapping remains valid once the channel is closed
+            return new HostsFileReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Read the first line of a hosts file, without mapping it.
+     * <p>
+     * Only the first bytes of the file are read, the line is cut after
+     * {@value #FIRST_LINE_MAX_LENGTH} bytes.
+     *
+     * @param file The hosts file to read.
+     * @return The first line, without line terminator, or {@code null} if the file is empty.
+     * @throws IOException If the hosts file could not be read.
+     */
+    public static String readFirstLine(File file) throws IOException {
+        byte[] buffer = new byte[FIRST_LINE_MAX_LENGTH];
+        int length = 0;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int count;
+            while (length < buffer.length
+                    && (count = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                length += count;
+            }
+        }
+        if (length == 0) {
+            return null;
+        }
+        int end = 0;
+        while (end < length && buffer[end] != '\n') {
+            end++;
+        }
+        if (end > 0 && buffer[end - 1] == '\r') {
+            end--;
+        }
+        return new String(buffer, 0, end, CHARSET);
+    }
+
+    /**
+     * Get the hosts file size.
+     *
+     * @return The hosts file size (in bytes).
+     */
+    public int size() {
+        return this.content.limit();
+    }
+
+    /**
+     * Get the whole hosts file content.
+     *
+     * @return A read only view of the hosts file content, independent of the lines read.
+     */
+    public ByteBuffer getContent() {
+        return this.content.asReadOnlyBuffer();
+    }
+
+    /**
+     * Read the next line of the hosts file.
+     * <p>
+     * Lines are terminated by a line feed, optionally preceded by a carriage return.
+     *
+     * @return The next line, without line terminator, or {@code null} at the end of the file.
+     */
+    public String readLine() {
+        int limit = this.content.limit();
+        if (this.position >= limit) {
+            return null;
+        }
+        int start = this.position;
+        int end = start;
+        while (end < limit && this.content.get(end) != '\n') {
+            end++;
+        }
+        this.position = end + 1;
+        if (end > start && this.content.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        ByteBuffer line = this.content.duplicate();
+        line.position(start);
+        line.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+}
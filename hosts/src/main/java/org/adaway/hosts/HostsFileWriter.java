@@ -0,0 +1,201 @@
+package org.adaway.hosts;
+
+import com.google.common.hash.Hasher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is a bulk writer of hosts file entries.
+ * <p>
+ * Entries are encoded straight into a reusable direct buffer which is flushed to a channel when
+ * full. Redirection IP addresses are encoded once as line prefixes (see {@link #encodePrefix(String)})
+ * so writing an ASCII host name entry does not allocate. This class is not thread-safe.
+ */
+public class HostsFileWriter implements Closeable {
+    /**
+     * The default buffer capacity (in bytes).
+     */
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+    /**
+     * The channel to write the hosts file to.
+     */
+    private final WritableByteChannel channel;
+    /**
+     * The reusable buffer to encode entries into.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The hasher of the written content ({@code null} if content is not hashed).
+     */
+    private Hasher hasher;
+    /**
+     * The number of bytes written to the channel or pending in the buffer.
+     */
+    private long byteCount;
+    /**
+     * The number of written entries.
+     */
+    private long entryCount;
+    /**
+     * The number of allocations made by the writer.
+     */
+    private int allocationCount;
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel to write the hosts file to. It is closed with the writer.
+     */
+    public HostsFileWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel  The channel to write the hosts file to. It is closed with the writer.
+     * @param capacity The buffer capacity (in bytes).
+     */
+    public HostsFileWriter(WritableByteChannel channel, int capacity) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.allocationCount = 1;
+    }
+
+    /**
+     * Hash the content written from now with a hasher.
+     *
+     * @param hasher The hasher to hash the content with.
+     * @throws IOException If the pending content could not be written.
+     */
+    public void startHashing(Hasher hasher) throws IOException {
+        flush();
+        this.hasher = hasher;
+    }
+
+    /**
+     * Encode a line prefix: a line separator, the IP address and a space.
+     *
+     * @param ip The IP address of the prefix.
+     * @return The encoded prefix to write entries with.
+     */
+    public byte[] encodePrefix(String ip) {
+        this.allocationCount++;
+        return (HostsFormat.LINE_SEPARATOR + ip + " ").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write text.
+     *
+     * @param text The text to write.
+     * @throws IOException If the text could not be written.
+     */
+    public void write(String text) throws IOException {
+        this.allocationCount++;
+        put(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write an entry.
+     *
+     * @param prefix   The entry prefix, from {@link #encodePrefix(String)}.
+     * @param hostname The entry host name.
+     * @throws IOException If the entry could not be written.
+     */
+    public void writeEntry(byte[] prefix, String hostname) throws IOException {
+        int length = prefix.length + hostname.length();
+        if (length > this.buffer.capacity() || !isAscii(hostname)) {
+            // Fall back to encoding the host name
+            put(prefix);
+            write(hostname);
+        } else {
+            if (this.buffer.remaining() < length) {
+                flush();
+            }
+            this.buffer.put(prefix);
+            for (int index = 0; index < hostname.length(); index++) {
+                this.buffer.put((byte) hostname.charAt(index));
+            }
+            this.byteCount += length;
+        }
+        this.entryCount++;
+    }
+
+    /**
+     * Get the number of written bytes.
+     *
+     * @return The number of written bytes.
+     */
+    public long getByteCount() {
+        return this.byteCount;
+    }
+
+    /**
+     * Get the number of written entries.
+     *
+     * @return The number of written entries.
+     */
+    public long getEntryCount() {
+        return this.entryCount;
+    }
+
+    /**
+     * Get the number of allocations made by the writer: its buffer, the encoded prefixes and text.
+     *
+     * @return The number of allocations made by the writer.
+     */
+    public int getAllocationCount() {
+        return this.allocationCount;
+    }
+
+    /**
+     * Write the pending content to the channel.
+     *
+     * @throws IOException If the content could not be written.
+     */
+    public void flush() throws IOException {
+        this.buffer.flip();
+        if (this.hasher != null) {
+            this.hasher.putBytes(this.buffer.duplicate());
+        }
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!this.buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(bytes.length - offset, this.buffer.remaining());
+            this.buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        this.byteCount += bytes.length;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int index = 0; index < text.length(); index++) {
+            if (text.charAt(index) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package org.adaway.hosts;
+
+/**
+ * This class holds the constants of the hosts file format.
+ */
+public final class HostsFormat {
+    public static final String LOCALHOST_IPv4 = "127.0.0.1";
+    public static final String LOCALHOST_IPv6 = "::1";
+    public static final String WHITELIST_ENTRY = "white";
+    public static final String BOGUS_IPv4 = "0.0.0.0";
+    public static final String LOCALHOST_HOSTNAME = "localhost";
+
+    public static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n");
+
+    public static final String HEADER1 = "# This hosts file has been generated by AdAway on:";
+    public static final String HEADER2 = "# Please do not modify it directly, it will be overwritten when AdAway is applied again.";
+    public static final String HEADER_SOURCES = "# This file is generated from the following sources:";
+
+    private HostsFormat() {
+    }
+}
@@ -0,0 +1,411 @@
+package org.adaway.hosts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * This class is a single pass tokenizer for hosts file content.
+ * <p>
+ * It scans raw bytes to split each line into an IP address and a host name. Blank lines, comments
+ * and malformed lines are skipped without allocating any object. IP address and host name are only
+ * materialized as {@link String} on demand.<br>
+ * A line is accepted if it has exactly two fields, optionally followed by a comment:
+ * {@code <ip> <hostname> [# comment]}.
+ */
+public class HostsLineTokenizer {
+    /**
+     * The default read buffer size.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /**
+     * The charset of hosts file content.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     * The maximum length of a host name (in characters).
+     */
+    private static final int MAX_HOSTNAME_LENGTH = 253;
+    /**
+     * The maximum number of parts of a host name.
+     */
+    private static final int MAX_HOSTNAME_PARTS = 127;
+    /**
+     * The maximum length of each part of a host name.
+     */
+    private static final int MAX_HOSTNAME_PART_LENGTH = 63;
+    /*
+     * The pre-encoded IP addresses to compare line fields to.
+     */
+    private static final byte[] LOCALHOST_IPV4 = HostsFormat.LOCALHOST_IPv4.getBytes(CHARSET);
+    private static final byte[] LOCALHOST_IPV6 = HostsFormat.LOCALHOST_IPv6.getBytes(CHARSET);
+    private static final byte[] BOGUS_IPV4 = HostsFormat.BOGUS_IPv4.getBytes(CHARSET);
+    private static final byte[] WHITELIST_ENTRY = HostsFormat.WHITELIST_ENTRY.getBytes(CHARSET);
+    /**
+     * The stream to read content from.
+     */
+    private final InputStream input;
+    /**
+     * The read buffer.
+     */
+    private byte[] buffer;
+    /**
+     * The position of the next byte to read in buffer.
+     */
+    private int position;
+    /**
+     * The position after the last valid byte in buffer.
+     */
+    private int limit;
+    /**
+     * Whether the end of stream was reached.
+     */
+    private boolean endOfStream;
+    /**
+     * Whether a line feed must be skipped (following a carriage return).
+     */
+    private boolean skipLineFeed;
+    /*
+     * The current entry fields (offset and length in buffer).
+     */
+    private int ipOffset;
+    private int ipLength;
+    private int hostnameOffset;
+    private int hostnameLength;
+    /**
+     * The number of read lines.
+     */
+    private long lineCount;
+    /**
+     * The number of rejected lines (not blank, not comment but malformed).
+     */
+    private long rejectedLineCount;
+
+    /**
+     * Constructor.
+     *
+     * @param input The stream to read hosts content from.
+     */
+    public HostsLineTokenizer(InputStream input) {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param input      The stream to read hosts content from.
+     * @param bufferSize The initial read buffer size.
+     */
+    public HostsLineTokenizer(InputStream input, int bufferSize) {
+        this.input = input;
+        this.buffer = new byte[Math.max(16, bufferSize)];
+        this.position = 0;
+        this.limit = 0;
+        this.endOfStream = false;
+        this.skipLineFeed = false;
+        this.lineCount = 0;
+        this.rejectedLineCount = 0;
+    }
+
+    /**
+     * Move to the next hosts entry, skipping blank, comment and malformed lines.
+     *
+     * @return {@code true} if an entry was found, {@code false} if the end of content was reached.
+     * @throws IOException If the content could not be read.
+     */
+    public boolean nextEntry() throws IOException {
+        int lineEnd;
+        while ((lineEnd = nextLineEnd()) >= 0) {
+            int lineStart = this.position;
+            // Move after the line terminator
+            if (lineEnd < this.limit) {
+                this.skipLineFeed = this.buffer[lineEnd] == '\r';
+                this.position = lineEnd + 1;
+            } else {
+                this.position = lineEnd;
+            }
+            this.lineCount++;
+            if (tokenize(lineStart, lineEnd)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the end of the next line, reading more content if needed.
+     *
+     * @return The index of the next line terminator (or the content end), {@code -1} if there is no
+     * more line.
+     * @throws IOException If the content could not be read.
+     */
+    private int nextLineEnd() throws IOException {
+        int scanned = this.position;
+        while (true) {
+            // Skip line feed of carriage return line feed terminator
+            if (this.skipLineFeed && this.position < this.limit) {
+                this.skipLineFeed = false;
+                if (this.buffer[this.position] == '\n') {
+                    this.position++;
+                    scanned = this.position;
+                }
+            }
+            // Look for line terminator
+            for (int index = scanned; index < this.limit; index++) {
+                byte b = this.buffer[index];
+                if (b == '\n' || b == '\r') {
+                    return index;
+                }
+            }
+            scanned = this.limit;
+            // Check end of stream
+            if (this.endOfStream) {
+                return this.position < this.limit ? this.limit : -1;
+            }
+            // Read more content
+            int offset = fill();
+            scanned -= offset;
+        }
+    }
+
+    /**
+     * Read more content into buffer, compacting or growing it if needed.
+     *
+     * @return The offset by which the buffer content was shifted.
+     * @throws IOException If the content could not be read.
+     */
+    private int fill() throws IOException {
+        int offset = this.position;
+        int remaining = this.limit - this.position;
+        if (offset > 0) {
+            // Compact buffer
+            System.arraycopy(this.buffer, offset, this.buffer, 0, remaining);
+            this.position = 0;
+            this.limit = remaining;
+        } else if (this.limit == this.buffer.length) {
+            // Grow buffer for lines longer than buffer
+            byte[] newBuffer = new byte[this.buffer.length * 2];
+            System.arraycopy(this.buffer, 0, newBuffer, 0, this.limit);
+            this.buffer = newBuffer;
+        }
+        int count = this.input.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (count == -1) {
+            this.endOfStream = true;
+        } else {
+            this.limit += count;
+        }
+        return offset;
+    }
+
+    /**
+     * Split a line into IP address and host name fields.
+     *
+     * @param start The line start index (inclusive).
+     * @param end   The line end index (exclusive).
+     * @return {@code true} if the line is a valid entry, {@code false} otherwise.
+     */
+    private boolean tokenize(int start, int end) {
+        byte[] buffer = this.buffer;
+        int index = skipWhitespaces(buffer, start, end);
+        // Check blank or comment line
+        if (index == end || buffer[index] == '#') {
+            return false;
+        }
+        // Read IP address field
+        this.ipOffset = index;
+        index = skipField(buffer, index, end);
+        this.ipLength = index - this.ipOffset;
+        // Read separator
+        int separatorEnd = skipWhitespaces(buffer, index, end);
+        if (separatorEnd == index || separatorEnd == end || buffer[separatorEnd] == '#') {
+            this.rejectedLineCount++;
+            return false;
+        }
+        // Read host name field
+        this.hostnameOffset = separatorEnd;
+        index = skipField(buffer, separatorEnd, end);
+        this.hostnameLength = index - this.hostnameOffset;
+        // Check remaining is only whitespaces or comment
+        index = skipWhitespaces(buffer, index, end);
+        if (index != end && buffer[index] != '#') {
+            this.rejectedLineCount++;
+            return false;
+        }
+        return true;
+    }
+
+    private static int skipWhitespaces(byte[] buffer, int index, int end) {
+        while (index < end && isWhitespace(buffer[index])) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipField(byte[] buffer, int index, int end) {
+        while (index < end) {
+            byte b = buffer[index];
+            if (b == '#' || isWhitespace(b)) {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == 0x0B || b == '\f';
+    }
+
+    /**
+     * Get the IP address field of the current entry.
+     *
+     * @return The IP address field of the current entry.
+     */
+    public String getIp() {
+        return new String(this.buffer, this.ipOffset, this.ipLength, CHARSET);
+    }
+
+    /**
+     * Get the host name field of the current entry.
+     *
+     * @return The host name field of the current entry.
+     */
+    public String getHostname() {
+        return new String(this.buffer, this.hostnameOffset, this.hostnameLength, CHARSET);
+    }
+
+    /**
+     * Add the host name field of the current entry to a domain trie, without allocating it.
+     *
+     * @param trie The domain trie to add the host name to.
+     * @return {@code true} if the host name was added, {@code false} if it was already present.
+     */
+    public boolean addHostname(DomainTrie trie) {
+        return trie.add(this.buffer, this.hostnameOffset, this.hostnameLength);
+    }
+
+    /**
+     * Add the host name field of the current entry to a host name pool.
+     *
+     * @param pool The host name pool to add the host name to.
+     * @return {@code true} if the host name was added, {@code false} if it was already pooled.
+     */
+    public boolean addHostname(HostnamePool pool) {
+        return pool.add(this.buffer, this.hostnameOffset, this.hostnameLength);
+    }
+
+    /**
+     * Check whether the current entry IP address is a blocking one ({@link HostsFormat#LOCALHOST_IPv4},
+     * {@link HostsFormat#BOGUS_IPv4} or {@link HostsFormat#LOCALHOST_IPv6}).
+     *
+     * @return {@code true} if the current entry IP address is a blocking one, {@code false} otherwise.
+     */
+    public boolean isBlockingIp() {
+        return ipEquals(LOCALHOST_IPV4) || ipEquals(BOGUS_IPV4) || ipEquals(LOCALHOST_IPV6);
+    }
+
+    /**
+     * Check whether the current entry is a whitelist entry ({@link HostsFormat#WHITELIST_ENTRY}).
+     *
+     * @return {@code true} if the current entry is a whitelist entry, {@code false} otherwise.
+     */
+    public boolean isWhitelistEntry() {
+        return ipEquals(WHITELIST_ENTRY);
+    }
+
+    private boolean ipEquals(byte[] ip) {
+        if (this.ipLength != ip.length) {
+            return false;
+        }
+        for (int index = 0; index < ip.length; index++) {
+            if (this.buffer[this.ipOffset + index] != ip[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the current entry host name is valid.<br>
+     * It has the same result as {@link HostnameUtils#isValidWhitelistHostname(String)} but validates
+     * plain ASCII host names without allocating.
+     *
+     * @return {@code true} if the current entry host name is valid, {@code false} otherwise.
+     */
+    public boolean isValidHostname() {
+        Boolean valid = isValidHostname(this.buffer, this.hostnameOffset, this.hostnameLength);
+        if (valid == null) {
+            return HostnameUtils.isValidWhitelistHostname(getHostname());
+        }
+        return valid;
+    }
+
+    /**
+     * Validate an ASCII host name using the same rules as Guava {@code InternetDomainName}.
+     *
+     * @param bytes  The bytes holding the host name.
+     * @param offset The host name offset.
+     * @param length The host name length.
+     * @return {@code true} if the host name is valid, {@code false} if invalid, {@code null} if it
+     * can't be validated at byte level (wildcards or non ASCII characters).
+     */
+    static Boolean isValidHostname(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        // Ignore trailing dot
+        if (length > 0 && bytes[end - 1] == '.') {
+            end--;
+        }
+        boolean valid = end - offset <= MAX_HOSTNAME_LENGTH;
+        int parts = 0;
+        int partStart = offset;
+        for (int index = offset; index <= end; index++) {
+            byte b = index < end ? bytes[index] : (byte) '.';
+            if (b < 0 || b == '*' || b == '?') {
+                return null;
+            }
+            if (b != '.') {
+                valid &= isLetter(b) || isDigit(b) || isDash(b);
+                continue;
+            }
+            // Validate part
+            int partLength = index - partStart;
+            parts++;
+            valid &= partLength >= 1 && partLength <= MAX_HOSTNAME_PART_LENGTH
+                    && !isDash(bytes[partStart]) && !isDash(bytes[index - 1])
+                    && (index != end || !isDigit(bytes[partStart]));
+            partStart = index + 1;
+        }
+        return valid && parts <= MAX_HOSTNAME_PARTS;
+    }
+
+    private static boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isDash(byte b) {
+        return b == '-' || b == '_';
+    }
+
+    /**
+     * Get the number of read lines.
+     *
+     * @return The number of read lines.
+     */
+    public long getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * Get the number of rejected lines.<br>
+     * Rejected lines are malformed lines, blank and comment lines are not rejected but skipped.
+     *
+     * @return The number of rejected lines.
+     */
+    public long getRejectedLineCount() {
+        return this.rejectedLineCount;
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2011-2012 Dominik Schürmann <dominik@dominikschuermann.de>
+ *
+ * This file is part of AdAway.
+ *
+ * AdAway is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AdAway is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AdAway.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.adaway.hosts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A parser to build sets out of hosts files. Redirection Lists have higher priority than whitelist
+ * or blacklist items.
+ * <p>
+ * Lists are stored as {@link DomainTrie} to share common domain suffixes between host names.
+ */
+public class HostsParser {
+    /**
+     * The minimum size of a parallel parsing shard (in bytes).
+     */
+    private static final int MIN_SHARD_SIZE = 256 * 1024;
+    /**
+     * The number of parallel parsing shards per pool thread, to balance uneven shards.
+     */
+    private static final int SHARDS_PER_THREAD = 4;
+
+    private DomainTrie mBlacklist;
+    private DomainTrie mWhitelist;
+    private DomainTrieMap mRedirectionList;
+    private ExclusionIndex mExclusionIndex;
+
+    private boolean mParseWhitelist;
+    private boolean mParseRedirections;
+
+    private HostnamePool mHostnamePool;
+
+    private long mLineCount;
+    private long mRejectedLineCount;
+    private long mBlockedEntryCount;
+    private long mSharedHostnameCount;
+
+    public HostsParser(InputStream input, boolean parseWhitelist, boolean parseRedirections)
+            throws IOException {
+        this(parseWhitelist, parseRedirections);
+        parse(input);
+    }
+
+    /**
+     * Create an empty parser. Hosts content is added with {@link #parse(InputStream)}.
+     *
+     * @param parseWhitelist    Whether whitelist entries of hosts content should be parsed.
+     * @param parseRedirections Whether redirection entries of hosts content should be parsed.
+     */
+    public HostsParser(boolean parseWhitelist, boolean parseRedirections) {
+        mBlacklist = new DomainTrie();
+        mWhitelist = new DomainTrie();
+        mRedirectionList = new DomainTrieMap();
+
+        mParseWhitelist = parseWhitelist;
+        mParseRedirections = parseRedirections;
+    }
+
+    public Set<String> getBlacklist() {
+        return mBlacklist;
+    }
+
+    public Set<String> getWhitelist() {
+        return mWhitelist;
+    }
+
+    public Map<String, String> getRedirectList() {
+        return mRedirectionList;
+    }
+
+    /**
+     * Check whether whitelist entries of hosts content are parsed.
+     *
+     * @return {@code true} if whitelist entries are parsed, {@code false} otherwise.
+     */
+    public boolean isParseWhitelist() {
+        return mParseWhitelist;
+    }
+
+    /**
+     * Check whether redirection entries of hosts content are parsed.
+     *
+     * @return {@code true} if redirection entries are parsed, {@code false} otherwise.
+     */
+    public boolean isParseRedirections() {
+        return mParseRedirections;
+    }
+
+    /**
+     * Set the pool to share blocked host names with the parsers of other hosts sources.
+     * <p>
+     * Parsed host names are added to the pool from raw bytes, only to count the host names shared
+     * with the other parsers (see {@link #getSharedHostnameCount()}).
+     *
+     * @param hostnamePool The host name pool, {@code null} to not pool host names.
+     */
+    public void setHostnamePool(HostnamePool hostnamePool) {
+        mHostnamePool = hostnamePool;
+    }
+
+    /**
+     * Get the number of lines parsed by this parser.
+     *
+     * @return The number of parsed lines.
+     */
+    public long getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * Get the number of parsed lines rejected as not valid entries.
+     *
+     * @return The number of rejected lines.
+     */
+    public long getRejectedLineCount() {
+        return mRejectedLineCount;
+    }
+
+    /**
+     * Get the number of blocked entries parsed or added to this parser, including duplicates.
+     *
+     * @return The number of blocked entries.
+     */
+    public long getBlockedEntryCount() {
+        return mBlockedEntryCount;
+    }
+
+    /**
+     * Get the number of unique blocked host names already pooled by another parser when first
+     * added to this parser.
+     * <p>
+     * It is the overlap of this parser blacklist with the other parsers sharing the same
+     * {@link #setHostnamePool(HostnamePool) host name pool}. It is always {@code 0} without pool.
+     *
+     * @return The number of blocked host names shared with other parsers.
+     */
+    public long getSharedHostnameCount() {
+        return mSharedHostnameCount;
+    }
+
+    /**
+     * Add blacklist to this hosts file
+     *
+     * @param blacklist
+     */
+    public void addBlacklist(Collection<String> blacklist) {
+        mBlockedEntryCount += blacklist.size();
+        if (mHostnamePool == null) {
+            mBlacklist.addAll(blacklist);
+            return;
+        }
+        for (String hostname : blacklist) {
+            if (mBlacklist.add(hostname) && !mHostnamePool.add(hostname)) {
+                mSharedHostnameCount++;
+            }
+        }
+    }
+
+    /**
+     * Add whitelist to this host file. This supports simple regex in entries.
+     *
+     * @param whitelist
+     */
+    public void addWhitelist(Collection<String> whitelist) {
+        mWhitelist.addAll(whitelist);
+    }
+
+    /**
+     * Add redirection rules as map.
+     * <p/>
+     * These mappings will replace any mappings that this map had for any of the keys currently in
+     * the specified map.
+     *
+     * @param redirectionList
+     */
+    public void addRedirectList(Map<String, String> redirectionList) {
+        mRedirectionList.putAll(redirectionList);
+    }
+
+    /**
+     * Add a redirection rule.
+     * <p/>
+     * It replaces any mapping that this map had for the host name.
+     *
+     * @param hostname The host name to redirect.
+     * @param ip       The IP address to redirect the host name to.
+     */
+    public void addRedirection(String hostname, String ip) {
+        mRedirectionList.put(hostname, ip);
+    }
+
+    /**
+     * Add all the lists of another parser to this parser.
+     * <p/>
+     * Redirection rules of the other parser replace any rules this parser had for the same host
+     * names, as if the other parser content was parsed after this parser content.
+     *
+     * @param parser The parser to add the lists from.
+     */
+    public void addHostsParser(HostsParser parser) {
+        mBlacklist.addAll(parser.mBlacklist);
+        mWhitelist.addAll(parser.mWhitelist);
+        mRedirectionList.putAll(parser.mRedirectionList);
+    }
+
+    /**
+     * Remove whitelist entries from blacklist with wildcards,
+     * <p/>
+     * The compiled whitelist is kept to check other host names with {@link #isExcluded(String)}.
+     */
+    public void compileList() {
+        mExclusionIndex = new ExclusionIndex(mWhitelist, mRedirectionList.keySet());
+        mExclusionIndex.removeExcluded(mBlacklist);
+    }
+
+    /**
+     * Check whether a host name is excluded from blacklist by the whitelist or redirection list.
+     * <p/>
+     * It allows to filter host names not added to this parser blacklist, as {@link #compileList()}
+     * does for the blacklist. It must be called after {@link #compileList()}.
+     *
+     * @param hostname The host name to check.
+     * @return {@code true} if the host name is whitelisted or redirected, {@code false} otherwise.
+     */
+    public boolean isExcluded(String hostname) {
+        if (mExclusionIndex == null) {
+            throw new IllegalStateException("The lists are not compiled.");
+        }
+        return mExclusionIndex.isExcluded(hostname);
+    }
+
+    /**
+     * Parse hosts file from InputStream and add its entries to the lists.
+     * <p/>
+     * The content is parsed while it is read so it could be called directly on a download stream.
+     * It could be called several times to add the content of several hosts files.
+     *
+     * @param input
+     * @throws IOException
+     */
+    public void parse(InputStream input) throws IOException {
+        HostsLineTokenizer tokenizer = new HostsLineTokenizer(input);
+        while (tokenizer.nextEntry()) {
+            // Check IP address validity or white list entry (if allowed)
+            if (tokenizer.isBlockingIp()) {
+                if (tokenizer.isValidHostname()) {
+                    mBlockedEntryCount++;
+                    // add from bytes, pool host name only once per parser
+                    if (tokenizer.addHostname(mBlacklist) && mHostnamePool != null
+                            && !tokenizer.addHostname(mHostnamePool)) {
+                        mSharedHostnameCount++;
+                    }
+                }
+            } else if (tokenizer.isWhitelistEntry()) {
+                if (mParseWhitelist && tokenizer.isValidHostname()) {
+                    mWhitelist.add(tokenizer.getHostname());
+                }
+            } else if (mParseRedirections) {
+                String ip = tokenizer.getIp();
+                if (HostnameUtils.isValidIp(ip) && tokenizer.isValidHostname()) {
+                    mRedirectionList.put(tokenizer.getHostname(), ip);
+                }
+            }
+        }
+        mLineCount += tokenizer.getLineCount();
+        mRejectedLineCount += tokenizer.getRejectedLineCount();
+
+        removeLocalhost();
+    }
+
+    /**
+     * Parse hosts content in parallel and add its entries to the lists.
+     * <p/>
+     * The content is split on line boundaries into shards parsed on a fork/join pool, each into
+     * its own parser. Shards lists are then merged in content order so the result is the same as
+     * {@link #parse(InputStream)}. Small content, or content to parse on a single thread pool, is
+     * parsed on the calling thread.
+     *
+     * @param content The hosts content to parse, from its position to its limit.
+     * @param pool    The pool to parse the shards on.
+     * @throws IOException If the parsing was interrupted.
+     */
+    public void parse(ByteBuffer content, ForkJoinPool pool) throws IOException {
+        int parallelism = pool.getParallelism();
+        List<ByteBuffer> shards = split(content, parallelism == 1 ? 1 : parallelism * SHARDS_PER_THREAD);
+        if (shards.size() == 1) {
+            parse(new ByteBufferInputStream(shards.get(0)));
+            return;
+        }
+        List<ForkJoinTask<HostsParser>> tasks = new ArrayList<>(shards.size());
+        for (ByteBuffer shard : shards) {
+            tasks.add(pool.submit(() -> {
+                HostsParser shardParser = new HostsParser(mParseWhitelist, mParseRedirections);
+                shardParser.parse(new ByteBufferInputStream(shard));
+                return shardParser;
+            }));
+        }
+        try {
+            for (ForkJoinTask<HostsParser> task : tasks) {
+                addShard(task.get());
+            }
+        } catch (ExecutionException exception) {
+            throw new IOException("Failed to parse hosts content shard.", exception.getCause());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Hosts content parsing was interrupted.", exception);
+        } finally {
+            for (ForkJoinTask<HostsParser> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        removeLocalhost();
+    }
+
+    /**
+     * Split hosts content on line boundaries.
+     *
+     * @param content    The content to split, from its position to its limit.
+     * @param shardCount The maximum number of shards.
+     * @return The content shards, in content order.
+     */
+    static List<ByteBuffer> split(ByteBuffer content, int shardCount) {
+        int start = content.position();
+        int limit = content.limit();
+        int count = Math.max(1, Math.min(shardCount, (limit - start) / MIN_SHARD_SIZE));
+        int shardSize = (limit - start) / count;
+        List<ByteBuffer> shards = new ArrayList<>(count);
+        while (start < limit) {
+            int end = limit - start <= shardSize ? limit : start + shardSize;
+            // move shard end after the next line feed
+            while (end < limit && content.get(end - 1) != '\n') {
+                end++;
+            }
+            ByteBuffer shard = content.duplicate();
+            shard.limit(end);
+            shard.position(start);
+            shards.add(shard.slice());
+            start = end;
+        }
+        if (shards.isEmpty()) {
+            shards.add(content.duplicate());
+        }
+        return shards;
+    }
+
+    /**
+     * Add the lists of a parallel parsing shard, in content order.
+     * <p/>
+     * Blocked host names are merged from bytes so they are not materialized.
+     *
+     * @param shard The parser holding the shard content.
+     */
+    private void addShard(HostsParser shard) {
+        mSharedHostnameCount += mBlacklist.addAll(shard.mBlacklist, mHostnamePool);
+        mWhitelist.addAll(shard.mWhitelist);
+        mRedirectionList.putAll(shard.mRedirectionList);
+        mLineCount += shard.mLineCount;
+        mRejectedLineCount += shard.mRejectedLineCount;
+        mBlockedEntryCount += shard.mBlockedEntryCount;
+    }
+
+    private void removeLocalhost() {
+        // strip localhost entry from blacklist and redirection list
+        mBlacklist.remove(HostsFormat.LOCALHOST_HOSTNAME);
+        mRedirectionList.remove(HostsFormat.LOCALHOST_HOSTNAME);
+    }
+}
@@ -0,0 +1,298 @@
+package org.adaway.hosts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class is the sorted and deduplicated blocked host names of a hosts source.
+ * <p>
+ * Large runs are spilled to a file so they do not stay in memory until the hosts file is written.
+ * They are spilled while the host names are read: each chunk of at most {@link #SPILL_THRESHOLD}
+ * host names is sorted and written to its own file, then the chunk files are merged into the run
+ * file. The memory used is bounded by the chunk size and the number of merged chunks.<br>
+ * Spilled host names are written as their UTF-8 bytes, prefixed by their length.
+ */
+public class HostsRun {
+    /**
+     * The host name charset.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     * The number of host names from which a run is spilled to a file, and the spilled chunk size.
+     */
+    static final int SPILL_THRESHOLD = 10_000;
+    /**
+     * The buffer size of the spilled chunk readers (in bytes).
+     */
+    private static final int CHUNK_BUFFER_SIZE = 4096;
+    /**
+     * The sorted host names ({@code null} if spilled).
+     */
+    private final String[] hostnames;
+    /**
+     * The file the host names are spilled to ({@code null} if kept in memory).
+     */
+    private final File file;
+    /**
+     * The number of host names.
+     */
+    private final int size;
+
+    private HostsRun(String[] hostnames, File file, int size) {
+        this.hostnames = hostnames;
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * Create a run from host names.
+     * <p>
+     * The run is kept in memory if it could not be spilled (see {@link #isSpilled()}).
+     *
+     * @param hostnames The host names of the run, without duplicates.
+     * @param spillFile The file to spill the run to if it is large ({@code null} to keep it in memory).
+     * @return The created run.
+     */
+    public static HostsRun of(Collection<String> hostnames, File spillFile) {
+        int size = hostnames.size();
+        if (spillFile == null || size < SPILL_THRESHOLD) {
+            return inMemory(hostnames);
+        }
+        List<File> chunkFiles = new ArrayList<>();
+        try {
+            String[] chunk = new String[SPILL_THRESHOLD];
+            int count = 0;
+            for (String hostname : hostnames) {
+                chunk[count++] = hostname;
+                if (count == chunk.length) {
+                    chunkFiles.add(writeChunk(chunk, count, getChunkFile(spillFile, chunkFiles.size())));
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                chunkFiles.add(writeChunk(chunk, count, getChunkFile(spillFile, chunkFiles.size())));
+            }
+            // A single chunk is already the sorted run
+            if (chunkFiles.size() != 1 || !chunkFiles.get(0).renameTo(spillFile)) {
+                mergeChunks(chunkFiles, spillFile);
+            }
+        } catch (IOException exception) {
+            // Keep run in memory
+            spillFile.delete();
+            return inMemory(hostnames);
+        } finally {
+            for (File chunkFile : chunkFiles) {
+                chunkFile.delete();
+            }
+        }
+        return new HostsRun(null, spillFile, size);
+    }
+
+    /**
+     * Create a run from already sorted host names, without sorting them again.
+     * <p>
+     * A large run is written straight to the spill file, otherwise the host names array is kept by
+     * the run.
+     *
+     * @param hostnames The host names of the run, in natural string order and without duplicates.
+     * @param spillFile The file to spill the run to if it is large ({@code null} to keep it in memory).
+     * @return The created run.
+     */
+    public static HostsRun ofSorted(String[] hostnames, File spillFile) {
+        if (spillFile == null || hostnames.length < SPILL_THRESHOLD) {
+            return new HostsRun(hostnames, null, hostnames.length);
+        }
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(spillFile))) {
+            for (String hostname : hostnames) {
+                writeHostname(output, hostname);
+            }
+        } catch (IOException exception) {
+            // Keep run in memory
+            spillFile.delete();
+            return new HostsRun(hostnames, null, hostnames.length);
+        }
+        return new HostsRun(null, spillFile, hostnames.length);
+    }
+
+    private static HostsRun inMemory(Collection<String> hostnames) {
+        String[] sortedHostnames = hostnames.toArray(new String[0]);
+        Arrays.sort(sortedHostnames);
+        return new HostsRun(sortedHostnames, null, sortedHostnames.length);
+    }
+
+    /**
+     * Get the number of host names of the run.
+     *
+     * @return The number of host names.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Check whether the run is spilled to a file.
+     *
+     * @return {@code true} if the run is spilled to a file, {@code false} if it is kept in memory.
+     */
+    public boolean isSpilled() {
+        return this.file != null;
+    }
+
+    /**
+     * Open the run to read its host names.
+     *
+     * @return The run reader, in natural string order.
+     * @throws IOException If the run could not be opened.
+     */
+    public SortedHostsMerger.Run open() throws IOException {
+        if (this.file == null) {
+            return SortedHostsMerger.runOf(Arrays.asList(this.hostnames).iterator());
+        }
+        return new FileRun(new BufferedInputStream(new FileInputStream(this.file)));
+    }
+
+    /**
+     * Delete the run spill file, if any.
+     *
+     * @return {@code true} if there is no more spill file, {@code false} if it could not be deleted.
+     */
+    public boolean delete() {
+        return this.file == null || !this.file.exists() || this.file.delete();
+    }
+
+    private static File getChunkFile(File spillFile, int index) {
+        return new File(spillFile.getPath() + "." + index);
+    }
+
+    /**
+     * Sort a chunk of host names and write it to a file. The chunk is emptied.
+     *
+     * @param chunk The chunk host names.
+     * @param count The number of host names of the chunk.
+     * @param file  The file to write the chunk to.
+     * @return The written file.
+     * @throws IOException If the chunk could not be written.
+     */
+    private static File writeChunk(String[] chunk, int count, File file) throws IOException {
+        Arrays.sort(chunk, 0, count);
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+            for (int index = 0; index < count; index++) {
+                writeHostname(output, chunk[index]);
+                chunk[index] = null;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Merge sorted chunk files into a run file.
+     *
+     * @param chunkFiles The chunk files to merge.
+     * @param file       The run file to write.
+     * @throws IOException If the chunks could not be merged.
+     */
+    private static void mergeChunks(List<File> chunkFiles, File file) throws IOException {
+        List<FileRun> chunkRuns = new ArrayList<>(chunkFiles.size());
+        try {
+            for (File chunkFile : chunkFiles) {
+                chunkRuns.add(new FileRun(new BufferedInputStream(new FileInputStream(chunkFile), CHUNK_BUFFER_SIZE)));
+            }
+        } catch (IOException exception) {
+            for (FileRun chunkRun : chunkRuns) {
+                chunkRun.close();
+            }
+            throw exception;
+        }
+        try (SortedHostsMerger merger = new SortedHostsMerger(chunkRuns);
+             OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+            String hostname;
+            while ((hostname = merger.next()) != null) {
+                writeHostname(output, hostname);
+            }
+        }
+    }
+
+    /**
+     * Write an host name as its UTF-8 bytes, prefixed by their length as a variable length integer.
+     *
+     * @param output   The output to write to.
+     * @param hostname The host name to write.
+     * @throws IOException If the host name could not be written.
+     */
+    private static void writeHostname(OutputStream output, String hostname) throws IOException {
+        byte[] bytes = hostname.getBytes(CHARSET);
+        int length = bytes.length;
+        while (length >= 0x80) {
+            output.write(length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+        output.write(length);
+        output.write(bytes);
+    }
+
+    /**
+     * This class reads a run written with {@link #writeHostname(OutputStream, String)}.
+     */
+    private static class FileRun implements SortedHostsMerger.Run {
+        private final InputStream input;
+        private byte[] buffer;
+
+        private FileRun(InputStream input) {
+            this.input = input;
+            this.buffer = new byte[256];
+        }
+
+        @Override
+        public String next() throws IOException {
+            int b = this.input.read();
+            if (b == -1) {
+                return null;
+            }
+            int length = 0;
+            int shift = 0;
+            while ((b & 0x80) != 0) {
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+                b = readByte();
+            }
+            length |= b << shift;
+            if (this.buffer.length < length) {
+                this.buffer = new byte[Math.max(length, this.buffer.length * 2)];
+            }
+            int read = 0;
+            while (read < length) {
+                int count = this.input.read(this.buffer, read, length - read);
+                if (count == -1) {
+                    throw new EOFException();
+                }
+                read += count;
+            }
+            return new String(this.buffer, 0, length, CHARSET);
+        }
+
+        private int readByte() throws IOException {
+            int b = this.input.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            return b;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.input.close();
+        }
+    }
+}
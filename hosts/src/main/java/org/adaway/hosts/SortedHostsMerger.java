@@ -0,0 +1,137 @@
+package org.adaway.hosts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * This class is a k-way merger of sorted host name runs.
+ * <p>
+ * Each run must be sorted in natural string order. The merged host names are returned in natural
+ * string order, without duplicates. Only the current host name of each run is kept in memory so
+ * the memory used is bounded by the number of runs.
+ */
+public class SortedHostsMerger implements Closeable {
+    /**
+     * The heads of the runs not yet exhausted, ordered by their current host name.
+     */
+    private final PriorityQueue<Head> queue;
+    /**
+     * The runs to merge.
+     */
+    private final Collection<? extends Run> runs;
+
+    /**
+     * Constructor.
+     *
+     * @param runs The sorted runs to merge. They are closed with the merger.
+     * @throws IOException If the runs could not be read.
+     */
+    public SortedHostsMerger(Collection<? extends Run> runs) throws IOException {
+        this.runs = runs;
+        this.queue = new PriorityQueue<>(Math.max(1, runs.size()));
+        for (Run run : runs) {
+            String hostname = run.next();
+            if (hostname != null) {
+                this.queue.add(new Head(run, hostname));
+            }
+        }
+    }
+
+    /**
+     * Create a run from a sorted iterator.
+     *
+     * @param hostnames The host names iterator, in natural string order.
+     * @return The host names run.
+     */
+    public static Run runOf(Iterator<String> hostnames) {
+        return new Run() {
+            @Override
+            public String next() {
+                return hostnames.hasNext() ? hostnames.next() : null;
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release
+            }
+        };
+    }
+
+    /**
+     * Get the next merged host name.
+     *
+     * @return The next host name, {@code null} if all runs are exhausted.
+     * @throws IOException If a run could not be read.
+     */
+    public String next() throws IOException {
+        Head head = this.queue.poll();
+        if (head == null) {
+            return null;
+        }
+        String hostname = head.hostname;
+        advance(head);
+        // Skip the same host name from the other runs
+        while (!this.queue.isEmpty() && this.queue.peek().hostname.equals(hostname)) {
+            advance(this.queue.poll());
+        }
+        return hostname;
+    }
+
+    private void advance(Head head) throws IOException {
+        String hostname = head.run.next();
+        if (hostname != null) {
+            head.hostname = hostname;
+            this.queue.add(head);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (Run run : this.runs) {
+            try {
+                run.close();
+            } catch (IOException closeException) {
+                exception = closeException;
+            }
+        }
+        this.queue.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * This interface is a sorted run of host names.
+     */
+    public interface Run extends Closeable {
+        /**
+         * Get the next host name of the run.
+         *
+         * @return The next host name, {@code null} if the run is exhausted.
+         * @throws IOException If the run could not be read.
+         */
+        String next() throws IOException;
+    }
+
+    /**
+     * This class is the current host name of a run.
+     */
+    private static class Head implements Comparable<Head> {
+        private final Run run;
+        private String hostname;
+
+        private Head(Run run, String hostname) {
+            this.run = run;
+            this.hostname = hostname;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            return this.hostname.compareTo(other.hostname);
+        }
+    }
+}
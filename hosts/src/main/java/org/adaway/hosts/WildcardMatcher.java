@@ -0,0 +1,275 @@
+package org.adaway.hosts;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class matches host names against a set of wildcard patterns at once.
+ * <p>
+ * Wildcard patterns support {@code *} (any sequence of characters, including empty) and {@code ?}
+ * (any single character). All other characters are matched literally and the whole host name must
+ * match, like the anchored regex built by {@link HostnameUtils#wildcardToRegex(String)}.<br>
+ * All patterns are compiled into a single non deterministic automaton which is lazily turned into
+ * a deterministic one while matching. Each host name is so scanned once, whatever the number of
+ * patterns.<br>
+ * This class is not thread-safe.
+ */
+public class WildcardMatcher {
+    /**
+     * The maximum number of cached deterministic states before flushing the cache.
+     */
+    private static final int MAX_CACHED_STATES = 10_000;
+    /**
+     * The number of characters with cached transitions.
+     */
+    private static final int CACHED_CHARACTERS = 128;
+    /*
+     * The automaton state types.
+     */
+    private static final byte LITERAL = 0;
+    private static final byte ANY = 1;
+    private static final byte STAR = 2;
+    private static final byte ACCEPT = 3;
+    /**
+     * The type of each automaton state.
+     */
+    private final byte[] types;
+    /**
+     * The literal character of each automaton state (only for {@link #LITERAL} states).
+     */
+    private final char[] literals;
+    /**
+     * The initial automaton states (the first state of each pattern).
+     */
+    private final int[] initialStates;
+    /**
+     * The cached deterministic states, by their automaton states.
+     */
+    private final Map<StateSet, DeterministicState> cache;
+    /**
+     * The deterministic state with no automaton state.
+     */
+    private final DeterministicState deadState;
+    /**
+     * The initial deterministic state ({@code null} until computed).
+     */
+    private DeterministicState initialState;
+
+    /**
+     * Constructor.
+     *
+     * @param wildcards The wildcard patterns to match.
+     */
+    public WildcardMatcher(Collection<String> wildcards) {
+        // Count automaton states
+        int stateCount = 0;
+        for (String wildcard : wildcards) {
+            stateCount += wildcard.length() + 1;
+        }
+        this.types = new byte[stateCount];
+        this.literals = new char[stateCount];
+        this.initialStates = new int[wildcards.size()];
+        // Build automaton states for each pattern
+        int state = 0;
+        int pattern = 0;
+        for (String wildcard : wildcards) {
+            this.initialStates[pattern++] = state;
+            for (int index = 0; index < wildcard.length(); index++) {
+                char c = wildcard.charAt(index);
+                if (c == '*') {
+                    // Collapse consecutive stars
+                    if (index > 0 && wildcard.charAt(index - 1) == '*') {
+                        continue;
+                    }
+                    this.types[state] = STAR;
+                } else if (c == '?') {
+                    this.types[state] = ANY;
+                } else {
+                    this.types[state] = LITERAL;
+                    this.literals[state] = c;
+                }
+                state++;
+            }
+            this.types[state++] = ACCEPT;
+        }
+        this.cache = new HashMap<>();
+        this.deadState = new DeterministicState(new int[0], false);
+    }
+
+    /**
+     * Check whether there is no pattern to match.
+     *
+     * @return {@code true} if there is no pattern, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return this.initialStates.length == 0;
+    }
+
+    /**
+     * Check whether a host name matches any of the wildcard patterns.
+     *
+     * @param hostname The host name to check.
+     * @return {@code true} if the host name matches at least one pattern, {@code false} otherwise.
+     */
+    public boolean matches(String hostname) {
+        if (this.initialState == null) {
+            this.initialState = getState(closure(this.initialStates, this.initialStates.length));
+        }
+        DeterministicState state = this.initialState;
+        for (int index = 0, length = hostname.length(); index < length && state != this.deadState; index++) {
+            state = step(state, hostname.charAt(index));
+        }
+        return state.accepting;
+    }
+
+    /**
+     * Get the next deterministic state.
+     *
+     * @param state The current deterministic state.
+     * @param c     The character to consume.
+     * @return The next deterministic state.
+     */
+    private DeterministicState step(DeterministicState state, char c) {
+        boolean cacheable = c < CACHED_CHARACTERS;
+        if (cacheable) {
+            DeterministicState next = state.transitions[c];
+            if (next != null) {
+                return next;
+            }
+        }
+        // Compute next automaton states
+        int[] nextStates = new int[state.states.length];
+        int count = 0;
+        for (int current : state.states) {
+            switch (this.types[current]) {
+                case LITERAL:
+                    if (this.literals[current] == c) {
+                        nextStates[count++] = current + 1;
+                    }
+                    break;
+                case ANY:
+                    nextStates[count++] = current + 1;
+                    break;
+                case STAR:
+                    nextStates[count++] = current;
+                    break;
+                default:
+                    break;
+            }
+        }
+        DeterministicState next = getState(closure(nextStates, count));
+        if (cacheable) {
+            state.transitions[c] = next;
+        }
+        return next;
+    }
+
+    /**
+     * Compute the closure of automaton states, following empty transitions of star states.
+     *
+     * @param states The automaton states.
+     * @param count  The number of automaton states.
+     * @return The sorted and deduplicated automaton states closure.
+     */
+    private int[] closure(int[] states, int count) {
+        // Each star state can add its following state
+        int[] closure = new int[count * 2];
+        int closureCount = 0;
+        for (int index = 0; index < count; index++) {
+            int state = states[index];
+            closure[closureCount++] = state;
+            if (this.types[state] == STAR) {
+                // Consecutive stars are collapsed, a star is never followed by another star
+                closure[closureCount++] = state + 1;
+            }
+        }
+        Arrays.sort(closure, 0, closureCount);
+        // Remove duplicates
+        int uniqueCount = 0;
+        for (int index = 0; index < closureCount; index++) {
+            if (uniqueCount == 0 || closure[uniqueCount - 1] != closure[index]) {
+                closure[uniqueCount++] = closure[index];
+            }
+        }
+        return Arrays.copyOf(closure, uniqueCount);
+    }
+
+    /**
+     * Get the deterministic state for automaton states, creating it if needed.
+     *
+     * @param states The sorted and deduplicated automaton states.
+     * @return The related deterministic state.
+     */
+    private DeterministicState getState(int[] states) {
+        if (states.length == 0) {
+            return this.deadState;
+        }
+        StateSet key = new StateSet(states);
+        DeterministicState state = this.cache.get(key);
+        if (state == null) {
+            // Flush cache to bound memory usage
+            if (this.cache.size() >= MAX_CACHED_STATES) {
+                this.cache.clear();
+                this.initialState = null;
+            }
+            boolean accepting = false;
+            for (int current : states) {
+                accepting |= this.types[current] == ACCEPT;
+            }
+            state = new DeterministicState(states, accepting);
+            this.cache.put(key, state);
+        }
+        return state;
+    }
+
+    /**
+     * This class is a deterministic automaton state, a set of non deterministic automaton states.
+     */
+    private static class DeterministicState {
+        /**
+         * The automaton states.
+         */
+        private final int[] states;
+        /**
+         * Whether any automaton state is an accepting state.
+         */
+        private final boolean accepting;
+        /**
+         * The cached transitions for ASCII characters.
+         */
+        private final DeterministicState[] transitions;
+
+        private DeterministicState(int[] states, boolean accepting) {
+            this.states = states;
+            this.accepting = accepting;
+            this.transitions = new DeterministicState[CACHED_CHARACTERS];
+        }
+    }
+
+    /**
+     * This class is a hashable set of automaton states.
+     */
+    private static class StateSet {
+        private final int[] states;
+        private final int hashCode;
+
+        private StateSet(int[] states) {
+            this.states = states;
+            this.hashCode = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return Arrays.equals(this.states, ((StateSet) o).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.adaway.hosts;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DomainTrieTest {
+
+    @Test
+    public void testSetOperations() {
+        DomainTrie trie = new DomainTrie();
+        assertTrue(trie.add("ads.example.com"));
+        assertFalse(trie.add("ads.example.com"));
+        assertTrue(trie.add("example.com"));
+        assertTrue(trie.add("foo.com."));
+        assertEquals(3, trie.size());
+        assertTrue(trie.contains("ads.example.com"));
+        assertTrue(trie.contains("example.com"));
+        assertTrue(trie.contains("foo.com."));
+        assertFalse(trie.contains("foo.com"));
+        assertFalse(trie.contains("com"));
+        assertFalse(trie.contains("www.example.com"));
+        assertTrue(trie.remove("example.com"));
+        assertFalse(trie.remove("example.com"));
+        assertFalse(trie.contains("example.com"));
+        assertTrue(trie.contains("ads.example.com"));
+        assertEquals(2, trie.size());
+    }
+
+    @Test
+    public void testReversedDomainOrder() {
+        DomainTrie trie = new DomainTrie();
+        trie.addAll(Arrays.asList("b.example.com", "example.org", "a.example.com", "example.com", "x.a.example.com", "net"));
+        List<String> hostnames = new ArrayList<>(trie);
+        assertEquals(Arrays.asList("example.com", "a.example.com", "x.a.example.com", "b.example.com", "net", "example.org"), hostnames);
+    }
+
+    @Test
+    public void testSubdomains() {
+        DomainTrie trie = new DomainTrie();
+        trie.addAll(Arrays.asList("example.com", "ads.example.com", "a.b.example.com", "example.org", "badexample.com"));
+        List<String> subdomains = new ArrayList<>();
+        for (String subdomain : trie.subdomains("example.com")) {
+            subdomains.add(subdomain);
+        }
+        assertEquals(Arrays.asList("ads.example.com", "a.b.example.com"), subdomains);
+        assertEquals(2, trie.removeSubdomains("example.com"));
+        assertEquals(0, trie.removeSubdomains("unknown.com"));
+        assertEquals(new HashSet<>(Arrays.asList("example.com", "example.org", "badexample.com")), new HashSet<>(trie));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        DomainTrie trie = new DomainTrie();
+        trie.addAll(Arrays.asList("a.com", "b.com", "c.com"));
+        for (Iterator<String> iterator = trie.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().equals("b.com")) {
+                iterator.remove();
+            }
+        }
+        assertEquals(Arrays.asList("a.com", "c.com"), new ArrayList<>(trie));
+    }
+
+    @Test
+    public void testSameContentAsHashSet() {
+        Random random = new Random(42);
+        Set<String> expected = new HashSet<>();
+        DomainTrie trie = new DomainTrie();
+        for (int i = 0; i < 50_000; i++) {
+            String hostname = "h" + random.nextInt(20_000) + ".d" + random.nextInt(100) + (random.nextBoolean() ? ".com" : ".\u00e9x");
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(hostname), trie.remove(hostname));
+            } else {
+                assertEquals(expected.add(hostname), trie.add(hostname));
+            }
+        }
+        assertEquals(expected.size(), trie.size());
+        assertEquals(expected, new HashSet<>(trie));
+    }
+
+    @Test
+    public void testMap() {
+        Map<String, String> map = new DomainTrieMap();
+        assertNull(map.put("ads.example.com", "10.0.0.1"));
+        assertNull(map.put("example.com", "10.0.0.2"));
+        assertEquals("10.0.0.1", map.put("ads.example.com", "10.0.0.3"));
+        assertEquals(2, map.size());
+        assertEquals("10.0.0.3", map.get("ads.example.com"));
+        assertTrue(map.containsKey("example.com"));
+        assertFalse(map.containsKey("com"));
+        Map<String, String> expected = new HashMap<>();
+        expected.put("ads.example.com", "10.0.0.3");
+        expected.put("example.com", "10.0.0.2");
+        assertEquals(expected, new HashMap<>(map));
+        assertEquals("10.0.0.2", map.remove("example.com"));
+        assertEquals(1, map.size());
+    }
+}
@@ -0,0 +1,110 @@
+package org.adaway.hosts;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ExclusionIndexTest {
+    @Test
+    public void testIsExcluded() {
+        ExclusionIndex index = new ExclusionIndex(
+                Arrays.asList("good.example.com", "*.example.org", "ads?.example.net", "*tracker*", "*."),
+                Collections.singleton("redirected.example.com")
+        );
+        assertTrue(index.isExcluded("good.example.com"));
+        assertFalse(index.isExcluded("bad.example.com"));
+        assertTrue(index.isExcluded("redirected.example.com"));
+        assertTrue(index.isExcluded("www.example.org"));
+        assertTrue(index.isExcluded("a.b.example.org"));
+        assertFalse(index.isExcluded("example.org"));
+        assertTrue(index.isExcluded("ads1.example.net"));
+        assertFalse(index.isExcluded("ads12.example.net"));
+        assertTrue(index.isExcluded("mytracker.example.com"));
+        assertFalse(index.isExcluded("trace.example.com"));
+    }
+
+    @Test
+    public void testAffixWildcards() {
+        ExclusionIndex index = new ExclusionIndex(
+                Arrays.asList("*cdn.example.com", "metrics.*", "ads*"),
+                Collections.emptySet()
+        );
+        assertTrue(index.isExcluded("cdn.example.com"));
+        assertTrue(index.isExcluded("mycdn.example.com"));
+        assertTrue(index.isExcluded("a.cdn.example.com"));
+        assertFalse(index.isExcluded("cdn.example.org"));
+        assertTrue(index.isExcluded("metrics.example.com"));
+        assertFalse(index.isExcluded("metrics"));
+        assertTrue(index.isExcluded("ads"));
+        assertTrue(index.isExcluded("ads.example.com"));
+        assertFalse(index.isExcluded("example.ads"));
+    }
+
+    @Test
+    public void testRemoveExcluded() {
+        DomainTrie blacklist = new DomainTrie();
+        blacklist.addAll(Arrays.asList("ads.example.com", "good.example.com", "www.example.org",
+                "example.org", "ads1.example.net", "redirected.example.com"));
+        ExclusionIndex index = new ExclusionIndex(
+                Arrays.asList("good.example.com", "*.example.org", "ads?.example.net"),
+                Collections.singleton("redirected.example.com")
+        );
+        index.removeExcluded(blacklist);
+        assertEquals(new HashSet<>(Arrays.asList("ads.example.com", "example.org")), new HashSet<>(blacklist));
+    }
+
+    @Test
+    public void testSameAsWildcardMatcher() {
+        Random random = new Random(42);
+        String[] labels = {"ads", "ad1", "tracker", "example", "com", "net", "a", "b"};
+        List<String> whitelist = new ArrayList<>();
+        for (int index = 0; index < 200; index++) {
+            String item = randomHostname(random, labels);
+            switch (random.nextInt(6)) {
+                case 0:
+                    item = "*." + item;
+                    break;
+                case 1:
+                    item = item.replaceFirst("a", "?");
+                    break;
+                case 2:
+                    item = item.replaceFirst("\\.", "*.");
+                    break;
+                case 3:
+                    item = "*" + item.substring(random.nextInt(item.length()));
+                    break;
+                case 4:
+                    item = item.substring(0, random.nextInt(item.length())) + "*";
+                    break;
+                default:
+                    break;
+            }
+            whitelist.add(item);
+        }
+        Set<String> redirected = new HashSet<>(Arrays.asList("ads.example.com", "a.b.net"));
+        ExclusionIndex exclusionIndex = new ExclusionIndex(whitelist, redirected);
+        WildcardMatcher matcher = new WildcardMatcher(whitelist);
+        for (int index = 0; index < 10_000; index++) {
+            String hostname = randomHostname(random, labels);
+            boolean expected = redirected.contains(hostname) || matcher.matches(hostname);
+            assertEquals(hostname, expected, exclusionIndex.isExcluded(hostname));
+        }
+    }
+
+    private static String randomHostname(Random random, String[] labels) {
+        StringBuilder hostname = new StringBuilder(labels[random.nextInt(labels.length)]);
+        int labelCount = 1 + random.nextInt(3);
+        for (int index = 0; index < labelCount; index++) {
+            hostname.append('.').append(labels[random.nextInt(labels.length)]);
+        }
+        return hostname.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package org.adaway.hosts;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class HostnamePoolTest {
+    @Test
+    public void testAdd() {
+        HostnamePool pool = new HostnamePool();
+        byte[] bytes = "0.0.0.0 ads.example.com".getBytes(StandardCharsets.UTF_8);
+        assertTrue(pool.add(bytes, 8, 15));
+        assertFalse(pool.add(bytes, 8, 15));
+        assertFalse(pool.add("ads.example.com"));
+        assertTrue(pool.add(bytes, 12, 11));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void testNonAsciiHostname() {
+        HostnamePool pool = new HostnamePool();
+        byte[] bytes = "bücher.example.com".getBytes(StandardCharsets.UTF_8);
+        assertTrue(pool.add(bytes, 0, bytes.length));
+        assertFalse(pool.add("bücher.example.com"));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testRehash() {
+        HostnamePool pool = new HostnamePool();
+        for (int index = 0; index < 100_000; index++) {
+            assertTrue(pool.add("host" + index + ".example.com"));
+        }
+        assertEquals(100_000, pool.size());
+        byte[] bytes = "host4242.example.com".getBytes(StandardCharsets.UTF_8);
+        assertFalse(pool.add(bytes, 0, bytes.length));
+        pool.clear();
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void testSharedHostnames() throws IOException {
+        HostnamePool pool = new HostnamePool();
+        HostsParser parser1 = new HostsParser(false, false);
+        parser1.setHostnamePool(pool);
+        parser1.parse(toStream("0.0.0.0 a.example.com\n0.0.0.0 b.example.com\n0.0.0.0 a.example.com\n"));
+        HostsParser parser2 = new HostsParser(false, false);
+        parser2.setHostnamePool(pool);
+        parser2.parse(toStream("0.0.0.0 b.example.com\n0.0.0.0 c.example.com\n"));
+
+        assertEquals(3, parser1.getBlockedEntryCount());
+        assertEquals(2, parser1.getBlacklist().size());
+        assertEquals(0, parser1.getSharedHostnameCount());
+        assertEquals(2, parser2.getBlockedEntryCount());
+        assertEquals(1, parser2.getSharedHostnameCount());
+        assertEquals(3, pool.size());
+    }
+
+    @Test
+    public void testBoundedTableSize() throws IOException {
+        // Long host names must not grow the pool more than short ones
+        String suffix = ".a-long-subdomain-name.to-make-host-names-bigger-than-pool-entries.example.com";
+        HostsCompilerOptions options = new HostsCompilerOptions(false, false, "0.0.0.0", "::", false);
+        try (HostsCompiler compiler = new HostsCompiler(options, null)) {
+            int sourceCount = 4;
+            int hostCount = 20_000;
+            for (int source = 0; source < sourceCount; source++) {
+                StringBuilder content = new StringBuilder();
+                // Each source shares half of its host names with the previous one
+                for (int index = 0; index < hostCount; index++) {
+                    content.append("0.0.0.0 host").append(source * hostCount / 2 + index).append(suffix).append('\n');
+                }
+                HostsParser parser = compiler.parseSource(toStream(content.toString()));
+                assertEquals(source == 0 ? 0 : hostCount / 2, parser.getSharedHostnameCount());
+                assertTrue(parser.getBlacklist().isEmpty());
+            }
+            HostnamePool pool = compiler.getHostnamePool();
+            int uniqueCount = (sourceCount + 1) * hostCount / 2;
+            assertEquals(uniqueCount, pool.size());
+            // At most 4 hashes of 8 bytes per pooled host name, with table growth
+            assertTrue(pool.getTableSize() <= 32L * uniqueCount);
+            compiler.compile();
+            assertEquals(0, pool.size());
+        }
+    }
+
+    private static ByteArrayInputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,101 @@
+package org.adaway.hosts;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class HostsCompilerTest {
+    private static final String SEPARATOR = HostsFormat.LINE_SEPARATOR;
+
+    @Test
+    public void testCompile() throws IOException {
+        HostsCompilerOptions options = new HostsCompilerOptions(true, true, "0.0.0.0", "::", false);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (HostsCompiler compiler = new HostsCompiler(options, null)) {
+            compiler.parseSource(toStream("0.0.0.0 b.example.com\n"
+                    + "0.0.0.0 ads.allowed.com\n"
+                    + "white good.example.com\n"
+                    + "10.0.0.1 redirected.example.com\n"));
+            compiler.parseSource(toStream("127.0.0.1 a.example.com\n"
+                    + "127.0.0.1 b.example.com\n"
+                    + "127.0.0.1 good.example.com\n"
+                    + "127.0.0.1 redirected.example.com\n"));
+            compiler.addUserLists(
+                    Collections.singletonList("user.example.com"),
+                    Collections.singletonList("*.allowed.com"),
+                    Collections.emptyMap()
+            );
+            assertEquals(2, compiler.getSourceCount());
+
+            try (HostsFileWriter writer = new HostsFileWriter(Channels.newChannel(output))) {
+                compiler.writeHosts(writer, Arrays.asList("https://source1", "https://source2"));
+            }
+            // ads.allowed.com, good.example.com and redirected.example.com
+            assertEquals(3, compiler.getExcludedHostCount());
+        }
+
+        String expected = SEPARATOR + HostsFormat.HEADER2
+                + SEPARATOR + HostsFormat.HEADER_SOURCES
+                + SEPARATOR + "# https://source1"
+                + SEPARATOR + "# https://source2"
+                + SEPARATOR
+                + SEPARATOR + "127.0.0.1 localhost"
+                + SEPARATOR + "::1 localhost"
+                + SEPARATOR
+                + SEPARATOR + "0.0.0.0 a.example.com"
+                + SEPARATOR + "0.0.0.0 b.example.com"
+                + SEPARATOR + "0.0.0.0 user.example.com"
+                + SEPARATOR + "10.0.0.1 redirected.example.com"
+                + SEPARATOR;
+        assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testHashHosts() throws IOException {
+        HostsCompilerOptions options = new HostsCompilerOptions(false, false, "0.0.0.0", "::", false);
+        try (HostsCompiler compiler = new HostsCompiler(options, null)) {
+            compiler.parseSource(toStream("0.0.0.0 ads.example.com\n"));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Hasher writeHasher = Hashing.sha256().newHasher();
+            try (HostsFileWriter writer = new HostsFileWriter(Channels.newChannel(output))) {
+                compiler.writeHeaderDate(writer, new Date());
+                writer.startHashing(writeHasher);
+                compiler.writeHosts(writer, Collections.singletonList("https://source"));
+            }
+            byte[] content = output.toByteArray();
+
+            Hasher readHasher = Hashing.sha256().newHasher();
+            assertTrue(HostsCompiler.hashHosts(new ByteArrayInputStream(content), readHasher));
+            assertEquals(writeHasher.hash(), readHasher.hash());
+            // Content not written by the compiler
+            content[0] = '0';
+            assertFalse(HostsCompiler.hashHosts(new ByteArrayInputStream(content), Hashing.sha256().newHasher()));
+            assertFalse(HostsCompiler.hashHosts(toStream("# short"), Hashing.sha256().newHasher()));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddSourceAfterCompile() throws IOException {
+        HostsCompilerOptions options = new HostsCompilerOptions(false, false, "0.0.0.0", "::", false);
+        try (HostsCompiler compiler = new HostsCompiler(options, null)) {
+            compiler.compile();
+            compiler.parseSource(toStream("0.0.0.0 ads.example.com\n"));
+        }
+    }
+
+    private static ByteArrayInputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
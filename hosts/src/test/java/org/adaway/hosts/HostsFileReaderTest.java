@@ -0,0 +1,73 @@
+package org.adaway.hosts;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class HostsFileReaderTest {
+    @Test
+    public void testReadLines() throws IOException {
+        File file = write("# header\r\n127.0.0.1 bücher.example.com\n\n0.0.0.0 ads.example.com");
+        HostsFileReader reader = HostsFileReader.open(file);
+        assertEquals(file.length(), reader.size());
+        assertEquals("# header", reader.readLine());
+        assertEquals("127.0.0.1 bücher.example.com", reader.readLine());
+        assertEquals("", reader.readLine());
+        assertEquals("0.0.0.0 ads.example.com", reader.readLine());
+        assertNull(reader.readLine());
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        File file = write("");
+        HostsFileReader reader = HostsFileReader.open(file);
+        assertEquals(0, reader.size());
+        assertNull(reader.readLine());
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testReadFirstLine() throws IOException {
+        File file = write("# header\r\n127.0.0.1 bücher.example.com\n");
+        assertEquals("# header", HostsFileReader.readFirstLine(file));
+        assertTrue(file.delete());
+        // First line is cut on large files without line feed
+        StringBuilder content = new StringBuilder();
+        for (int index = 0; index < 1000; index++) {
+            content.append("0.0.0.0 ads").append(index).append(".example.com ");
+        }
+        file = write(content.toString());
+        String firstLine = HostsFileReader.readFirstLine(file);
+        assertTrue(firstLine.length() < 1024);
+        assertTrue(content.toString().startsWith(firstLine));
+        assertTrue(file.delete());
+        file = write("");
+        assertNull(HostsFileReader.readFirstLine(file));
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testParseContent() throws IOException {
+        File file = write("0.0.0.0 ads.example.com\n127.0.0.1 tracker.example.com\n");
+        HostsFileReader reader = HostsFileReader.open(file);
+        assertEquals("0.0.0.0 ads.example.com", reader.readLine());
+        HostsParser parser = new HostsParser(false, false);
+        parser.parse(reader.getContent(), ForkJoinPool.commonPool());
+        assertEquals(2, parser.getBlacklist().size());
+        assertEquals("127.0.0.1 tracker.example.com", reader.readLine());
+        assertTrue(file.delete());
+    }
+
+    private static File write(String content) throws IOException {
+        File file = File.createTempFile("hosts", null);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,69 @@
+package org.adaway.hosts;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class HostsFileWriterTest {
+    private static final String SEPARATOR = HostsFormat.LINE_SEPARATOR;
+
+    @Test
+    public void testWriteEntries() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HostsFileWriter writer = new HostsFileWriter(Channels.newChannel(output), 32);
+        byte[] prefix = writer.encodePrefix("127.0.0.1");
+        writer.write("# header");
+        writer.writeEntry(prefix, "ads.example.com");
+        writer.writeEntry(prefix, "tracker.example.com");
+        writer.writeEntry(prefix, "a-very-long-host-name-that-does-not-fit-the-buffer.example.com");
+        writer.writeEntry(prefix, "bücher.example.com");
+        writer.close();
+
+        String expected = "# header"
+                + SEPARATOR + "127.0.0.1 ads.example.com"
+                + SEPARATOR + "127.0.0.1 tracker.example.com"
+                + SEPARATOR + "127.0.0.1 a-very-long-host-name-that-does-not-fit-the-buffer.example.com"
+                + SEPARATOR + "127.0.0.1 bücher.example.com";
+        assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(4, writer.getEntryCount());
+        assertEquals(output.size(), writer.getByteCount());
+    }
+
+    @Test
+    public void testNoAllocationPerEntry() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HostsFileWriter writer = new HostsFileWriter(Channels.newChannel(output));
+        byte[] prefix = writer.encodePrefix("0.0.0.0");
+        int allocationCount = writer.getAllocationCount();
+        for (int index = 0; index < 10_000; index++) {
+            writer.writeEntry(prefix, "host" + index + ".example.com");
+        }
+        writer.close();
+        assertEquals(allocationCount, writer.getAllocationCount());
+        assertEquals(10_000, writer.getEntryCount());
+    }
+
+    @Test
+    public void testHashing() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HostsFileWriter writer = new HostsFileWriter(Channels.newChannel(output), 16);
+        byte[] prefix = writer.encodePrefix("127.0.0.1");
+        writer.write("# not hashed");
+        Hasher hasher = Hashing.sha256().newHasher();
+        writer.startHashing(hasher);
+        writer.writeEntry(prefix, "ads.example.com");
+        writer.writeEntry(prefix, "tracker.example.com");
+        writer.close();
+
+        String hashed = SEPARATOR + "127.0.0.1 ads.example.com" + SEPARATOR + "127.0.0.1 tracker.example.com";
+        assertEquals(Hashing.sha256().hashString(hashed, StandardCharsets.UTF_8), hasher.hash());
+    }
+}
@@ -0,0 +1,139 @@
+package org.adaway.hosts;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HostsLineTokenizerTest {
+
+    @Test
+    public void testHostParser() throws IOException {
+        assertEquals(0, tokenize("# [mocean.mobi]").size());
+        assertEquals(1, tokenize("127.0.0.1 api.airpush.com ## hope this is all #").size());
+        assertEquals(1, tokenize("127.0.0.1 ad.leadboltapps.net ## another airpush style ad").size());
+    }
+
+    @Test
+    public void testFields() throws IOException {
+        List<String> entries = tokenize(
+                "  127.0.0.1\tads.example.com  \n" +
+                        "\n" +
+                        "# comment\n" +
+                        "0.0.0.0 tracker.example.com#comment\n" +
+                        "white *.example.com\n" +
+                        "10.0.0.1 redirect.example.com"
+        );
+        assertEquals(4, entries.size());
+        assertEquals("127.0.0.1 ads.example.com", entries.get(0));
+        assertEquals("0.0.0.0 tracker.example.com", entries.get(1));
+        assertEquals("white *.example.com", entries.get(2));
+        assertEquals("10.0.0.1 redirect.example.com", entries.get(3));
+    }
+
+    @Test
+    public void testMalformedLines() throws IOException {
+        HostsLineTokenizer tokenizer = tokenizer(
+                "127.0.0.1\n" +
+                        "127.0.0.1 first.example.com second.example.com\n" +
+                        "127.0.0.1#comment example.com\n" +
+                        "127.0.0.1 #example.com\n"
+        );
+        assertFalse(tokenizer.nextEntry());
+        assertEquals(4, tokenizer.getLineCount());
+        assertEquals(4, tokenizer.getRejectedLineCount());
+    }
+
+    @Test
+    public void testLineTerminators() throws IOException {
+        HostsLineTokenizer tokenizer = tokenizer("127.0.0.1 a.com\r\n127.0.0.1 b.com\r127.0.0.1 c.com\n");
+        int count = 0;
+        while (tokenizer.nextEntry()) {
+            count++;
+        }
+        assertEquals(3, count);
+        assertEquals(3, tokenizer.getLineCount());
+    }
+
+    @Test
+    public void testLongLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        StringBuilder longHostname = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            longHostname.append("label").append(i).append('.');
+        }
+        longHostname.append("com");
+        for (int i = 0; i < 100; i++) {
+            content.append("\r\n127.0.0.1 ").append(longHostname);
+        }
+        HostsLineTokenizer tokenizer = new HostsLineTokenizer(
+                new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)),
+                16
+        );
+        int count = 0;
+        while (tokenizer.nextEntry()) {
+            assertEquals(longHostname.toString(), tokenizer.getHostname());
+            count++;
+        }
+        assertEquals(100, count);
+    }
+
+    @Test
+    public void testIpClassification() throws IOException {
+        HostsLineTokenizer tokenizer = tokenizer("127.0.0.1 a.com\n0.0.0.0 a.com\n::1 a.com\nwhite a.com\n127.0.0.2 a.com");
+        assertTrue(tokenizer.nextEntry());
+        assertTrue(tokenizer.isBlockingIp());
+        assertTrue(tokenizer.nextEntry());
+        assertTrue(tokenizer.isBlockingIp());
+        assertTrue(tokenizer.nextEntry());
+        assertTrue(tokenizer.isBlockingIp());
+        assertTrue(tokenizer.nextEntry());
+        assertFalse(tokenizer.isBlockingIp());
+        assertTrue(tokenizer.isWhitelistEntry());
+        assertTrue(tokenizer.nextEntry());
+        assertFalse(tokenizer.isBlockingIp());
+        assertFalse(tokenizer.isWhitelistEntry());
+        assertEquals("127.0.0.2", tokenizer.getIp());
+    }
+
+    @Test
+    public void testHostnameValidation() throws IOException {
+        String[] hostnames = {
+                "foo.com", "f-_-o.cOM", "www", "x", "f_a", "biz.com.ua", "foo.com.", "", "13",
+                "abc.12c", "foo-.com", "_bar.quux", "foo+bar.com", ".foo.com", "baz..com", "fleeb.com..",
+                ".", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa.com",
+                "*.example.com", "example.?", "foo*-.com", "ex\u00e4mple.com"
+        };
+        for (String hostname : hostnames) {
+            HostsLineTokenizer tokenizer = tokenizer("127.0.0.1 " + hostname);
+            if (hostname.isEmpty()) {
+                assertFalse(tokenizer.nextEntry());
+                continue;
+            }
+            assertTrue(tokenizer.nextEntry());
+            assertEquals(
+                    "Validation of '" + hostname + "' should match HostnameUtils.",
+                    HostnameUtils.isValidWhitelistHostname(hostname),
+                    tokenizer.isValidHostname()
+            );
+        }
+    }
+
+    private static HostsLineTokenizer tokenizer(String content) {
+        return new HostsLineTokenizer(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<String> tokenize(String content) throws IOException {
+        HostsLineTokenizer tokenizer = tokenizer(content);
+        List<String> entries = new ArrayList<>();
+        while (tokenizer.nextEntry()) {
+            entries.add(tokenizer.getIp() + " " + tokenizer.getHostname());
+        }
+        return entries;
+    }
+}
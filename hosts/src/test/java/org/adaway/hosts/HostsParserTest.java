@@ -0,0 +1,163 @@
+package org.adaway.hosts;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class HostsParserTest {
+    private static final String HOSTS = "# Test hosts\n" +
+            "127.0.0.1 localhost\n" +
+            "127.0.0.1 ads.example.com\n" +
+            "0.0.0.0 tracker.example.com # tracker\n" +
+            "::1 a.b.example.com\n" +
+            "127.0.0.1 example.com\n" +
+            "127.0.0.1 ads1.example.org\n" +
+            "127.0.0.1 ads22.example.org\n" +
+            "127.0.0.1 redirected.example.net\n" +
+            "white keep.example.net\n" +
+            "10.0.0.1 redirected.example.net\n" +
+            "invalid-ip invalid.example.net\n" +
+            "127.0.0.1 -invalid.example.net\n";
+
+    @Test
+    public void testParse() throws IOException {
+        HostsParser parser = parse(true, true);
+        assertEquals(new HashSet<>(Arrays.asList(
+                "ads.example.com", "tracker.example.com", "a.b.example.com", "example.com",
+                "ads1.example.org", "ads22.example.org", "redirected.example.net"
+        )), new HashSet<>(parser.getBlacklist()));
+        assertEquals(Collections.singleton("keep.example.net"), new HashSet<>(parser.getWhitelist()));
+        assertEquals(Collections.singletonMap("redirected.example.net", "10.0.0.1"), new HashMap<>(parser.getRedirectList()));
+
+        parser = parse(false, false);
+        assertTrue(parser.getWhitelist().isEmpty());
+        assertTrue(parser.getRedirectList().isEmpty());
+    }
+
+    @Test
+    public void testCompileList() throws IOException {
+        HostsParser parser = parse(true, true);
+        parser.addBlacklist(Collections.singleton("user.example.net"));
+        parser.addWhitelist(new HashSet<>(Arrays.asList("*.example.com", "ads?.example.org")));
+        Map<String, String> redirections = new HashMap<>();
+        redirections.put("user.example.net", "10.0.0.2");
+        parser.addRedirectList(redirections);
+        parser.compileList();
+        assertEquals(new HashSet<>(Arrays.asList("example.com", "ads22.example.org")), new HashSet<>(parser.getBlacklist()));
+        assertEquals("10.0.0.2", parser.getRedirectList().get("user.example.net"));
+    }
+
+    @Test
+    public void testIsExcluded() throws IOException {
+        HostsParser parser = parse(true, true);
+        parser.addWhitelist(new HashSet<>(Arrays.asList("*.example.com", "ads?.example.org")));
+        parser.compileList();
+        assertTrue(parser.isExcluded("www.example.com"));
+        assertTrue(parser.isExcluded("a.b.example.com"));
+        assertFalse(parser.isExcluded("example.com"));
+        assertTrue(parser.isExcluded("ads1.example.org"));
+        assertFalse(parser.isExcluded("ads22.example.org"));
+        assertTrue(parser.isExcluded("redirected.example.net"));
+        assertFalse(parser.isExcluded("other.example.net"));
+    }
+
+    @Test
+    public void testAddHostsParser() throws IOException {
+        HostsParser first = new HostsParser(
+                new ByteArrayInputStream("127.0.0.1 a.example.com\n10.0.0.1 r.example.com\n".getBytes(StandardCharsets.UTF_8)),
+                true,
+                true
+        );
+        HostsParser second = new HostsParser(
+                new ByteArrayInputStream("127.0.0.1 b.example.com\nwhite w.example.com\n10.0.0.2 r.example.com\n".getBytes(StandardCharsets.UTF_8)),
+                true,
+                true
+        );
+        HostsParser merged = new HostsParser(true, true);
+        merged.addHostsParser(first);
+        merged.addHostsParser(second);
+        assertEquals(new HashSet<>(Arrays.asList("a.example.com", "b.example.com")), new HashSet<>(merged.getBlacklist()));
+        assertEquals(Collections.singleton("w.example.com"), new HashSet<>(merged.getWhitelist()));
+        assertEquals(Collections.singletonMap("r.example.com", "10.0.0.2"), new HashMap<>(merged.getRedirectList()));
+    }
+
+    @Test
+    public void testParallelParse() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int index = 0; index < 200_000; index++) {
+            switch (index % 7) {
+                case 0:
+                    content.append("# comment ").append(index).append('\n');
+                    break;
+                case 1:
+                    content.append("white allowed").append(index % 1000).append(".example.com\r\n");
+                    break;
+                case 2:
+                    content.append("10.0.0.").append(index % 200).append(" redirected")
+                            .append(index % 5000).append(".example.net\n");
+                    break;
+                case 3:
+                    content.append("127.0.0.1 -invalid").append(index).append(".example.com\n");
+                    break;
+                default:
+                    content.append("0.0.0.0 host").append(index % 50_000).append(".example.org\n");
+            }
+        }
+        content.append("127.0.0.1 localhost\n127.0.0.1 last.example.com");
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+
+        HostsParser sequential = new HostsParser(new ByteArrayInputStream(bytes), true, true);
+        HostsParser parallel = new HostsParser(true, true);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.parse(ByteBuffer.wrap(bytes), pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(HostsParser.split(ByteBuffer.wrap(bytes), 16).size() > 1);
+        assertEquals(new HashSet<>(sequential.getBlacklist()), new HashSet<>(parallel.getBlacklist()));
+        assertEquals(new HashSet<>(sequential.getWhitelist()), new HashSet<>(parallel.getWhitelist()));
+        assertEquals(new HashMap<>(sequential.getRedirectList()), new HashMap<>(parallel.getRedirectList()));
+        assertEquals(sequential.getLineCount(), parallel.getLineCount());
+        assertEquals(sequential.getRejectedLineCount(), parallel.getRejectedLineCount());
+        assertEquals(sequential.getBlockedEntryCount(), parallel.getBlockedEntryCount());
+    }
+
+    @Test
+    public void testSplit() {
+        byte[] bytes = new byte[1_000_000];
+        Arrays.fill(bytes, (byte) 'a');
+        for (int index = 99; index < bytes.length; index += 100) {
+            bytes[index] = '\n';
+        }
+        List<ByteBuffer> shards = HostsParser.split(ByteBuffer.wrap(bytes), 3);
+        assertEquals(3, shards.size());
+        int total = 0;
+        for (ByteBuffer shard : shards) {
+            assertEquals('\n', shard.get(shard.limit() - 1));
+            total += shard.remaining();
+        }
+        assertEquals(bytes.length, total);
+    }
+
+    private static HostsParser parse(boolean parseWhitelist, boolean parseRedirections) throws IOException {
+        return new HostsParser(
+                new ByteArrayInputStream(HOSTS.getBytes(StandardCharsets.UTF_8)),
+                parseWhitelist,
+                parseRedirections
+        );
+    }
+}
@@ -0,0 +1,123 @@
+package org.adaway.hosts;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HostsRunTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("runs").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    @Test
+    public void testInMemoryRun() throws IOException {
+        HostsRun run = HostsRun.of(Arrays.asList("b.example.com", "a.example.com"), new File(this.directory, "0.run"));
+        assertFalse(run.isSpilled());
+        assertEquals(2, run.size());
+        assertEquals(Arrays.asList("a.example.com", "b.example.com"), read(run));
+    }
+
+    @Test
+    public void testSpilledChunks() throws IOException {
+        // Several chunks, non ASCII and long host names
+        List<String> hostnames = new ArrayList<>();
+        int count = HostsRun.SPILL_THRESHOLD * 2 + 42;
+        for (int index = 0; index < count; index++) {
+            hostnames.add("host" + index + (index % 3 == 0 ? ".bücher.example.com" : ".example.com"));
+        }
+        StringBuilder longHostname = new StringBuilder("x");
+        for (int index = 0; index < 40; index++) {
+            longHostname.append(".label").append(index);
+        }
+        hostnames.add(longHostname.toString());
+        Collections.shuffle(hostnames);
+
+        File file = new File(this.directory, "0.run");
+        HostsRun run = HostsRun.of(hostnames, file);
+        assertTrue(run.isSpilled());
+        assertEquals(hostnames.size(), run.size());
+        // Only the run file is left
+        assertEquals(Collections.singletonList(file.getName()), Arrays.asList(this.directory.list()));
+
+        Collections.sort(hostnames);
+        assertEquals(hostnames, read(run));
+        assertTrue(run.delete());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testSpilledSingleChunk() throws IOException {
+        List<String> hostnames = new ArrayList<>();
+        for (int index = 0; index < HostsRun.SPILL_THRESHOLD; index++) {
+            hostnames.add("host" + index + ".example.com");
+        }
+        Collections.shuffle(hostnames);
+
+        File file = new File(this.directory, "0.run");
+        HostsRun run = HostsRun.of(hostnames, file);
+        assertTrue(run.isSpilled());
+        assertEquals(Collections.singletonList(file.getName()), Arrays.asList(this.directory.list()));
+        Collections.sort(hostnames);
+        assertEquals(hostnames, read(run));
+    }
+
+    @Test
+    public void testSortedRun() throws IOException {
+        String[] hostnames = {"a.example.com", "b.example.com"};
+        HostsRun run = HostsRun.ofSorted(hostnames, new File(this.directory, "0.run"));
+        assertFalse(run.isSpilled());
+        assertEquals(Arrays.asList(hostnames), read(run));
+        assertEquals(0, this.directory.list().length);
+    }
+
+    @Test
+    public void testSpilledSortedRun() throws IOException {
+        String[] hostnames = new String[HostsRun.SPILL_THRESHOLD + 42];
+        for (int index = 0; index < hostnames.length; index++) {
+            hostnames[index] = "host" + index + (index % 3 == 0 ? ".bücher.example.com" : ".example.com");
+        }
+        Arrays.sort(hostnames);
+
+        File file = new File(this.directory, "0.run");
+        HostsRun run = HostsRun.ofSorted(hostnames, file);
+        assertTrue(run.isSpilled());
+        assertEquals(hostnames.length, run.size());
+        assertEquals(Collections.singletonList(file.getName()), Arrays.asList(this.directory.list()));
+        assertEquals(Arrays.asList(hostnames), read(run));
+    }
+
+    private static List<String> read(HostsRun run) throws IOException {
+        List<String> hostnames = new ArrayList<>();
+        try (SortedHostsMerger.Run reader = run.open()) {
+            String hostname;
+            while ((hostname = reader.next()) != null) {
+                hostnames.add(hostname);
+            }
+        }
+        return hostnames;
+    }
+}
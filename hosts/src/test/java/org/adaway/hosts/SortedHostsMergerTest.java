@@ -0,0 +1,71 @@
+package org.adaway.hosts;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class SortedHostsMergerTest {
+
+    @Test
+    public void testEmpty() throws IOException {
+        try (SortedHostsMerger merger = new SortedHostsMerger(Collections.emptyList())) {
+            assertNull(merger.next());
+        }
+        try (SortedHostsMerger merger = new SortedHostsMerger(Collections.singletonList(
+                SortedHostsMerger.runOf(Collections.emptyIterator())))) {
+            assertNull(merger.next());
+        }
+    }
+
+    @Test
+    public void testMerge() throws IOException {
+        List<SortedHostsMerger.Run> runs = Arrays.asList(
+                run("a.example.com", "c.example.com", "e.example.com"),
+                run("b.example.com", "c.example.com", "c.example.com"),
+                run("a.example.com", "d.example.com")
+        );
+        List<String> merged = merge(runs);
+        assertEquals(Arrays.asList(
+                "a.example.com", "b.example.com", "c.example.com", "d.example.com", "e.example.com"
+        ), merged);
+    }
+
+    @Test
+    public void testRandomRuns() throws IOException {
+        Random random = new Random(42);
+        TreeSet<String> expected = new TreeSet<>();
+        List<SortedHostsMerger.Run> runs = new ArrayList<>();
+        for (int run = 0; run < 10; run++) {
+            TreeSet<String> hostnames = new TreeSet<>();
+            for (int index = 0; index < 500; index++) {
+                hostnames.add("host" + random.nextInt(2000) + ".example.com");
+            }
+            expected.addAll(hostnames);
+            runs.add(SortedHostsMerger.runOf(hostnames.iterator()));
+        }
+        assertEquals(new ArrayList<>(expected), merge(runs));
+    }
+
+    private static SortedHostsMerger.Run run(String... hostnames) {
+        return SortedHostsMerger.runOf(Arrays.asList(hostnames).iterator());
+    }
+
+    private static List<String> merge(List<SortedHostsMerger.Run> runs) throws IOException {
+        List<String> merged = new ArrayList<>();
+        try (SortedHostsMerger merger = new SortedHostsMerger(runs)) {
+            String hostname;
+            while ((hostname = merger.next()) != null) {
+                merged.add(hostname);
+            }
+        }
+        return merged;
+    }
+}
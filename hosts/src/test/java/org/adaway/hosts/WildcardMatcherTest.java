@@ -0,0 +1,78 @@
+package org.adaway.hosts;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class WildcardMatcherTest {
+
+    @Test
+    public void testEmpty() {
+        WildcardMatcher matcher = new WildcardMatcher(Collections.emptyList());
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matches("example.com"));
+    }
+
+    @Test
+    public void testWildcards() {
+        WildcardMatcher matcher = new WildcardMatcher(Arrays.asList(
+                "*.example.com",
+                "tracker?.example.org",
+                "exact.example.net",
+                "ads.**.cdn.*"
+        ));
+        assertFalse(matcher.isEmpty());
+        assertTrue(matcher.matches("www.example.com"));
+        assertTrue(matcher.matches("a.b.example.com"));
+        assertFalse(matcher.matches("example.com"));
+        assertTrue(matcher.matches("tracker1.example.org"));
+        assertFalse(matcher.matches("tracker.example.org"));
+        assertFalse(matcher.matches("tracker12.example.org"));
+        assertTrue(matcher.matches("exact.example.net"));
+        assertFalse(matcher.matches("inexact.example.net"));
+        assertFalse(matcher.matches("exact.example.net.evil.com"));
+        assertTrue(matcher.matches("ads.x.cdn.com"));
+        assertFalse(matcher.matches("ads.cdn.com"));
+    }
+
+    @Test
+    public void testSameResultsAsRegex() {
+        Random random = new Random(42);
+        String alphabet = "ab.-";
+        List<String> wildcards = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            wildcards.add(randomString(random, alphabet + "*?", 1 + random.nextInt(6)));
+        }
+        List<Pattern> patterns = new ArrayList<>();
+        for (String wildcard : wildcards) {
+            patterns.add(Pattern.compile(HostnameUtils.wildcardToRegex(wildcard)));
+        }
+        WildcardMatcher matcher = new WildcardMatcher(wildcards);
+        for (int i = 0; i < 10_000; i++) {
+            String hostname = randomString(random, alphabet, random.nextInt(10));
+            boolean expected = false;
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(hostname).find()) {
+                    expected = true;
+                    break;
+                }
+            }
+            assertEquals("Matching of '" + hostname + "' should be the same as regex.", expected, matcher.matches(hostname));
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}